@@ -0,0 +1,117 @@
+package com.vevo.versions.metrics;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.vevo.versions.logging.CountingAsyncAppender;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the per-request cost of {@link RequestMetrics} with the {@link AccessLog} sampling {@code sampleRate} of
+ * requests into a file, written synchronously or through a {@link CountingAsyncAppender} (configured as in
+ * {@code logback.groovy}).  Several threads log at once, as request threads do.  The async appender's discarded and
+ * dropped counts are printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+    private static final String PATTERN = "%d{HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n";
+
+    @Param({"sync", "async"})
+    public String mode;
+
+    @Param({"0", "0.01", "1"})
+    public double sampleRate;
+
+    private LoggerContext context;
+    private CountingAsyncAppender async;
+    private File file;
+    private AccessLog accessLog;
+    private RequestMetrics metrics;
+
+    @Setup
+    public void setup() throws IOException {
+        context = new LoggerContext();
+        file = File.createTempFile("versions-access", ".log");
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(file.getPath());
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+
+        Appender<ILoggingEvent> appender = fileAppender;
+        if (mode.equals("async")) {
+            async = new CountingAsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setDiscardingThreshold(8192 / 5);
+            async.setNeverBlock(true);
+            async.setIncludeCallerData(false);
+            async.addAppender(fileAppender);
+            async.start();
+            appender = async;
+        }
+        Logger logger = context.getLogger(AccessLog.LOGGER_NAME);
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+
+        accessLog = new AccessLog(logger, sampleRate);
+        metrics = new RequestMetrics(Integer.MAX_VALUE, accessLog);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (async != null) {
+            System.out.printf("%nasync: discarded %d, dropped %d%n",
+                async.getDiscardedCount(), async.getDroppedCount());
+        }
+        context.stop();
+        file.delete();
+    }
+
+    @Benchmark
+    public void accessLog() {
+        accessLog.log(Endpoint.HEADER_GET, 2, 1500000, 200000, 1000000);
+    }
+
+    @Benchmark
+    public RequestTiming request() {
+        RequestTiming timing = metrics.start(Endpoint.HEADER_GET, 2);
+        timing.workStarted();
+        timing.workFinished();
+        timing.finish();
+        return timing;
+    }
+}
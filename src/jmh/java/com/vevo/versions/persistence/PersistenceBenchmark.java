@@ -0,0 +1,90 @@
+package com.vevo.versions.persistence;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Compares the throughput of POST writes written directly (one upsert, i.e. one statement and commit, per request)
+ * with writes through the {@link SomethingStore} (coalesced by key and written behind in multi-row upserts), against
+ * an in-memory H2 database in MySQL mode.  Requests write one of {@code keys} random keys, so fewer keys coalesce
+ * more.  The write-behind queue is kept small, so once it is full writers wait for the flusher: the measured
+ * throughput is what the database sustains, not just the cost of queueing.  H2 runs in-process, so this understates
+ * the gain over a networked MySQL, where every direct write also pays a round trip.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    private static final String SCHEMA = "classpath:db/changelog/001-create-foo.sql";
+    private static final String BODY = "the body";
+
+    @Param({"direct", "write-behind"})
+    public String mode;
+
+    @Param({"100", "100000"})
+    public int keys;
+
+    private JdbcConnectionPool pool;
+    private SomethingDao dao;
+    private SomethingStore store;
+
+    @Setup
+    public void setup() throws SQLException {
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:versions-benchmark;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        pool.setMaxConnections(16);
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS foo");
+            statement.execute("RUNSCRIPT FROM '" + SCHEMA + "'");
+        }
+        dao = new SomethingDao(pool);
+        store = new SomethingStore(dao, 10000, 60, 1000, 100, 10);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        store.shutdown();
+        if (mode.equals("write-behind")) {
+            System.out.printf("%nwritten: %d, statements: %d, coalesced: %d, rejected: %d%n", store.getWrittenCount(),
+                store.getStatementCount(), store.getCoalescedCount(), store.getRejectedCount());
+        }
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        pool.dispose();
+    }
+
+    @Benchmark
+    public Object write() throws SQLException {
+        String something = "key" + ThreadLocalRandom.current().nextInt(keys);
+        if (mode.equals("direct")) {
+            SomethingRecord record = new SomethingRecord(something, BODY, System.currentTimeMillis());
+            dao.upsert(record);
+            return record;
+        }
+        return store.write(something, BODY);
+    }
+}
@@ -0,0 +1,77 @@
+package com.vevo.versions.resources;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the CPU cost of compressing a JSON response against the bytes it saves, by encoding, level and response
+ * size.  {@code pooled} uses {@link Compressor}; {@code unpooled} allocates a {@link Deflater} per response, as
+ * {@link java.util.zip.GZIPOutputStream} would.  The compressed size of each response is printed at setup, so the
+ * time per response can be weighed against the bytes it saves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompressionBenchmark {
+
+    @Param({"GZIP", "DEFLATE"})
+    public ContentEncoding encoding;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    @Param({"512", "4096", "65536"})
+    public int size;
+
+    private Compressor compressor;
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        compressor = new Compressor(level, 0);
+        StringBuilder json = new StringBuilder("[");
+        for (int idx = 0; json.length() < size; idx++) {
+            json.append("{\"value\":\"V2: something ").append(idx).append("\"},");
+        }
+        json.setLength(size - 1);
+        bytes = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        int compressed = compressor.compress(bytes, encoding).length;
+        System.out.printf("%n%s level %d: %d -> %d bytes (%.1f%% saved)%n", encoding, level, bytes.length, compressed,
+            100.0 * (bytes.length - compressed) / bytes.length);
+    }
+
+    @Benchmark
+    public byte[] pooled() {
+        return compressor.compress(bytes, encoding);
+    }
+
+    @Benchmark
+    public int unpooled() {
+        Deflater deflater = new Deflater(level, encoding.isNowrap());
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[bytes.length + 64];
+            return deflater.deflate(buffer);
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.vevo.versions.resources;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures the per-request overhead of {@link RequestValidator}: parsing the body alone, and parsing plus validation
+ * against the (precompiled) schema of each version.  Compare with {@link VersionContextBenchmark} for the cost of the
+ * work itself.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestValidationBenchmark {
+
+    @Param({"1", "2"})
+    public int version;
+
+    // A legacy plain text body, a valid JSON body, and an invalid one
+    @Param({"the body", "{\"value\":\"the body\"}", "{\"value\":1}"})
+    public String body;
+
+    private VersionContext context;
+
+    @Setup
+    public void setup() {
+        context = VersionContext.getVersionContext(version);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return RequestValidator.parse(body);
+    }
+
+    @Benchmark
+    public Object validate() {
+        return RequestValidator.validate(context, body);
+    }
+}
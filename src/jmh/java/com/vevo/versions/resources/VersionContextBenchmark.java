@@ -0,0 +1,49 @@
+package com.vevo.versions.resources;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures {@link VersionContext#doSomeVersionSpecificWork} for each version, with and without a body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VersionContextBenchmark {
+
+    @Param({"1", "2"})
+    public int version;
+
+    @Param({"", "the body"})
+    public String body;
+
+    private VersionContext context;
+    private String something;
+
+    @Setup
+    public void setup() {
+        context = VersionContext.getVersionContext(version);
+        something = "whatever";
+        body = body.isEmpty() ? null : body;
+    }
+
+    @Benchmark
+    public Object doSomeVersionSpecificWork() {
+        return context.doSomeVersionSpecificWork(something, body);
+    }
+}
@@ -0,0 +1,63 @@
+package com.vevo.versions.resources;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures resolving a {@link VersionContext} from a version number and from realistic {@code Accept} headers, both
+ * uncached and through the {@link VersionNegotiator} cache used by {@link VersionsResource}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionResolutionBenchmark {
+    private static final String PREFIX = "vnd.vevo.header-v";
+
+    @State(Scope.Benchmark)
+    public static class NumberState {
+        @Param({"1", "2"})
+        public int version;
+    }
+
+    @State(Scope.Benchmark)
+    public static class HeaderState {
+        @Param({
+            "application/json",
+            "application/vnd.vevo.header-v2+json",
+            "application/vnd.vevo.header-v1+json;q=0.5, application/vnd.vevo.header-v2+json, application/json;q=0.1",
+            "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8"
+        })
+        public String accept;
+
+        final VersionNegotiator negotiator =
+            new VersionNegotiator(PREFIX, VersionRegistry.getDefault(), VersionContext.V1, 1024);
+    }
+
+    @Benchmark
+    public VersionContext byNumber(NumberState state) {
+        return VersionContext.getVersionContext(state.version);
+    }
+
+    @Benchmark
+    public VersionContext byHeader(HeaderState state) {
+        return VersionContext.getVersionContext(state.accept, PREFIX, VersionContext.V1);
+    }
+
+    @Benchmark
+    public VersionContext byHeaderCached(HeaderState state) {
+        return state.negotiator.negotiate(state.accept);
+    }
+}
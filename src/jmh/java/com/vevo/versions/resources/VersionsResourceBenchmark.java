@@ -0,0 +1,122 @@
+package com.vevo.versions.resources;
+
+import com.vevo.versions.Config;
+import com.vevo.versions.concurrent.AdaptiveLimiter;
+import com.vevo.versions.concurrent.RequestExecutor;
+import com.vevo.versions.events.UsagePipeline;
+import com.vevo.versions.metrics.RequestMetrics;
+import com.vevo.versions.persistence.SomethingStore;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Measures an in-process dispatch through {@link VersionsResource} -- version resolution, the version specific work
+ * and building the response -- comparing the path and header versioning strategies.  Jersey routing and
+ * serialization are not included.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VersionsResourceBenchmark {
+    private static final String SOMETHING = "whatever";
+    private static final String BODY = "the body";
+
+    private RequestExecutor executor;
+    private RequestDispatcher dispatcher;
+    private VersionsResource resource;
+    private VersionsResource cachingResource;
+
+    @Setup
+    public void setup() {
+        executor = new RequestExecutor(4, 1000);
+        // Thresholds which never admit, so every request does the work
+        RequestMetrics metrics = new RequestMetrics(Integer.MAX_VALUE);
+        // A limit which never sheds
+        AdaptiveLimiter limiter = new AdaptiveLimiter(Integer.MAX_VALUE, 1, Integer.MAX_VALUE, 60000);
+        Config config = new Config();
+        // Usage recording disabled (the EVENTS_SINK default)
+        UsagePipeline usage = new UsagePipeline(null, 0, 0, 0);
+        // Persistence disabled (the PERSISTENCE_ENABLED default)
+        SomethingStore store = new SomethingStore(null, 0, 1, 0, 1, 0);
+        VersionNegotiator negotiator = new VersionNegotiator(metrics.getRegistry());
+        dispatcher = new RequestDispatcher(executor, limiter, config.getInlineBudgetMillis());
+        resource = new VersionsResource(
+            dispatcher, limiter, new ResponseCache(Integer.MAX_VALUE, Integer.MAX_VALUE, 0, 1), new RequestCoalescer(),
+            metrics, usage, store, negotiator, config);
+        // Thresholds which always admit, so every request after the first is a cache hit
+        cachingResource = new VersionsResource(
+            dispatcher, limiter, new ResponseCache(0, 0, 1024 * 1024, 3600), new RequestCoalescer(), metrics, usage,
+            store, negotiator, config);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.shutdown();
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public Object pathGetV1() {
+        LocalAsyncResponse response = new LocalAsyncResponse();
+        resource.pathVersionGetDefault(null, null, null, response, SOMETHING);
+        return response.getResult().join();
+    }
+
+    @Benchmark
+    public Object pathGetV2() {
+        LocalAsyncResponse response = new LocalAsyncResponse();
+        resource.pathVersionGet("v2", null, null, null, response, SOMETHING);
+        return response.getResult().join();
+    }
+
+    @Benchmark
+    public Object headerGetV1() {
+        LocalAsyncResponse response = new LocalAsyncResponse();
+        resource.headerVersionGet(VersionsResource.V1_TYPE, null, null, null, response, SOMETHING);
+        return response.getResult().join();
+    }
+
+    @Benchmark
+    public Object headerGetV2() {
+        LocalAsyncResponse response = new LocalAsyncResponse();
+        resource.headerVersionGet(VersionsResource.V2_TYPE, null, null, null, response, SOMETHING);
+        return response.getResult().join();
+    }
+
+    @Benchmark
+    public Object headerGetV2Cached() {
+        LocalAsyncResponse response = new LocalAsyncResponse();
+        cachingResource.headerVersionGet(VersionsResource.V2_TYPE, null, null, null, response, SOMETHING);
+        return response.getResult().join();
+    }
+
+    @Benchmark
+    public Object pathPostV2() {
+        LocalAsyncResponse response = new LocalAsyncResponse();
+        resource.pathVersionPost("v2", null, response, SOMETHING, BODY);
+        return response.getResult().join();
+    }
+
+    @Benchmark
+    public Object headerPostV2() {
+        LocalAsyncResponse response = new LocalAsyncResponse();
+        resource.headerVersionPost(VersionsResource.V2_TYPE, null, response, SOMETHING, BODY);
+        return response.getResult().join();
+    }
+}
@@ -1,6 +1,435 @@
 package com.vevo.versions;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import com.vevo.genesis.config.GenesisConfig;
 
+import java.util.concurrent.TimeUnit;
+
 public class Config extends GenesisConfig {
+
+    // Fast start: defer initialization no request depends on, and run requests to every route (iterations) before
+    // reporting ready.  See StartupProfiler and ResourceWarmUp
+    @JsonProperty
+    private boolean fastStart = Boolean.parseBoolean(envString("FAST_START", "false"));
+
+    @JsonProperty
+    private int warmupIterations = envInt("FAST_START_WARMUP_ITERATIONS", 1000);
+
+    // Request processing: threads and queue of the executor which runs the VersionsResource work
+    @JsonProperty
+    private int requestThreads = envInt("API_REQUEST_THREADS", 20);
+
+    @JsonProperty
+    private int requestQueueSize = envInt("API_REQUEST_QUEUE_SIZE", 1000);
+
+    // Request timeouts: the default (seconds), and overrides by endpoint and version, whose unit is required, i.e.
+    // "header.get.v2=250ms,path.stream=30s".  Non-blocking work runs inline while it averages under the inline budget
+    @JsonProperty
+    private int requestTimeout = envInt("API_REQUEST_TIMEOUT", 5);
+
+    @JsonProperty
+    private String requestTimeoutOverrides = envString("API_REQUEST_TIMEOUT_OVERRIDES", "");
+
+    @JsonProperty
+    private String inlineBudget = envString("API_INLINE_BUDGET", "1ms");
+
+    // Adaptive concurrency limit: requests in flight beyond the limit are shed with a 503
+    @JsonProperty
+    private int limitInitial = envInt("API_LIMIT_INITIAL", 100);
+
+    @JsonProperty
+    private int limitMin = envInt("API_LIMIT_MIN", 10);
+
+    @JsonProperty
+    private int limitMax = envInt("API_LIMIT_MAX", 1000);
+
+    @JsonProperty
+    private int limitLatencyThreshold = envInt("API_LIMIT_LATENCY_THRESHOLD", 1000);
+
+    // Response cache: only responses slower (ms) or larger (bytes) than these thresholds are cached
+    @JsonProperty
+    private int needsCachingTimeThreshold = envInt("NEEDS_CACHING_TIME_THRESHOLD", 100);
+
+    @JsonProperty
+    private int needsCachingSizeThreshold = envInt("NEEDS_CACHING_SIZE_THRESHOLD", 10000);
+
+    @JsonProperty
+    private int responseCacheMaxBytes = envInt("RESPONSE_CACHE_MAX_BYTES", 64 * 1024 * 1024);
+
+    @JsonProperty
+    private int responseCacheTtlSeconds = envInt("RESPONSE_CACHE_TTL", 60);
+
+    // Response compression: responses smaller than this (bytes) are sent uncompressed; the Deflater level (1 - 9)
+    @JsonProperty
+    private int compressionMinSize = envInt("COMPRESSION_MIN_SIZE", 1024);
+
+    @JsonProperty
+    private int compressionLevel = envInt("COMPRESSION_LEVEL", 6);
+
+    // Batch requests: items processed concurrently per batch, and the most items a batch may contain
+    @JsonProperty
+    private int batchConcurrency = envInt("BATCH_CONCURRENCY", 8);
+
+    @JsonProperty
+    private int batchMaxItems = envInt("BATCH_MAX_ITEMS", 1000);
+
+    // Usage events: the sink (none, memory, file or kinesis), its stream or file, the ring buffer size (a power of
+    // two), producer threads, and how often (seconds) producers send their counts
+    @JsonProperty
+    private String eventsSink = envString("EVENTS_SINK", "none");
+
+    @JsonProperty
+    private String eventsStream = envString("EVENTS_STREAM", "versions-usage");
+
+    @JsonProperty
+    private String eventsFile = envString("EVENTS_FILE", "usage-events.ndjson");
+
+    @JsonProperty
+    private int eventsBufferSize = envInt("EVENTS_BUFFER_SIZE", 65536);
+
+    @JsonProperty
+    private int producerThreads = envInt("AWS_PRODUCER_THREADS", 2);
+
+    @JsonProperty
+    private int eventsFlushSeconds = envInt("EVENTS_FLUSH_INTERVAL", 10);
+
+    @JsonProperty
+    private String kinesisRegion = envString("AWS_REGION", "us-east-1");
+
+    @JsonProperty
+    private String kinesisKey = envString("AWS_KEY", null);
+
+    @JsonProperty
+    private String kinesisSecret = envString("AWS_SECRET", null);
+
+    // Persistence of the {something} resources (off by default): the MySQL database, the read cache (records, TTL
+    // seconds), and the write-behind queue (pending keys, records per batch, ms a write may wait for a batch to fill)
+    @JsonProperty
+    private boolean persistenceEnabled = Boolean.parseBoolean(envString("PERSISTENCE_ENABLED", "false"));
+
+    @JsonProperty
+    private String dbHost = envString("DB_HOST", "localhost");
+
+    @JsonProperty
+    private int dbPort = envInt("DB_PORT", 3306);
+
+    @JsonProperty
+    private String dbName = envString("DB_NAME", "versions");
+
+    @JsonProperty
+    private String dbUser = envString("DB_USER", "versions");
+
+    @JsonProperty
+    private String dbPassword = envString("DB_PASSWORD", null);
+
+    @JsonProperty
+    private int dbMaxConnections = envInt("DB_MAX_CONNECTIONS", 100);
+
+    @JsonProperty
+    private int persistenceCacheSize = envInt("PERSISTENCE_CACHE_SIZE", 10000);
+
+    @JsonProperty
+    private int persistenceCacheTtlSeconds = envInt("PERSISTENCE_CACHE_TTL", 60);
+
+    @JsonProperty
+    private int persistenceQueueSize = envInt("PERSISTENCE_QUEUE_SIZE", 10000);
+
+    @JsonProperty
+    private int persistenceBatchSize = envInt("PERSISTENCE_BATCH_SIZE", 100);
+
+    @JsonProperty
+    private int persistenceFlushMillis = envInt("PERSISTENCE_FLUSH_INTERVAL_MS", 100);
+
+    // Metrics: requests slower than this (ms) are logged; histograms are flushed to the DataDog agent
+    @JsonProperty
+    private int callTimeThreshold = envInt("CALL_TIME_THRESHOLD", 3000);
+
+    @JsonProperty
+    private String statsdHost = envString("DATADOG_STATSD_HOST", null);
+
+    @JsonProperty
+    private int statsdPort = envInt("DATADOG_STATSD_PORT", 8125);
+
+    @JsonProperty
+    private String metricsPrefix = envString("DATADOG_PREFIX", "versions");
+
+    @JsonProperty
+    private int metricsFlushSeconds = envInt("METRICS_FLUSH_INTERVAL", 10);
+
+    // Access log: the fraction of requests logged (0 - 1).  See logback.groovy for the LOG_* (async logging) settings
+    @JsonProperty
+    private double accessLogSampleRate = envDouble("ACCESS_LOG_SAMPLE_RATE", 0.01);
+
+    public boolean isFastStart() {
+        return fastStart;
+    }
+
+    public int getWarmupIterations() {
+        return warmupIterations;
+    }
+
+    public int getRequestThreads() {
+        return requestThreads;
+    }
+
+    public int getRequestQueueSize() {
+        return requestQueueSize;
+    }
+
+    public int getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public String getRequestTimeoutOverrides() {
+        return requestTimeoutOverrides;
+    }
+
+    /**
+     * The timeout (ms) of requests to {@code endpoint} (i.e. {@code get}) using {@code strategy} (i.e. {@code path})
+     * for {@code version}: the most specific of the {@code strategy.endpoint.v<version>} and {@code strategy.endpoint}
+     * overrides, or else {@link #getRequestTimeout()} (which is in seconds).
+     *
+     * @throws IllegalArgumentException if an override has no {@code ms} or {@code s} unit (see {@link #parseMillis}).
+     */
+    public long getRequestTimeout(String strategy, String endpoint, int version) {
+        String key = strategy + "." + endpoint;
+        String versionKey = key + ".v" + version;
+        Long result = null;
+        if (requestTimeoutOverrides != null) {
+            for (String override : requestTimeoutOverrides.split(",")) {
+                int equals = override.indexOf('=');
+                if (equals == -1) {
+                    continue;
+                }
+                String name = override.substring(0, equals).trim();
+                if (name.equalsIgnoreCase(versionKey)) {
+                    return parseMillis(override.substring(equals + 1));
+                } else if (name.equalsIgnoreCase(key)) {
+                    result = parseMillis(override.substring(equals + 1));
+                }
+            }
+        }
+        return (result == null) ? TimeUnit.SECONDS.toMillis(requestTimeout) : result;
+    }
+
+    public String getInlineBudget() {
+        return inlineBudget;
+    }
+
+    /**
+     * The most time (ms) the work of a non-blocking route may take on average before it is moved off the container
+     * thread, to the request executor.
+     */
+    public long getInlineBudgetMillis() {
+        return parseMillis(inlineBudget);
+    }
+
+    public int getLimitInitial() {
+        return limitInitial;
+    }
+
+    public int getLimitMin() {
+        return limitMin;
+    }
+
+    public int getLimitMax() {
+        return limitMax;
+    }
+
+    public int getLimitLatencyThreshold() {
+        return limitLatencyThreshold;
+    }
+
+    public int getNeedsCachingTimeThreshold() {
+        return needsCachingTimeThreshold;
+    }
+
+    public int getNeedsCachingSizeThreshold() {
+        return needsCachingSizeThreshold;
+    }
+
+    public int getResponseCacheMaxBytes() {
+        return responseCacheMaxBytes;
+    }
+
+    public int getResponseCacheTtlSeconds() {
+        return responseCacheTtlSeconds;
+    }
+
+    public int getCompressionMinSize() {
+        return compressionMinSize;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public int getBatchConcurrency() {
+        return batchConcurrency;
+    }
+
+    public int getBatchMaxItems() {
+        return batchMaxItems;
+    }
+
+    public String getEventsSink() {
+        return eventsSink;
+    }
+
+    public String getEventsStream() {
+        return eventsStream;
+    }
+
+    public String getEventsFile() {
+        return eventsFile;
+    }
+
+    public int getEventsBufferSize() {
+        return eventsBufferSize;
+    }
+
+    public int getProducerThreads() {
+        return producerThreads;
+    }
+
+    public int getEventsFlushSeconds() {
+        return eventsFlushSeconds;
+    }
+
+    public String getKinesisRegion() {
+        return kinesisRegion;
+    }
+
+    public String getKinesisKey() {
+        return kinesisKey;
+    }
+
+    public String getKinesisSecret() {
+        return kinesisSecret;
+    }
+
+    public boolean isPersistenceEnabled() {
+        return persistenceEnabled;
+    }
+
+    public String getDbHost() {
+        return dbHost;
+    }
+
+    public int getDbPort() {
+        return dbPort;
+    }
+
+    public String getDbName() {
+        return dbName;
+    }
+
+    public String getDbUser() {
+        return dbUser;
+    }
+
+    public String getDbPassword() {
+        return dbPassword;
+    }
+
+    public int getDbMaxConnections() {
+        return dbMaxConnections;
+    }
+
+    public int getPersistenceCacheSize() {
+        return persistenceCacheSize;
+    }
+
+    public int getPersistenceCacheTtlSeconds() {
+        return persistenceCacheTtlSeconds;
+    }
+
+    public int getPersistenceQueueSize() {
+        return persistenceQueueSize;
+    }
+
+    public int getPersistenceBatchSize() {
+        return persistenceBatchSize;
+    }
+
+    public int getPersistenceFlushMillis() {
+        return persistenceFlushMillis;
+    }
+
+    public int getCallTimeThreshold() {
+        return callTimeThreshold;
+    }
+
+    public String getStatsdHost() {
+        return statsdHost;
+    }
+
+    public int getStatsdPort() {
+        return statsdPort;
+    }
+
+    public String getMetricsPrefix() {
+        return metricsPrefix;
+    }
+
+    public int getMetricsFlushSeconds() {
+        return metricsFlushSeconds;
+    }
+
+    public double getAccessLogSampleRate() {
+        return accessLogSampleRate;
+    }
+
+    /**
+     * Parses a duration with a unit, i.e. {@code 250ms} or {@code 5s}, to ms.  A bare number is rejected, since the
+     * settings it appears in do not share a unit.
+     *
+     * @throws IllegalArgumentException if {@code value} is not a non-negative number followed by {@code ms} or
+     *                                  {@code s}.
+     */
+    static long parseMillis(String value) {
+        String trimmed = value.trim().toLowerCase();
+        try {
+            if (trimmed.endsWith("ms")) {
+                return checkDuration(value, Long.parseLong(trimmed.substring(0, trimmed.length() - 2).trim()));
+            } else if (trimmed.endsWith("s")) {
+                return TimeUnit.SECONDS.toMillis(
+                    checkDuration(value, Long.parseLong(trimmed.substring(0, trimmed.length() - 1).trim())));
+            }
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Bad duration: '" + value + "'", ex);
+        }
+        throw new IllegalArgumentException("Bad duration: '" + value + "' (expected a unit, i.e. 250ms or 5s)");
+    }
+
+    private static long checkDuration(String value, long duration) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Bad duration: '" + value + "'");
+        }
+        return duration;
+    }
+
+    /**
+     * Reads an integer setting from the environment, falling back to {@code defaultValue} if it is missing.
+     */
+    static int envInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return ((value == null) || value.trim().isEmpty()) ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    /**
+     * Reads a decimal setting from the environment, falling back to {@code defaultValue} if it is missing.
+     */
+    static double envDouble(String name, double defaultValue) {
+        String value = System.getenv(name);
+        return ((value == null) || value.trim().isEmpty()) ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    /**
+     * Reads a String setting from the environment, falling back to {@code defaultValue} if it is missing.
+     */
+    static String envString(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return ((value == null) || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
 }
@@ -2,6 +2,21 @@ package com.vevo.versions;
 
 //import com.vevo.genesis.module.DependsOn;
 import com.vevo.genesis.module.GenesisModule;
+import com.vevo.versions.concurrent.AdaptiveLimiter;
+import com.vevo.versions.concurrent.RequestExecutor;
+import com.vevo.versions.events.UsagePipeline;
+import com.vevo.versions.metrics.MetricRegistry;
+import com.vevo.versions.metrics.RequestMetrics;
+import com.vevo.versions.persistence.SomethingStore;
+import com.vevo.versions.resources.BatchResource;
+import com.vevo.versions.resources.CompressionInterceptor;
+import com.vevo.versions.resources.Compressor;
+import com.vevo.versions.resources.RequestCoalescer;
+import com.vevo.versions.resources.RequestDispatcher;
+import com.vevo.versions.resources.ResourceWarmUp;
+import com.vevo.versions.resources.ResponseCache;
+import com.vevo.versions.resources.VersionNegotiator;
+import com.vevo.versions.resources.VersionedResponseWriter;
 import com.vevo.versions.resources.VersionsResource;
 
 import java.util.logging.Handler;
@@ -24,9 +39,36 @@ class Module extends GenesisModule {
 
     @Override
     public void configure() {
-        //resources
+        bindAll();
+        StartupProfiler.get().time("module.logging", Module::configureLogging);
+    }
+
+    private void bindAll() {
+        //the registry each of the singletons below registers its gauges and counters in, and the metrics reporting them
+        bind(MetricRegistry.class);
+        bind(RequestMetrics.class);
+
+        //request executor, concurrency limit and the dispatcher running requests under them, compressor, response
+        //cache, coalescer, usage events, persistence and header negotiation, shared by all resources
+        bind(RequestExecutor.class);
+        bind(AdaptiveLimiter.class);
+        bind(RequestDispatcher.class);
+        bind(Compressor.class);
+        bind(ResponseCache.class);
+        bind(RequestCoalescer.class);
+        bind(UsagePipeline.class);
+        bind(SomethingStore.class);
+        bind(VersionNegotiator.class);
+
+        //resources, the writer of their versioned responses, response compression, and the fast-start warm-up
         bind(VersionsResource.class);
+        bind(BatchResource.class);
+        bind(VersionedResponseWriter.class);
+        bind(CompressionInterceptor.class);
+        bind(ResourceWarmUp.class);
+    }
 
+    private static void configureLogging() {
         //set this so we don't constantly get warnings from the jersey client / replay code
         System.setProperty("sun.net.http.allowRestrictedHeaders", "true");
 
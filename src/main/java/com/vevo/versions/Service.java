@@ -3,16 +3,43 @@ package com.vevo.versions;
 import com.vevo.genesis.Genesis;
 import com.vevo.genesis.bootstrap.cli.CommandLineParser;
 import com.vevo.genesis.bootstrap.cli.ParsedCommandLine;
+import com.vevo.versions.logging.CountingAsyncAppender;
+import com.vevo.versions.metrics.RequestMetrics;
+import com.vevo.versions.resources.BatchResource;
+import com.vevo.versions.resources.ResourceWarmUp;
 
 public class Service {
 
     public static void main(String[] args) {
-        ParsedCommandLine cl = CommandLineParser.parse(args);
-        Genesis genesis = new Genesis.Builder()
-            .parseConfig(cl, Config.class)
+        StartupProfiler profiler = StartupProfiler.get();
+        ParsedCommandLine cl = profiler.time("arguments", () -> CommandLineParser.parse(args));
+        Genesis.Builder builder = profiler.time("config", () -> new Genesis.Builder()
+            .parseConfig(cl, Config.class));
+        Genesis genesis = profiler.time("genesis", () -> builder
             .bindModule(Module.class)
-            .build();
+            .build());
 
-        genesis.getEndpoint().start();
+        //create the resources and the singletons they depend on (executor, caches, store, metrics, ...)
+        ResourceWarmUp warmUp = profiler.time("resources", () -> {
+            genesis.getLocator().get(BatchResource.class);
+            return genesis.getLocator().get(ResourceWarmUp.class);
+        });
+
+        //report the metrics no injected component registers, and start reporting (nothing is flushed until the first
+        //interval anyway, so in fast-start mode this need not delay startup)
+        Config config = genesis.getLocator().get(Config.class);
+        RequestMetrics metrics = genesis.getLocator().get(RequestMetrics.class);
+        CountingAsyncAppender.register(metrics.getRegistry());
+        metrics.getRegistry().gauge("startup.ready_ms", profiler::getReadyMillis);
+        profiler.defer("statsd", config.isFastStart(), metrics::startReporting);
+
+        //in fast-start mode, JIT compile the request paths now rather than on the first requests
+        if (config.isFastStart()) {
+            profiler.time("warm_up", () -> warmUp.run(config.getWarmupIterations()));
+        }
+
+        //ready once the endpoint accepts requests, so its startup is part of the time to ready
+        profiler.time("endpoint", () -> genesis.getEndpoint().start());
+        profiler.ready();
     }
 }
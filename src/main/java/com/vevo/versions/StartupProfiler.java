@@ -0,0 +1,105 @@
+package com.vevo.versions;
+
+import com.vevo.versions.concurrent.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+
+/**
+ * Records how long each bootstrap phase takes (config, Genesis build, creating the resources, warm-up, ...) and logs
+ * the breakdown once the service is ready, so slow starts can be traced to a phase.  It is static because the first
+ * phases run before anything can be injected.
+ *
+ * <p>In fast-start mode ({@link Config#isFastStart()}), initialization which no request depends on is
+ * {@link #defer deferred} to a background thread, and timed there.</p>
+ */
+public final class StartupProfiler {
+    private static final Logger log = LoggerFactory.getLogger(StartupProfiler.class);
+    private static final StartupProfiler INSTANCE = new StartupProfiler();
+
+    private final long start = System.nanoTime();
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final NamedThreadFactory deferredThreads = new NamedThreadFactory("versions-startup-");
+    private volatile long readyMillis;
+
+    StartupProfiler() {
+    }
+
+    public static StartupProfiler get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Runs {@code work}, recording its duration as {@code phase}.
+     */
+    public <T> T time(String phase, Supplier<T> work) {
+        long phaseStart = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(phase, System.nanoTime() - phaseStart);
+        }
+    }
+
+    public void time(String phase, Runnable work) {
+        time(phase, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs {@code work}, timed as {@code phase}: on a background thread if {@code background} (fast-start mode), else
+     * now.  Failures on the background thread are logged.
+     */
+    public void defer(String phase, boolean background, Runnable work) {
+        if (!background) {
+            time(phase, work);
+            return;
+        }
+        deferredThreads.newThread(() -> {
+            try {
+                time("deferred." + phase, work);
+            } catch (RuntimeException ex) {
+                log.error("Deferred startup phase failed: {}", phase, ex);
+            }
+        }).start();
+    }
+
+    /**
+     * Marks the service ready, and logs the time since the JVM started and each phase recorded so far (deferred
+     * phases may still be running).
+     */
+    public void ready() {
+        readyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long jvmMillis = ManagementFactory.getRuntimeMXBean().getUptime() - readyMillis;
+        log.info("Ready in {}ms ({}ms before main): {}", readyMillis, jvmMillis, getPhases());
+    }
+
+    /**
+     * The time (ms) from {@code main} until {@link #ready()}, or 0 if not ready yet.
+     */
+    public long getReadyMillis() {
+        return readyMillis;
+    }
+
+    /**
+     * The duration (ms) of each phase recorded so far, in the order they finished.
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return new LinkedHashMap<>(phases);
+    }
+
+    private synchronized void record(String phase, long nanos) {
+        phases.put(phase, TimeUnit.NANOSECONDS.toMillis(nanos));
+        if (readyMillis > 0) {
+            log.info("Startup phase {} finished after ready: {}ms", phase, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.vevo.versions.concurrent;
+
+import com.vevo.versions.Config;
+import com.vevo.versions.metrics.MetricRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+
+/**
+ * An AIMD (additive increase, multiplicative decrease) limit on the number of requests in flight.  A request is only
+ * admitted by {@link #tryAcquire()} while fewer than {@link #getLimit()} are in flight; the rest should be shed (503)
+ * rather than queued.  Each request that completes within the latency threshold while the limit is in use grows the
+ * limit by about one per limit's worth of requests; a slow, timed out or cancelled request shrinks it by
+ * {@link #BACKOFF_RATIO}.  The limit stays within {@link Config#getLimitMin()} and {@link Config#getLimitMax()}.
+ */
+@Singleton
+public class AdaptiveLimiter {
+    public static final double BACKOFF_RATIO = 0.9;
+
+    // The limit is kept in fixed point so that it can grow by fractions of a request
+    private static final long SCALE = 1000;
+
+    private final long minLimit;
+    private final long maxLimit;
+    private final long latencyThresholdNanos;
+    private final AtomicLong scaledLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    @Inject
+    public AdaptiveLimiter(Config config, MetricRegistry metrics) {
+        this(config.getLimitInitial(), config.getLimitMin(), config.getLimitMax(), config.getLimitLatencyThreshold());
+        metrics.gauge("limiter.limit", this::getLimit);
+        metrics.gauge("limiter.in_flight", this::getInFlight);
+        metrics.counter("limiter.rejected", this::getRejectedCount);
+    }
+
+    /**
+     * @param initialLimit              The limit to start with.
+     * @param minLimit                  The smallest the limit may shrink to.
+     * @param maxLimit                  The largest the limit may grow to.
+     * @param latencyThresholdMillis    Requests slower than this shrink the limit.
+     */
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit, int latencyThresholdMillis) {
+        this.minLimit = minLimit * SCALE;
+        this.maxLimit = maxLimit * SCALE;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMillis);
+        this.scaledLimit = new AtomicLong(Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit * SCALE)));
+    }
+
+    /**
+     * Admits a request if the limit allows it.  Every admitted request must be followed by one call to
+     * {@link #onSuccess(long)}, {@link #onDropped()} or {@link #release()}.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Whether {@link #tryAcquire()} would admit a request now, without admitting it: for requests which take their
+     * permit later, i.e. streams, which only take it once their response is written.  {@code false} is counted as a
+     * rejection.
+     */
+    public boolean hasCapacity() {
+        if (inFlight.get() < getLimit()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Releases a request which completed after {@code latencyNanos}.
+     */
+    public void onSuccess(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        if (latencyNanos > latencyThresholdNanos) {
+            backoff();
+        } else if ((current * 2) >= getLimit()) {
+            // Only grow while at least half of the limit is in use, so an idle service does not inflate it
+            scaledLimit.accumulateAndGet(maxLimit, (limit, max) -> Math.min(max, limit + ((SCALE * SCALE) / limit)));
+        }
+    }
+
+    /**
+     * Releases a request which timed out, was cancelled or could not be run.
+     */
+    public void onDropped() {
+        inFlight.decrementAndGet();
+        backoff();
+    }
+
+    /**
+     * Releases a request without adapting the limit, for requests whose latency says nothing about the service's
+     * load, i.e. streams, which last as long as the client takes to send them.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) (scaledLimit.get() / SCALE);
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    private void backoff() {
+        scaledLimit.accumulateAndGet(minLimit, (limit, min) -> Math.max(min, (long) (limit * BACKOFF_RATIO)));
+    }
+}
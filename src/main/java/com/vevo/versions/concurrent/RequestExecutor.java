@@ -0,0 +1,69 @@
+package com.vevo.versions.concurrent;
+
+import com.vevo.versions.Config;
+import com.vevo.versions.metrics.MetricRegistry;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+
+/**
+ * The executor used for all asynchronous request work, sized by {@link Config#getRequestThreads()} and
+ * {@link Config#getRequestQueueSize()}.  This keeps request work off the JVM-wide common ForkJoinPool.  When both the
+ * threads and the queue are full, {@link #execute(Runnable)} throws {@link RejectedExecutionException} so that the
+ * caller can respond with a 503 instead of queueing without bound.
+ */
+@Singleton
+public class RequestExecutor implements Executor {
+    public static final String THREAD_NAME_PREFIX = "versions-request-";
+
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejected = new LongAdder();
+
+    @Inject
+    public RequestExecutor(Config config, MetricRegistry metrics) {
+        this(config.getRequestThreads(), config.getRequestQueueSize());
+        metrics.gauge("executor.queue_depth", this::getQueueDepth);
+        metrics.gauge("executor.active_threads", this::getActiveThreads);
+        metrics.counter("executor.rejected", this::getRejectedCount);
+    }
+
+    public RequestExecutor(int threads, int queueSize) {
+        this.executor = new ThreadPoolExecutor(
+            threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize),
+            new NamedThreadFactory(THREAD_NAME_PREFIX),
+            (task, pool) -> {
+                rejected.increment();
+                throw new RejectedExecutionException("Request executor saturated");
+            });
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        executor.execute(command);
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
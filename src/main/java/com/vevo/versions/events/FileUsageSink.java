@@ -0,0 +1,38 @@
+package com.vevo.versions.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+
+/**
+ * Appends each count as a line of JSON (NDJSON) to a file, as a local stand-in for Kinesis.
+ */
+public class FileUsageSink implements UsageSink {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final OutputStream out;
+
+    public FileUsageSink(String path) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(path, true));
+    }
+
+    @Override
+    public synchronized int send(List<UsageCount> batch) throws IOException {
+        for (UsageCount count : batch) {
+            out.write(MAPPER.writeValueAsBytes(count));
+            out.write('\n');
+        }
+        out.flush();
+        return 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
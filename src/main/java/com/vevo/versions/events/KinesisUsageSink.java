@@ -0,0 +1,71 @@
+package com.vevo.versions.events;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.internal.StaticCredentialsProvider;
+import com.amazonaws.regions.Region;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.kinesis.AmazonKinesisClient;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Sends each batch to a Kinesis stream with one {@code PutRecords} call, partitioned by client id.  Records which
+ * Kinesis fails (i.e. throttled) are dropped, as usage is only ever reported in aggregate, and returned as failed.
+ */
+public class KinesisUsageSink implements UsageSink {
+    private static final Logger log = LoggerFactory.getLogger(KinesisUsageSink.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final AmazonKinesisClient kinesis;
+    private final String stream;
+
+    /**
+     * @param stream    The Kinesis stream name.
+     * @param region    The AWS region, i.e. {@code us-east-1}.
+     * @param key       The AWS access key, or {@code null} to use the default credentials chain.
+     * @param secret    The AWS secret key.
+     */
+    public KinesisUsageSink(String stream, String region, String key, String secret) {
+        AWSCredentialsProvider credentials = ((key == null) || key.isEmpty())
+            ? new DefaultAWSCredentialsProviderChain()
+            : new StaticCredentialsProvider(new BasicAWSCredentials(key, secret));
+        this.kinesis = new AmazonKinesisClient(credentials);
+        this.kinesis.setRegion(Region.getRegion(Regions.fromName(region)));
+        this.stream = stream;
+    }
+
+    @Override
+    public int send(List<UsageCount> batch) throws Exception {
+        List<PutRecordsRequestEntry> entries = new ArrayList<>(batch.size());
+        for (UsageCount count : batch) {
+            entries.add(new PutRecordsRequestEntry()
+                .withPartitionKey(count.getClientId())
+                .withData(ByteBuffer.wrap(MAPPER.writeValueAsBytes(count))));
+        }
+        PutRecordsResult result = kinesis.putRecords(new PutRecordsRequest()
+            .withStreamName(stream)
+            .withRecords(entries));
+        Integer failures = result.getFailedRecordCount();
+        if ((failures == null) || (failures == 0)) {
+            return 0;
+        }
+        log.warn("Kinesis failed {} of {} usage records", failures, entries.size());
+        return failures;
+    }
+
+    @Override
+    public void close() {
+        kinesis.shutdown();
+    }
+}
@@ -0,0 +1,36 @@
+package com.vevo.versions.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+/**
+ * Keeps everything sent in memory, for tests and local runs.
+ */
+public class MemoryUsageSink implements UsageSink {
+    private final ConcurrentLinkedQueue<UsageCount> counts = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public int send(List<UsageCount> batch) {
+        counts.addAll(batch);
+        return 0;
+    }
+
+    public List<UsageCount> getCounts() {
+        return new ArrayList<>(counts);
+    }
+
+    /**
+     * The total count of the events equal to {@code event}.
+     */
+    public long getTotal(UsageEvent event) {
+        long total = 0;
+        for (UsageCount count : counts) {
+            if (count.getEvent().equals(event)) {
+                total += count.getCount();
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,97 @@
+package com.vevo.versions.events;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * A bounded, lock-free, multi-producer multi-consumer queue (Dmitry Vyukov's array-based design).  Each slot has a
+ * sequence number which tells producers and consumers whether it is free or full for their lap around the ring, so
+ * {@link #offer} and {@link #poll} each need one CAS on an uncontended path, never block, and never allocate.
+ *
+ * @param <T> The element type.
+ */
+public final class RingBuffer<T> {
+    private final int mask;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    private final AtomicLong dequeuePosition = new AtomicLong();
+
+    /**
+     * @param capacity  The number of elements the buffer can hold, a power of two.
+     */
+    public RingBuffer(int capacity) {
+        if ((capacity < 2) || (Integer.bitCount(capacity) != 1)) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.mask = capacity - 1;
+        this.items = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int idx = 0; idx < capacity; idx++) {
+            sequences.set(idx, idx);
+        }
+    }
+
+    /**
+     * Adds {@code item}, returning {@code false} (without waiting) if the buffer is full.
+     */
+    public boolean offer(T item) {
+        long position = enqueuePosition.get();
+        while (true) {
+            int idx = (int) (position & mask);
+            long difference = sequences.get(idx) - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    items.lazySet(idx, item);
+                    sequences.lazySet(idx, position + 1);
+                    return true;
+                }
+                position = enqueuePosition.get();
+            } else if (difference < 0) {
+                // The slot still holds the element of the previous lap
+                return false;
+            } else {
+                position = enqueuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the oldest element, or {@code null} if the buffer is empty.
+     */
+    public T poll() {
+        long position = dequeuePosition.get();
+        while (true) {
+            int idx = (int) (position & mask);
+            long difference = sequences.get(idx) - (position + 1);
+            if (difference == 0) {
+                if (dequeuePosition.compareAndSet(position, position + 1)) {
+                    T item = items.get(idx);
+                    items.lazySet(idx, null);
+                    sequences.lazySet(idx, position + mask + 1);
+                    return item;
+                }
+                position = dequeuePosition.get();
+            } else if (difference < 0) {
+                // The slot has not been filled for this lap yet
+                return null;
+            } else {
+                position = dequeuePosition.get();
+            }
+        }
+    }
+
+    /**
+     * The approximate number of elements in the buffer.
+     */
+    public int size() {
+        long size = enqueuePosition.get() - dequeuePosition.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,66 @@
+package com.vevo.versions.events;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+
+/**
+ * The number of equal {@link UsageEvent}s seen in a time window ({@code from} / {@code to}, epoch millis).  This is
+ * what is sent to a {@link UsageSink}, serialized as i.e.
+ * {@code {"version":1,"strategy":"path","endpoint":"get","clientId":"web","count":42,"from":...,"to":...}}.
+ */
+@JsonPropertyOrder({"version", "strategy", "endpoint", "clientId", "count", "from", "to"})
+public final class UsageCount {
+    private final UsageEvent event;
+    private final long count;
+    private final long from;
+    private final long to;
+
+    public UsageCount(UsageEvent event, long count, long from, long to) {
+        this.event = event;
+        this.count = count;
+        this.from = from;
+        this.to = to;
+    }
+
+    @JsonProperty
+    public int getVersion() {
+        return event.getVersion();
+    }
+
+    @JsonProperty
+    public String getStrategy() {
+        return event.getEndpoint().getStrategy();
+    }
+
+    @JsonProperty
+    public String getEndpoint() {
+        return event.getEndpoint().getName();
+    }
+
+    @JsonProperty
+    public String getClientId() {
+        return event.getClientId();
+    }
+
+    @JsonProperty
+    public long getCount() {
+        return count;
+    }
+
+    @JsonProperty
+    public long getFrom() {
+        return from;
+    }
+
+    @JsonProperty
+    public long getTo() {
+        return to;
+    }
+
+    @JsonIgnore
+    public UsageEvent getEvent() {
+        return event;
+    }
+}
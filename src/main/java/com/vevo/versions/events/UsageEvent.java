@@ -0,0 +1,53 @@
+package com.vevo.versions.events;
+
+import com.vevo.versions.metrics.Endpoint;
+
+
+/**
+ * One use of a versioned endpoint: which version, strategy and endpoint, by which client.  Equal events are
+ * aggregated into a {@link UsageCount}.
+ */
+public final class UsageEvent {
+    private final Endpoint endpoint;
+    private final int version;
+    private final String clientId;
+    private final int hash;
+
+    public UsageEvent(Endpoint endpoint, int version, String clientId) {
+        this.endpoint = endpoint;
+        this.version = version;
+        this.clientId = clientId;
+        this.hash = (((endpoint.hashCode() * 31) + version) * 31) + clientId.hashCode();
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof UsageEvent)) {
+            return false;
+        }
+        UsageEvent event = (UsageEvent) other;
+        return (endpoint == event.endpoint) && (version == event.version) && clientId.equals(event.clientId);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "UsageEvent[" + endpoint.getTags() + ",version:" + version + ",client:" + clientId + "]";
+    }
+}
@@ -0,0 +1,279 @@
+package com.vevo.versions.events;
+
+import com.vevo.versions.Config;
+import com.vevo.versions.StartupProfiler;
+import com.vevo.versions.concurrent.NamedThreadFactory;
+import com.vevo.versions.metrics.Endpoint;
+import com.vevo.versions.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+
+/**
+ * Records which clients use which versions, so we know who still calls a version before retiring it.  The request
+ * path only {@link #record}s a {@link UsageEvent} into a lock-free {@link RingBuffer}: no locks and no I/O, and if the
+ * buffer is full the event is dropped and counted rather than waited on.  Background producer threads drain the
+ * buffer, count equal events per flush interval, and send the counts to the {@link UsageSink} in batches of up to
+ * {@link #MAX_BATCH_SIZE} (the Kinesis {@code PutRecords} limit).  Idle producers back off, parking for up to the
+ * flush interval, and the next event recorded wakes them.  The sink is chosen by
+ * {@link Config#getEventsSink()}: {@code kinesis}, {@code file}, {@code memory}, or {@code none} (the default), which
+ * disables recording entirely.
+ */
+@Singleton
+public class UsagePipeline {
+    public static final String THREAD_NAME_PREFIX = "versions-usage-";
+    public static final int MAX_BATCH_SIZE = 500;
+    private static final Logger log = LoggerFactory.getLogger(UsagePipeline.class);
+    private static final long MIN_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final RingBuffer<UsageEvent> buffer;
+    private final int threads;
+    private final long flushMillis;
+    private final List<Thread> producers = new ArrayList<>();
+    private volatile UsageSink sink;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile boolean running = true;
+    // Set by producers which are backing off, so record() knows to wake them
+    private volatile boolean idle;
+
+    @Inject
+    public UsagePipeline(Config config, MetricRegistry metrics) {
+        this(!sinkType(config).equals("none"), config.getEventsBufferSize(), config.getProducerThreads(),
+            TimeUnit.SECONDS.toMillis(config.getEventsFlushSeconds()));
+        metrics.counter("events.dropped", this::getDroppedCount);
+        metrics.gauge("events.buffered", this::getBufferedCount);
+        metrics.counter("events.sent", this::getSentCount);
+        metrics.counter("events.failed", this::getFailedCount);
+        if (buffer != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, THREAD_NAME_PREFIX + "shutdown"));
+            // Creating the sink can be slow (the Kinesis client loads much of the AWS SDK); events are buffered until
+            // it is started
+            StartupProfiler.get().defer("usage_sink", config.isFastStart(), () -> {
+                try {
+                    start(createSink(config));
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        }
+    }
+
+    /**
+     * @param sink          Where counts are sent, or {@code null} to disable recording.
+     * @param bufferSize    The capacity of the ring buffer, a power of two.
+     * @param threads       The number of producer threads.
+     * @param flushMillis   How often each producer sends its counts.
+     */
+    public UsagePipeline(UsageSink sink, int bufferSize, int threads, long flushMillis) {
+        this(sink != null, bufferSize, threads, flushMillis);
+        if (sink != null) {
+            start(sink);
+        }
+    }
+
+    private UsagePipeline(boolean enabled, int bufferSize, int threads, long flushMillis) {
+        this.buffer = enabled ? new RingBuffer<>(bufferSize) : null;
+        this.threads = threads;
+        this.flushMillis = flushMillis;
+    }
+
+    /**
+     * Starts the producers, sending to {@code sink}.  Until then, events are only buffered.
+     */
+    private synchronized void start(UsageSink sink) {
+        if (!running) {
+            return;
+        }
+        this.sink = sink;
+        ThreadFactory threadFactory = new NamedThreadFactory(THREAD_NAME_PREFIX);
+        for (int idx = 0; idx < threads; idx++) {
+            Thread producer = threadFactory.newThread(this::produce);
+            producers.add(producer);
+            producer.start();
+        }
+    }
+
+    /**
+     * Records one use of {@code endpoint} at {@code version} by {@code clientId}.  Never blocks.
+     */
+    public void record(Endpoint endpoint, int version, String clientId) {
+        if (buffer == null) {
+            return;
+        }
+        if (!buffer.offer(new UsageEvent(endpoint, version, clientId))) {
+            dropped.increment();
+        }
+        if (idle) {
+            wakeProducers();
+        }
+    }
+
+    public boolean isEnabled() {
+        return buffer != null;
+    }
+
+    /**
+     * Stops the producers once they have sent everything recorded so far, then closes the sink.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        if (sink == null) {
+            // Never started
+            return;
+        }
+        wakeProducers();
+        for (Thread producer : producers) {
+            try {
+                producer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        try {
+            sink.close();
+        } catch (Exception ex) {
+            log.warn("Failed to close usage sink", ex);
+        }
+    }
+
+    /**
+     * The number of events dropped because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * The number of counts sent to the sink, and the number which failed to send.
+     */
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public int getBufferedCount() {
+        return (buffer == null) ? 0 : buffer.size();
+    }
+
+    private void wakeProducers() {
+        idle = false;
+        for (Thread producer : producers) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    /**
+     * The producer loop: counts events into a map owned by this thread (so no synchronization), and flushes it every
+     * {@code flushMillis}, when it holds a full batch, and on shutdown.  While the buffer is empty it parks, doubling
+     * the park up to {@code flushMillis} (but not past the next flush of pending counts).
+     */
+    private void produce() {
+        Map<UsageEvent, long[]> counts = new HashMap<>();
+        long windowStart = System.currentTimeMillis();
+        long flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        long idleNanos = MIN_IDLE_NANOS;
+        while (true) {
+            UsageEvent event = buffer.poll();
+            if (event != null) {
+                counts.computeIfAbsent(event, key -> new long[1])[0]++;
+                idleNanos = MIN_IDLE_NANOS;
+            } else if (!running) {
+                break;
+            }
+            long now = System.currentTimeMillis();
+            if ((counts.size() >= MAX_BATCH_SIZE) || (now - windowStart >= flushMillis)) {
+                flush(counts, windowStart, now);
+                windowStart = now;
+            }
+            if (event == null) {
+                long untilFlush = counts.isEmpty() ? flushNanos
+                    : TimeUnit.MILLISECONDS.toNanos(Math.max(1, windowStart + flushMillis - now));
+                if (idleNanos > MIN_IDLE_NANOS) {
+                    idle = true;
+                }
+                // Checked after setting idle, so an event recorded meanwhile is not slept through
+                if (buffer.size() == 0) {
+                    LockSupport.parkNanos(Math.min(idleNanos, untilFlush));
+                }
+                idleNanos = Math.min(idleNanos * 2, Math.max(flushNanos, MIN_IDLE_NANOS));
+            }
+        }
+        flush(counts, windowStart, System.currentTimeMillis());
+    }
+
+    private void flush(Map<UsageEvent, long[]> counts, long from, long to) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<UsageCount> batch = new ArrayList<>(counts.size());
+        for (Map.Entry<UsageEvent, long[]> entry : counts.entrySet()) {
+            batch.add(new UsageCount(entry.getKey(), entry.getValue()[0], from, to));
+        }
+        counts.clear();
+        for (int start = 0; start < batch.size(); start += MAX_BATCH_SIZE) {
+            List<UsageCount> chunk = batch.subList(start, Math.min(start + MAX_BATCH_SIZE, batch.size()));
+            try {
+                int failures = Math.min(sink.send(chunk), chunk.size());
+                sent.add(chunk.size() - failures);
+                failed.add(failures);
+            } catch (Exception ex) {
+                failed.add(chunk.size());
+                log.warn("Failed to send {} usage counts", chunk.size(), ex);
+            }
+        }
+    }
+
+    /**
+     * The sink type from {@link Config#getEventsSink()}, in lower case.
+     */
+    private static String sinkType(Config config) {
+        String type = config.getEventsSink();
+        type = (type == null) ? "none" : type.toLowerCase();
+        switch (type) {
+            case "kinesis":
+            case "file":
+            case "memory":
+            case "none":
+                return type;
+            default:
+                throw new IllegalArgumentException("Unknown EVENTS_SINK: " + type);
+        }
+    }
+
+    private static UsageSink createSink(Config config) throws IOException {
+        switch (sinkType(config)) {
+            case "kinesis":
+                return new KinesisUsageSink(config.getEventsStream(), config.getKinesisRegion(), config.getKinesisKey(),
+                    config.getKinesisSecret());
+            case "file":
+                return new FileUsageSink(config.getEventsFile());
+            default:
+                return new MemoryUsageSink();
+        }
+    }
+}
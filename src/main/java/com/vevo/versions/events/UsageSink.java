@@ -0,0 +1,23 @@
+package com.vevo.versions.events;
+
+import java.util.List;
+
+
+/**
+ * Where aggregated usage is sent.  Called from the {@link UsagePipeline} producer threads (concurrently, if there are
+ * several), never from a request thread, with at most {@link UsagePipeline#MAX_BATCH_SIZE} counts at a time.
+ */
+public interface UsageSink {
+
+    /**
+     * Sends {@code batch}, returning how many of its counts failed to send (i.e. were throttled), or throwing if the
+     * whole batch failed.
+     */
+    int send(List<UsageCount> batch) throws Exception;
+
+    /**
+     * Releases any resources.  Called once, after the last {@link #send}.
+     */
+    default void close() throws Exception {
+    }
+}
@@ -0,0 +1,114 @@
+package com.vevo.versions.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import com.vevo.versions.metrics.MetricRegistry;
+import org.slf4j.ILoggerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * An {@link AsyncAppender} which counts what it does not write, so the cost of logging under load shows up in the
+ * metrics instead of in request latency.  Events are <em>discarded</em> when the queue has less than
+ * {@code discardingThreshold} slots left and they are at or below {@code discardLevel} (INFO by default), and
+ * <em>dropped</em> when the queue is full and {@code neverBlock} is set.  Configured in {@code logback.groovy}.
+ */
+public class CountingAsyncAppender extends AsyncAppender {
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private Level discardLevel = Level.INFO;
+
+    /**
+     * The most severe level which may be discarded, i.e. {@code INFO}; {@code OFF} (or a discarding threshold of 0)
+     * never discards.
+     */
+    public void setDiscardLevel(String level) {
+        this.discardLevel = Level.toLevel(level, Level.INFO);
+    }
+
+    public String getDiscardLevel() {
+        return discardLevel.toString();
+    }
+
+    @Override
+    protected boolean isDiscardable(ILoggingEvent event) {
+        if (isDiscardableLevel(event)) {
+            discarded.increment();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        if (isNeverBlock() && (getRemainingCapacity() == 0)) {
+            // The queue offer would fail anyway; count it, and skip preparing the event for the worker
+            if (isDiscardableLevel(event) && (getDiscardingThreshold() > 0)) {
+                discarded.increment();
+            } else {
+                dropped.increment();
+            }
+            return;
+        }
+        super.append(event);
+    }
+
+    /**
+     * The number of events discarded (at or below {@code discardLevel}) because the queue was nearly full.
+     */
+    public long getDiscardedCount() {
+        return discarded.sum();
+    }
+
+    /**
+     * The number of events dropped because the queue was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * The async appenders attached to the root logger, or none if logback is not the slf4j binding.
+     */
+    public static List<CountingAsyncAppender> find() {
+        List<CountingAsyncAppender> result = new ArrayList<>();
+        ILoggerFactory factory = LoggerFactory.getILoggerFactory();
+        if (factory instanceof LoggerContext) {
+            Iterator<Appender<ILoggingEvent>> appenders =
+                ((LoggerContext) factory).getLogger(Logger.ROOT_LOGGER_NAME).iteratorForAppenders();
+            while (appenders.hasNext()) {
+                Appender<ILoggingEvent> appender = appenders.next();
+                if (appender instanceof CountingAsyncAppender) {
+                    result.add((CountingAsyncAppender) appender);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Registers the queue depth and the discarded and dropped counts of the appenders {@link #find() attached to the
+     * root logger}, as {@code logging.<appender name>.*}.
+     */
+    public static void register(MetricRegistry metrics) {
+        for (CountingAsyncAppender appender : find()) {
+            String name = "logging." + appender.getName().toLowerCase();
+            metrics.gauge(name + ".queued", appender::getNumberOfElementsInQueue);
+            metrics.counter(name + ".discarded", appender::getDiscardedCount);
+            metrics.counter(name + ".dropped", appender::getDroppedCount);
+        }
+    }
+
+    private boolean isDiscardableLevel(ILoggingEvent event) {
+        return event.getLevel().toInt() <= discardLevel.toInt();
+    }
+}
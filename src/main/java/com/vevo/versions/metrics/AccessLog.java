@@ -0,0 +1,49 @@
+package com.vevo.versions.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A sampled access log: one line of {@code key=value} pairs (endpoint, strategy, version and timings) for a random
+ * {@code sampleRate} fraction of requests, to the {@code com.vevo.versions.access} logger.  Requests which are not
+ * sampled cost one random number, and nothing is formatted for them.
+ */
+public class AccessLog {
+    public static final String LOGGER_NAME = "com.vevo.versions.access";
+
+    private final Logger log;
+    private final double sampleRate;
+
+    /**
+     * @param sampleRate    The fraction of requests logged, 0 (none) to 1 (all).
+     */
+    public AccessLog(double sampleRate) {
+        this(LoggerFactory.getLogger(LOGGER_NAME), sampleRate);
+    }
+
+    public AccessLog(Logger log, double sampleRate) {
+        this.log = log;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Logs {@code timing}, which finished after {@code totalNanos}, if it is sampled.
+     */
+    void log(RequestTiming timing, long totalNanos) {
+        log(timing.getEndpoint(), timing.getVersion(), totalNanos, timing.getQueueNanos(), timing.getWorkNanos());
+    }
+
+    public void log(Endpoint endpoint, int version, long totalNanos, long queueNanos, long workNanos) {
+        if ((sampleRate <= 0) || ((sampleRate < 1) && (ThreadLocalRandom.current().nextDouble() >= sampleRate))
+                || !log.isInfoEnabled()) {
+            return;
+        }
+        log.info("endpoint={} strategy={} version={} total_us={} queue_us={} work_us={}",
+            endpoint.getName(), endpoint.getStrategy(), version, TimeUnit.NANOSECONDS.toMicros(totalNanos),
+            TimeUnit.NANOSECONDS.toMicros(queueNanos), TimeUnit.NANOSECONDS.toMicros(workNanos));
+    }
+}
@@ -0,0 +1,40 @@
+package com.vevo.versions.metrics;
+
+
+/**
+ * The request types which are timed, with their statsd tags.
+ */
+public enum Endpoint {
+    PATH_GET("get", "path"),
+    PATH_POST("post", "path"),
+    PATH_STREAM("stream", "path"),
+    HEADER_GET("get", "header"),
+    HEADER_POST("post", "header"),
+    HEADER_STREAM("stream", "header"),
+    BATCH("batch", "batch");
+
+    private final String name;
+    private final String strategy;
+    private final String tags;
+
+    Endpoint(String name, String strategy) {
+        this.name = name;
+        this.strategy = strategy;
+        this.tags = "endpoint:" + name + ",strategy:" + strategy;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * The statsd tags, i.e. {@code endpoint:get,strategy:path}.
+     */
+    public String getTags() {
+        return tags;
+    }
+}
@@ -0,0 +1,129 @@
+package com.vevo.versions.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A lock-free latency histogram with log-linear buckets: exact below 16 micros, then 8 buckets per power of two (about
+ * 12% precision) up to about 12 days.  Recording is a few atomic increments and never allocates, so it can be used
+ * on the request path.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+    private static final int LINEAR_BITS = SUB_BITS + 1;
+    private static final int MAX_BITS = 40;
+    private static final long MAX_MICROS = (1L << MAX_BITS) - 1;
+    private static final int BUCKETS = LINEAR_BUCKETS + ((MAX_BITS - LINEAR_BITS) * SUB_BUCKETS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long duration, TimeUnit unit) {
+        recordMicros(unit.toMicros(duration));
+    }
+
+    public void recordNanos(long nanos) {
+        recordMicros(nanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_MICROS);
+        counts.incrementAndGet(bucket(value));
+        long current = max.get();
+        while ((value > current) && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * A copy of the current counts.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int idx = 0; idx < BUCKETS; idx++) {
+            copy[idx] = counts.get(idx);
+        }
+        return new Snapshot(copy, max.get());
+    }
+
+    /**
+     * A copy of the current counts, resetting them, i.e. for reporting per interval.  Values recorded concurrently
+     * are counted in either this or the next interval.
+     */
+    public Snapshot drain() {
+        long[] copy = new long[BUCKETS];
+        for (int idx = 0; idx < BUCKETS; idx++) {
+            copy[idx] = counts.getAndSet(idx, 0);
+        }
+        return new Snapshot(copy, max.getAndSet(0));
+    }
+
+    static int bucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (msb - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + ((msb - LINEAR_BITS) * SUB_BUCKETS) + sub;
+    }
+
+    /**
+     * The largest value (in micros) which falls into {@code bucket}.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int msb = ((bucket - LINEAR_BUCKETS) / SUB_BUCKETS) + LINEAR_BITS;
+        int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lower = ((long) (SUB_BUCKETS + sub)) << (msb - SUB_BITS);
+        return lower + (1L << (msb - SUB_BITS)) - 1;
+    }
+
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        Snapshot(long[] counts, long max) {
+            long total = 0;
+            for (long value : counts) {
+                total += value;
+            }
+            this.counts = counts;
+            this.count = total;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMaxMicros() {
+            return max;
+        }
+
+        /**
+         * The value (in micros) below which {@code percentile} (0-100) percent of the values fall, or {@code 0} if
+         * there are no values.
+         */
+        public long getPercentileMicros(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil((percentile / 100.0) * count));
+            long seen = 0;
+            for (int idx = 0; idx < counts.length; idx++) {
+                seen += counts[idx];
+                if (seen >= rank) {
+                    return Math.min(upperBound(idx), max);
+                }
+            }
+            return max;
+        }
+    }
+}
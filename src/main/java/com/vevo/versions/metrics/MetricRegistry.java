@@ -0,0 +1,42 @@
+package com.vevo.versions.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import javax.inject.Singleton;
+
+
+/**
+ * The gauges and counters reported with the {@link RequestMetrics} (see {@link RequestMetrics#getRegistry()}).  Each
+ * component registers its own when it is created, i.e. the request executor its queue depth, so metrics need not know
+ * about the components they report on.
+ */
+@Singleton
+public class MetricRegistry {
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Registers a gauge (a level, such as a queue depth), reported as {@code <prefix>.<name>} on every flush.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Registers a counter (a cumulative total, such as a number of rejections), whose increase since the previous
+     * flush is reported as the count {@code <prefix>.<name>}.
+     */
+    public void counter(String name, LongSupplier value) {
+        counters.put(name, value);
+    }
+
+    Map<String, LongSupplier> getGauges() {
+        return gauges;
+    }
+
+    Map<String, LongSupplier> getCounters() {
+        return counters;
+    }
+}
@@ -0,0 +1,227 @@
+package com.vevo.versions.metrics;
+
+import com.timgroup.statsd.NonBlockingStatsDClient;
+import com.timgroup.statsd.StatsDClient;
+import com.timgroup.statsd.StatsDClientException;
+import com.vevo.versions.Config;
+import com.vevo.versions.concurrent.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+
+/**
+ * Latency histograms of queue, work and total time per (endpoint, version), plus the counters and gauges components
+ * register in the {@link MetricRegistry} (the request executor, concurrency limit, caches, compression, usage events,
+ * persistence, ...).  Once {@link #startReporting() started}, everything is flushed periodically to the DataDog agent
+ * (see {@link StatsdReporter}), until {@link #shutdown()}.
+ * Requests slower than {@link Config#getCallTimeThreshold()} ms are logged with their timing breakdown, and a sample
+ * of all requests is written to the {@link AccessLog}.
+ */
+@Singleton
+public class RequestMetrics {
+    private static final Logger log = LoggerFactory.getLogger(RequestMetrics.class);
+
+    // Versions above this share the timers of version 0
+    private static final int MAX_TRACKED_VERSION = 63;
+
+    private final long callTimeThresholdNanos;
+    private final AtomicReferenceArray<Timers>[] timers;
+    private final AccessLog accessLog;
+    private final MetricRegistry registry;
+    private final String statsdHost;
+    private final int statsdPort;
+    private final String prefix;
+    private final int flushSeconds;
+
+    // Guarded by this: set once reporting starts, and cleared by shutdown()
+    private ScheduledExecutorService scheduler;
+    private StatsDClient client;
+    private StatsdReporter reporter;
+    private boolean shutdown;
+
+    @Inject
+    public RequestMetrics(Config config, MetricRegistry registry) {
+        this(config.getCallTimeThreshold(), new AccessLog(config.getAccessLogSampleRate()), registry,
+            config.getStatsdHost(), config.getStatsdPort(), config.getMetricsPrefix(), config.getMetricsFlushSeconds());
+    }
+
+    public RequestMetrics(int callTimeThresholdMillis) {
+        this(callTimeThresholdMillis, new AccessLog(0));
+    }
+
+    public RequestMetrics(int callTimeThresholdMillis, AccessLog accessLog) {
+        this(callTimeThresholdMillis, accessLog, new MetricRegistry(), null, 0, null, 0);
+    }
+
+    /**
+     * @param statsdHost        The DogStatsD agent to report to (see {@link #startReporting()}), or {@code null} (or
+     *                          empty) not to report.
+     * @param flushSeconds      The interval between two flushes.
+     */
+    @SuppressWarnings("unchecked")
+    private RequestMetrics(
+            int callTimeThresholdMillis, AccessLog accessLog, MetricRegistry registry, String statsdHost,
+            int statsdPort, String prefix, int flushSeconds) {
+        this.accessLog = accessLog;
+        this.registry = registry;
+        this.callTimeThresholdNanos = TimeUnit.MILLISECONDS.toNanos(callTimeThresholdMillis);
+        this.timers = new AtomicReferenceArray[Endpoint.values().length];
+        for (int idx = 0; idx < timers.length; idx++) {
+            timers[idx] = new AtomicReferenceArray<>(MAX_TRACKED_VERSION + 1);
+        }
+        this.statsdHost = statsdHost;
+        this.statsdPort = statsdPort;
+        this.prefix = prefix;
+        this.flushSeconds = flushSeconds;
+    }
+
+    /**
+     * Starts timing a request to {@code endpoint} for {@code version}.
+     */
+    public RequestTiming start(Endpoint endpoint, int version) {
+        return new RequestTiming(this, endpoint, version);
+    }
+
+    /**
+     * The gauges and counters reported with the timers.
+     */
+    public MetricRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Stops reporting, after a last flush.
+     */
+    public void shutdown() {
+        ScheduledExecutorService stopped;
+        StatsdReporter lastReporter;
+        StatsDClient stoppedClient;
+        synchronized (this) {
+            shutdown = true;
+            stopped = scheduler;
+            lastReporter = reporter;
+            stoppedClient = client;
+            scheduler = null;
+        }
+        if (stopped == null) {
+            return;
+        }
+        stopped.shutdown();
+        try {
+            stopped.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        lastReporter.run();
+        stoppedClient.stop();
+    }
+
+    /**
+     * The timers of {@code endpoint} and {@code version}, or {@code null} if nothing was recorded for them yet.
+     */
+    public Timers getTimers(Endpoint endpoint, int version) {
+        return timers[endpoint.ordinal()].get(trackedVersion(version));
+    }
+
+    void record(RequestTiming timing, long end) {
+        int version = trackedVersion(timing.getVersion());
+        AtomicReferenceArray<Timers> endpointTimers = timers[timing.getEndpoint().ordinal()];
+        Timers current = endpointTimers.get(version);
+        if (current == null) {
+            endpointTimers.compareAndSet(version, null, new Timers(timing.getEndpoint(), version));
+            current = endpointTimers.get(version);
+        }
+
+        long total = timing.getTotalNanos(end);
+        current.queue.recordNanos(timing.getQueueNanos());
+        current.work.recordNanos(timing.getWorkNanos());
+        current.total.recordNanos(total);
+        accessLog.log(timing, total);
+
+        if (total > callTimeThresholdNanos) {
+            log.warn("Slow request: endpoint={} strategy={} version={} total={}ms queue={}ms work={}ms",
+                timing.getEndpoint().getName(), timing.getEndpoint().getStrategy(), timing.getVersion(),
+                TimeUnit.NANOSECONDS.toMillis(total), TimeUnit.NANOSECONDS.toMillis(timing.getQueueNanos()),
+                TimeUnit.NANOSECONDS.toMillis(timing.getWorkNanos()));
+        }
+    }
+
+    /**
+     * Calls {@code consumer} for each set of timers which has been recorded.
+     */
+    void forEachTimers(Consumer<Timers> consumer) {
+        for (AtomicReferenceArray<Timers> endpointTimers : timers) {
+            for (int idx = 0; idx < endpointTimers.length(); idx++) {
+                Timers current = endpointTimers.get(idx);
+                if (current != null) {
+                    consumer.accept(current);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts flushing to the DogStatsD agent every {@code flushSeconds}, unless there is no agent to report to, or
+     * reporting has already started or been shut down.  Nothing is flushed until the first interval, so this can run
+     * in the background while the service starts.
+     */
+    public synchronized void startReporting() {
+        if ((statsdHost == null) || statsdHost.isEmpty() || shutdown || (scheduler != null)) {
+            return;
+        }
+        try {
+            client = new NonBlockingStatsDClient(prefix, statsdHost, statsdPort);
+        } catch (StatsDClientException ex) {
+            // I.e. the host does not resolve; the service runs fine without metrics
+            log.warn("Unable to report metrics to {}:{}", statsdHost, statsdPort, ex);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "versions-metrics-shutdown"));
+        reporter = new StatsdReporter(this, client);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("versions-metrics-"));
+        scheduler.scheduleAtFixedRate(reporter, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    private static int trackedVersion(int version) {
+        return ((version < 0) || (version > MAX_TRACKED_VERSION)) ? 0 : version;
+    }
+
+    /**
+     * The histograms of one (endpoint, version).
+     */
+    public static class Timers {
+        private final String[] tags;
+        final LatencyHistogram queue = new LatencyHistogram();
+        final LatencyHistogram work = new LatencyHistogram();
+        final LatencyHistogram total = new LatencyHistogram();
+
+        Timers(Endpoint endpoint, int version) {
+            this.tags = (endpoint.getTags() + ",version:" + version).split(",");
+        }
+
+        public String[] getTags() {
+            return tags;
+        }
+
+        public LatencyHistogram getQueue() {
+            return queue;
+        }
+
+        public LatencyHistogram getWork() {
+            return work;
+        }
+
+        public LatencyHistogram getTotal() {
+            return total;
+        }
+    }
+}
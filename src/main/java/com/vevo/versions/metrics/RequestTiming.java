@@ -0,0 +1,60 @@
+package com.vevo.versions.metrics;
+
+
+/**
+ * The timing of one request: the time it waited for the request executor (queue), the time spent in the version
+ * specific work (work), and the time until the response was resumed (total).  Created by
+ * {@link RequestMetrics#start}, and recorded by {@link #finish()}.
+ */
+public class RequestTiming {
+    private final RequestMetrics metrics;
+    private final Endpoint endpoint;
+    private final int version;
+    private final long start;
+    private long workStart;
+    private long workEnd;
+
+    RequestTiming(RequestMetrics metrics, Endpoint endpoint, int version) {
+        this.metrics = metrics;
+        this.endpoint = endpoint;
+        this.version = version;
+        this.start = System.nanoTime();
+        this.workStart = start;
+        this.workEnd = start;
+    }
+
+    public void workStarted() {
+        workStart = System.nanoTime();
+    }
+
+    public void workFinished() {
+        workEnd = System.nanoTime();
+    }
+
+    /**
+     * Records the timing.  Call once, after the response has been resumed.
+     */
+    public void finish() {
+        metrics.record(this, System.nanoTime());
+    }
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    long getQueueNanos() {
+        return workStart - start;
+    }
+
+    long getWorkNanos() {
+        return Math.max(workEnd - workStart, 0);
+    }
+
+    long getTotalNanos(long end) {
+        return end - start;
+    }
+}
@@ -0,0 +1,74 @@
+package com.vevo.versions.metrics;
+
+import com.timgroup.statsd.StatsDClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Sends the {@link RequestMetrics} to the DataDog agent through a DogStatsD {@link StatsDClient} (the client the
+ * DataDog module is built on), i.e. {@code versions.request.total.p99:12.5|g|#endpoint:get,strategy:path,version:2}.
+ * Latencies are reported in ms (p50, p95, p99 and max as gauges, and the number of requests as a count) for the
+ * interval since the previous flush.  {@link MetricRegistry#counter Counters} are cumulative, so they are reported as
+ * a count of their increase since the previous flush; {@link MetricRegistry#gauge gauges} as they are.
+ */
+class StatsdReporter implements Runnable {
+    private static final Logger log = LoggerFactory.getLogger(StatsdReporter.class);
+
+    private final RequestMetrics metrics;
+    private final StatsDClient client;
+
+    // The value of each counter at the previous flush; only touched by the (single) flushing thread
+    private final Map<String, Long> previous = new HashMap<>();
+
+    StatsdReporter(RequestMetrics metrics, StatsDClient client) {
+        this.metrics = metrics;
+        this.client = client;
+    }
+
+    @Override
+    public void run() {
+        try {
+            metrics.forEachTimers(this::report);
+            for (Map.Entry<String, LongSupplier> gauge : metrics.getRegistry().getGauges().entrySet()) {
+                client.gauge(gauge.getKey(), gauge.getValue().getAsLong());
+            }
+            for (Map.Entry<String, LongSupplier> counter : metrics.getRegistry().getCounters().entrySet()) {
+                long value = counter.getValue().getAsLong();
+                Long last = previous.put(counter.getKey(), value);
+                long delta = value - ((last == null) ? 0 : last);
+                if (delta != 0) {
+                    client.count(counter.getKey(), delta);
+                }
+            }
+        } catch (RuntimeException ex) {
+            // Never let an exception cancel the scheduled flush
+            log.warn("Unable to report metrics", ex);
+        }
+    }
+
+    private void report(RequestMetrics.Timers timers) {
+        report("request.queue", timers.getQueue().drain(), timers.getTags());
+        report("request.work", timers.getWork().drain(), timers.getTags());
+        report("request.total", timers.getTotal().drain(), timers.getTags());
+    }
+
+    private void report(String name, LatencyHistogram.Snapshot snapshot, String[] tags) {
+        if (snapshot.getCount() == 0) {
+            return;
+        }
+        client.count(name + ".count", snapshot.getCount(), tags);
+        client.gauge(name + ".p50", millis(snapshot.getPercentileMicros(50)), tags);
+        client.gauge(name + ".p95", millis(snapshot.getPercentileMicros(95)), tags);
+        client.gauge(name + ".p99", millis(snapshot.getPercentileMicros(99)), tags);
+        client.gauge(name + ".max", millis(snapshot.getMaxMicros()), tags);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
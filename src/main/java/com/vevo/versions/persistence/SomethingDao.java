@@ -0,0 +1,125 @@
+package com.vevo.versions.persistence;
+
+import com.google.common.base.Utf8;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+
+/**
+ * Reads and writes {@link SomethingRecord}s in the {@code foo} table (see {@code db/changelog}) with plain JDBC.
+ * Writes are upserts ({@code INSERT ... ON DUPLICATE KEY UPDATE}), and {@link #upsert(List)} writes many records in
+ * one multi-row statement, i.e. one round trip and one commit instead of one per record.
+ */
+public class SomethingDao {
+    // Keeps a statement well under the MySQL max_allowed_packet (4MB by default) and placeholder limit (65535).  The
+    // table is utf8mb4 and the connection sends UTF-8, so the values are counted in UTF-8 bytes, not characters
+    static final int MAX_STATEMENT_BYTES = 1024 * 1024;
+    static final int MAX_STATEMENT_ROWS = 1000;
+
+    private static final String SELECT = "SELECT something, body, updated FROM foo WHERE something = ?";
+    private static final String CHECK = "SELECT something, body, updated FROM foo WHERE 1 = 0";
+    private static final String INSERT = "INSERT INTO foo (something, body, updated) VALUES ";
+    private static final String ROW = "(?, ?, ?)";
+    private static final String ON_DUPLICATE =
+        " ON DUPLICATE KEY UPDATE body = VALUES(body), updated = VALUES(updated)";
+
+    private final DataSource dataSource;
+
+    public SomethingDao(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Checks that the {@code foo} table exists, with the columns this reads and writes.
+     *
+     * @throws SQLException if it does not, or the database cannot be reached.
+     */
+    public void checkSchema() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement check = connection.prepareStatement(CHECK)) {
+            check.executeQuery().close();
+        }
+    }
+
+    /**
+     * Returns the record of {@code something}, or {@code null} if there is none.
+     */
+    public SomethingRecord load(String something) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT)) {
+            select.setString(1, something);
+            try (ResultSet row = select.executeQuery()) {
+                return row.next() ? new SomethingRecord(row.getString(1), row.getString(2), row.getLong(3)) : null;
+            }
+        }
+    }
+
+    /**
+     * Writes {@code record}, alone.
+     */
+    public void upsert(SomethingRecord record) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            write(connection, Collections.singletonList(record), 0, 1);
+        }
+    }
+
+    /**
+     * Writes {@code records} on one connection, in as few multi-row statements as {@link #MAX_STATEMENT_BYTES} and
+     * {@link #MAX_STATEMENT_ROWS} allow.  The records must have distinct keys.  Returns the number of statements.
+     */
+    public int upsert(List<SomethingRecord> records) throws SQLException {
+        int statements = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            int start = 0;
+            while (start < records.size()) {
+                int end = start + 1;
+                long bytes = length(records.get(start));
+                while ((end < records.size()) && (end - start < MAX_STATEMENT_ROWS)
+                        && (bytes + length(records.get(end)) <= MAX_STATEMENT_BYTES)) {
+                    bytes += length(records.get(end));
+                    end++;
+                }
+                write(connection, records, start, end);
+                statements++;
+                start = end;
+            }
+        }
+        return statements;
+    }
+
+    private static void write(Connection connection, List<SomethingRecord> records, int start, int end)
+            throws SQLException {
+        StringBuilder sql = new StringBuilder(INSERT.length() + ((end - start) * (ROW.length() + 2))
+            + ON_DUPLICATE.length()).append(INSERT);
+        for (int idx = start; idx < end; idx++) {
+            sql.append((idx == start) ? "" : ", ").append(ROW);
+        }
+        sql.append(ON_DUPLICATE);
+
+        try (PreparedStatement insert = connection.prepareStatement(sql.toString())) {
+            int param = 1;
+            for (int idx = start; idx < end; idx++) {
+                SomethingRecord record = records.get(idx);
+                insert.setString(param++, record.getSomething());
+                insert.setString(param++, record.getValue());
+                insert.setLong(param++, record.getUpdated());
+            }
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * The size of {@code record} in a statement, in UTF-8 bytes.
+     */
+    static long length(SomethingRecord record) {
+        return Utf8.encodedLength(record.getSomething())
+            + ((record.getValue() == null) ? 0 : Utf8.encodedLength(record.getValue()));
+    }
+}
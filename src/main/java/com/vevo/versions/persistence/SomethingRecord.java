@@ -0,0 +1,58 @@
+package com.vevo.versions.persistence;
+
+import java.util.Objects;
+
+
+/**
+ * The stored state of one {@code {something}} resource.  This is the canonical, version independent representation:
+ * each version renders its output from {@link #getValue()} (see
+ * {@link com.vevo.versions.resources.VersionContext#toStoredValue}), so adding a version never changes what is stored.
+ */
+public final class SomethingRecord {
+    private final String something;
+    private final String value;
+    private final long updated;
+
+    /**
+     * @param something The path parameter, i.e. the key.
+     * @param value     The canonical value, or {@code null}.
+     * @param updated   When it was written, in epoch millis.
+     */
+    public SomethingRecord(String something, String value, long updated) {
+        this.something = Objects.requireNonNull(something, "something");
+        this.value = value;
+        this.updated = updated;
+    }
+
+    public String getSomething() {
+        return something;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof SomethingRecord)) {
+            return false;
+        }
+        SomethingRecord record = (SomethingRecord) other;
+        return something.equals(record.something) && Objects.equals(value, record.value)
+            && (updated == record.updated);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(something, value, updated);
+    }
+
+    @Override
+    public String toString() {
+        return "SomethingRecord[" + something + ",updated:" + updated + "]";
+    }
+}
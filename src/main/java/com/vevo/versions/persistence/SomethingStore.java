@@ -0,0 +1,212 @@
+package com.vevo.versions.persistence;
+
+import com.google.common.base.Utf8;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.vevo.versions.Config;
+import com.vevo.versions.metrics.MetricRegistry;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+
+import java.sql.SQLException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.sql.DataSource;
+
+
+/**
+ * Loads and stores the {@code {something}} resources, as {@link SomethingRecord}s.  Reads go through a bounded cache
+ * (least recently used entries are evicted first, and entries expire after a TTL), which loads misses from the
+ * database, including the absence of a record.  Writes update the cache and are written behind by a
+ * {@link WriteBehindQueue}, which coalesces them by key and batches them into multi-row upserts; until a record is
+ * written, a cache miss is served from the queue, so a read always sees the latest write.
+ *
+ * <p>Enabled by {@link Config#isPersistenceEnabled()}, with a MySQL pool built from the {@code DB_*} settings.  When
+ * disabled, nothing is read or written.  The {@code foo} table is created by the Liquibase changelog, which nothing in
+ * this service runs while the Liquibase module is not enabled in {@code Module}: an enabled store checks that the
+ * table is there when it is created, so a missing schema fails the startup rather than every write.</p>
+ */
+@Singleton
+public class SomethingStore {
+    private static final String MYSQL_DRIVER = "com.mysql.jdbc.Driver";
+    private static final String CHANGELOG = "db/changelog/db.changelog-master.xml";
+
+    // How long a write waits for room in a full queue before it is rejected
+    static final long OFFER_TIMEOUT_MILLIS = 1000;
+
+    // The longest key (the foo.something column, in characters) and value (in UTF-8 bytes) which are stored.  Checked
+    // up front, since the database would refuse the record (see WriteBehindQueue)
+    public static final int MAX_KEY_LENGTH = 191;
+    public static final int MAX_VALUE_BYTES = SomethingDao.MAX_STATEMENT_BYTES - (4 * MAX_KEY_LENGTH);
+
+    private final SomethingDao dao;
+    private final Cache<String, Optional<SomethingRecord>> cache;
+    private final WriteBehindQueue queue;
+
+    @Inject
+    public SomethingStore(Config config, MetricRegistry metrics) {
+        this(config.isPersistenceEnabled() ? new SomethingDao(dataSource(config)) : null,
+            config.getPersistenceCacheSize(), config.getPersistenceCacheTtlSeconds(),
+            config.getPersistenceQueueSize(), config.getPersistenceBatchSize(), config.getPersistenceFlushMillis());
+        metrics.counter("persistence.cache_hits", this::getCacheHitCount);
+        metrics.counter("persistence.cache_misses", this::getCacheMissCount);
+        metrics.gauge("persistence.cache_size", this::getCacheSize);
+        metrics.gauge("persistence.pending", this::getPendingCount);
+        metrics.counter("persistence.written", this::getWrittenCount);
+        metrics.counter("persistence.statements", this::getStatementCount);
+        metrics.counter("persistence.coalesced", this::getCoalescedCount);
+        metrics.counter("persistence.failed", this::getFailedCount);
+        metrics.counter("persistence.rejected", this::getRejectedCount);
+        metrics.counter("persistence.dead_lettered", this::getDeadLetteredCount);
+        if (isEnabled()) {
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(this::shutdown, WriteBehindQueue.THREAD_NAME_PREFIX + "shutdown"));
+        }
+    }
+
+    /**
+     * @param dao               The database, or {@code null} to disable the store.
+     * @param cacheSize         The most records cached.
+     * @param cacheTtlSeconds   How long a record is cached.
+     * @param queueSize         The most keys waiting to be written.
+     * @param batchSize         The most records written at once.
+     * @param flushMillis       The longest a write waits for a batch to fill before it is written.
+     */
+    public SomethingStore(
+            SomethingDao dao, int cacheSize, int cacheTtlSeconds, int queueSize, int batchSize, long flushMillis) {
+        this.dao = dao;
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(cacheSize)
+            .expireAfterWrite(cacheTtlSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+        if (dao != null) {
+            checkSchema(dao);
+        }
+        this.queue = (dao == null) ? null
+            : new WriteBehindQueue(dao, queueSize, batchSize, flushMillis, OFFER_TIMEOUT_MILLIS);
+    }
+
+    public boolean isEnabled() {
+        return dao != null;
+    }
+
+    /**
+     * Returns the record of {@code something}, or {@code null} if there is none (or the store is disabled).
+     */
+    public SomethingRecord read(String something) {
+        if (dao == null) {
+            return null;
+        }
+        try {
+            return cache.get(something, () -> Optional.ofNullable(load(something))).orElse(null);
+        } catch (ExecutionException | UncheckedExecutionException ex) {
+            throw new IllegalStateException("Unable to load " + something, ex.getCause());
+        }
+    }
+
+    /**
+     * Stores {@code value} as the value of {@code something}.  Returns once the write is queued, not written; it is
+     * visible to {@link #read} immediately.
+     *
+     * @throws IllegalArgumentException if {@code something} or {@code value} is too long to store, or is not valid
+     *         UTF-16 (an unpaired surrogate has no UTF-8 encoding).
+     * @throws RejectedExecutionException if the write queue is full, see {@link WriteBehindQueue}.
+     */
+    public SomethingRecord write(String something, String value) {
+        int keyLength = something.codePointCount(0, something.length());
+        int valueBytes = (value == null) ? 0 : Utf8.encodedLength(value);
+        if ((keyLength > MAX_KEY_LENGTH) || (valueBytes > MAX_VALUE_BYTES)) {
+            throw new IllegalArgumentException(
+                "Too long to store: " + keyLength + " characters / " + valueBytes + " bytes");
+        }
+        // Throws on an unpaired surrogate
+        Utf8.encodedLength(something);
+        SomethingRecord record = new SomethingRecord(something, value, System.currentTimeMillis());
+        if (dao != null) {
+            // Cached under the queue's lock, so concurrent writes of a key leave the latest one cached
+            queue.enqueue(record, () -> cache.put(something, Optional.of(record)));
+        }
+        return record;
+    }
+
+    /**
+     * Writes what is pending, and stops accepting writes.
+     */
+    public void shutdown() {
+        if (queue != null) {
+            queue.shutdown();
+        }
+    }
+
+    public long getCacheHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getCacheMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getCacheSize() {
+        return cache.size();
+    }
+
+    public int getPendingCount() {
+        return (queue == null) ? 0 : queue.getPendingCount();
+    }
+
+    public long getWrittenCount() {
+        return (queue == null) ? 0 : queue.getWrittenCount();
+    }
+
+    public long getStatementCount() {
+        return (queue == null) ? 0 : queue.getStatementCount();
+    }
+
+    public long getCoalescedCount() {
+        return (queue == null) ? 0 : queue.getCoalescedCount();
+    }
+
+    public long getFailedCount() {
+        return (queue == null) ? 0 : queue.getFailedCount();
+    }
+
+    public long getRejectedCount() {
+        return (queue == null) ? 0 : queue.getRejectedCount();
+    }
+
+    /**
+     * The number of records the database refused, and which were dropped after retries.
+     */
+    public long getDeadLetteredCount() {
+        return (queue == null) ? 0 : queue.getDeadLetteredCount();
+    }
+
+    private static void checkSchema(SomethingDao dao) {
+        try {
+            dao.checkSchema();
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Table foo is missing or unreadable: apply the Liquibase changelog "
+                + CHANGELOG + " to the database", ex);
+        }
+    }
+
+    private SomethingRecord load(String something) throws SQLException {
+        SomethingRecord pending = queue.getPending(something);
+        return (pending != null) ? pending : dao.load(something);
+    }
+
+    private static DataSource dataSource(Config config) {
+        PooledDataSource dataSource = new PooledDataSource(MYSQL_DRIVER,
+            "jdbc:mysql://" + config.getDbHost() + ":" + config.getDbPort() + "/" + config.getDbName()
+                + "?useUnicode=true&characterEncoding=UTF-8",
+            config.getDbUser(), config.getDbPassword());
+        dataSource.setPoolMaximumActiveConnections(config.getDbMaxConnections());
+        return dataSource;
+    }
+}
@@ -0,0 +1,356 @@
+package com.vevo.versions.persistence;
+
+import com.vevo.versions.concurrent.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Writes {@link SomethingRecord}s to the {@link SomethingDao} behind the callers' backs, on one background thread.
+ * Pending records are coalesced by key (only the latest write of a key is written) and written in batches of up to
+ * {@code batchSize}, as soon as a batch is full or the oldest pending record has waited {@code flushMillis}.
+ *
+ * <p>The queue is bounded: when {@code capacity} keys are pending, writers of new keys wait up to
+ * {@code offerTimeoutMillis} for the flusher to make room, then are rejected.  Failed records are retried (except
+ * those a later write superseded) after {@code flushMillis}, but at least a second later.  With a single flusher, the
+ * writes of a key reach the database in order.</p>
+ *
+ * <p>A batch which fails on a transient error (i.e. the connection, see {@link #isTransient}) is retried as a whole,
+ * for as long as it takes.  One which fails otherwise is split in halves, each written on its own, down to the single
+ * records which fail: a record the database refuses (a poison record) cannot hold up the others.  Such a record is
+ * tried {@link #MAX_ATTEMPTS} times, then dropped (dead-lettered) and logged.</p>
+ */
+class WriteBehindQueue {
+    static final String THREAD_NAME_PREFIX = "versions-write-behind-";
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindQueue.class);
+    private static final long MIN_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final int MAX_ATTEMPTS = 3;
+    // The SQLState classes of connection errors, and of transactions rolled back (i.e. deadlocks)
+    private static final String CONNECTION_STATE_CLASS = "08";
+    private static final String ROLLBACK_STATE_CLASS = "40";
+
+    private final SomethingDao dao;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushNanos;
+    private final long offerTimeoutNanos;
+    private final long retryNanos;
+    private final Thread flusher;
+
+    // Guarded by this: the latest unwritten record of each key, in order of their first write, and the batch being
+    // written (so readers do not load a record from the database while a newer one is on its way)
+    private final LinkedHashMap<String, SomethingRecord> pending = new LinkedHashMap<>();
+    private Map<String, SomethingRecord> inFlight = new LinkedHashMap<>();
+    private long oldestNanos;
+    private boolean running = true;
+
+    // Guarded by this: the failed attempts of the records which failed on their own, until they are written,
+    // superseded or dead-lettered.  By identity, since a later write of the same key and value is another record
+    private final Map<SomethingRecord, Integer> attempts = new IdentityHashMap<>();
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    WriteBehindQueue(SomethingDao dao, int capacity, int batchSize, long flushMillis, long offerTimeoutMillis) {
+        this.dao = dao;
+        this.capacity = capacity;
+        this.batchSize = Math.max(1, batchSize);
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+        this.retryNanos = Math.max(flushNanos, MIN_RETRY_NANOS);
+        this.flusher = new NamedThreadFactory(THREAD_NAME_PREFIX).newThread(this::flush);
+        flusher.start();
+    }
+
+    /**
+     * Queues {@code record}, replacing any pending record of the same key, then runs {@code onQueued} while still
+     * holding the queue's lock, so that callbacks of writes of the same key run in the order of the writes.
+     *
+     * @throws RejectedExecutionException if the queue stayed full for {@code offerTimeoutMillis}, or is shut down.
+     */
+    synchronized void enqueue(SomethingRecord record, Runnable onQueued) {
+        String key = record.getSomething();
+        if (!pending.containsKey(key) && (pending.size() >= capacity)) {
+            awaitRoom(key);
+        }
+        if (!running) {
+            throw new RejectedExecutionException("Write-behind queue is shut down");
+        }
+        if (pending.isEmpty()) {
+            oldestNanos = System.nanoTime();
+        }
+        SomethingRecord superseded = pending.put(key, record);
+        if (superseded != null) {
+            attempts.remove(superseded);
+            coalesced.increment();
+        } else if ((pending.size() == 1) || (pending.size() >= batchSize)) {
+            notifyAll();
+        }
+        onQueued.run();
+    }
+
+    /**
+     * The latest record of {@code something} which is not in the database yet, or {@code null}.
+     */
+    synchronized SomethingRecord getPending(String something) {
+        SomethingRecord record = pending.get(something);
+        return (record != null) ? record : inFlight.get(something);
+    }
+
+    /**
+     * Stops accepting writes, and waits (up to 10 seconds) for the flusher to write what is pending.
+     */
+    void shutdown() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            notifyAll();
+        }
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * The number of records written, and of the statements which wrote them.
+     */
+    long getWrittenCount() {
+        return written.sum();
+    }
+
+    long getStatementCount() {
+        return statements.sum();
+    }
+
+    /**
+     * The number of writes replaced by a later write of the same key before they were written.
+     */
+    long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    long getFailedCount() {
+        return failed.sum();
+    }
+
+    long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * The number of records dropped after failing {@link #MAX_ATTEMPTS} times on their own.
+     */
+    long getDeadLetteredCount() {
+        return deadLettered.sum();
+    }
+
+    private void awaitRoom(String key) {
+        long deadline = System.nanoTime() + offerTimeoutNanos;
+        try {
+            while (running && (pending.size() >= capacity) && !pending.containsKey(key)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    rejected.increment();
+                    throw new RejectedExecutionException("Write-behind queue is full");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            throw new RejectedExecutionException("Interrupted waiting for the write-behind queue", ex);
+        }
+    }
+
+    /**
+     * The flusher loop: waits for a full batch or for the oldest pending record to be due, and writes the batch.  On
+     * shutdown, writes everything pending before returning.
+     */
+    private void flush() {
+        while (true) {
+            Map<String, SomethingRecord> batch;
+            synchronized (this) {
+                awaitBatch();
+                if (pending.isEmpty()) {
+                    // Only when shut down
+                    return;
+                }
+                batch = drain();
+                inFlight = batch;
+                // Room for writers waiting in awaitRoom
+                notifyAll();
+            }
+            List<SomethingRecord> retried = new ArrayList<>();
+            Set<SomethingRecord> refused = Collections.newSetFromMap(new IdentityHashMap<>());
+            write(new ArrayList<>(batch.values()), retried, refused);
+            synchronized (this) {
+                inFlight = new LinkedHashMap<>();
+                retried.addAll(countAttempts(batch.values(), refused));
+                if (!retried.isEmpty()) {
+                    retry(retried);
+                }
+            }
+        }
+    }
+
+    private void awaitBatch() {
+        while (running && (pending.size() < batchSize)) {
+            long remaining = pending.isEmpty() ? 0 : (oldestNanos + flushNanos - System.nanoTime());
+            if (!pending.isEmpty() && (remaining <= 0)) {
+                return;
+            }
+            try {
+                if (pending.isEmpty()) {
+                    wait();
+                } else {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            } catch (InterruptedException ex) {
+                // Treated as a shutdown: write what is pending, then stop
+                running = false;
+            }
+        }
+    }
+
+    private Map<String, SomethingRecord> drain() {
+        Map<String, SomethingRecord> batch = new LinkedHashMap<>();
+        Iterator<Map.Entry<String, SomethingRecord>> entries = pending.entrySet().iterator();
+        while (entries.hasNext() && (batch.size() < batchSize)) {
+            Map.Entry<String, SomethingRecord> entry = entries.next();
+            batch.put(entry.getKey(), entry.getValue());
+            entries.remove();
+        }
+        return batch;
+    }
+
+    /**
+     * Writes {@code records}.  If they fail on a transient error, they are added to {@code retried}.  Otherwise they
+     * are split in halves which are written separately, to isolate the records the database refuses, which are added
+     * to {@code refused}.
+     */
+    private void write(List<SomethingRecord> records, List<SomethingRecord> retried, Set<SomethingRecord> refused) {
+        try {
+            statements.add(dao.upsert(records));
+            written.add(records.size());
+        } catch (SQLException | RuntimeException ex) {
+            boolean transientError = isTransient(ex);
+            if (transientError || (records.size() == 1)) {
+                failed.add(records.size());
+                log.warn("Failed to write {} records", records.size(), ex);
+                if (transientError) {
+                    retried.addAll(records);
+                } else {
+                    refused.addAll(records);
+                }
+                return;
+            }
+            int half = records.size() / 2;
+            write(records.subList(0, half), retried, refused);
+            write(records.subList(half, records.size()), retried, refused);
+        }
+    }
+
+    /**
+     * Whether {@code ex} (or its cause, i.e. wrapped by a pool) is an error which retrying the same statement may get
+     * past: a lost connection or a rolled back transaction, rather than a record the database refuses.
+     */
+    static boolean isTransient(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if ((cause instanceof SQLTransientException) || (cause instanceof SQLRecoverableException)) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                return (state != null)
+                    && (state.startsWith(CONNECTION_STATE_CLASS) || state.startsWith(ROLLBACK_STATE_CLASS));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Counts a failed attempt of each of the {@code refused} records of {@code batch}, dead-letters those which reached
+     * {@link #MAX_ATTEMPTS}, and returns the others, to retry.  The attempts of the other records (written, or failed
+     * with their batch on a transient error) are forgotten.
+     */
+    private List<SomethingRecord> countAttempts(Collection<SomethingRecord> batch, Set<SomethingRecord> refused) {
+        List<SomethingRecord> retried = new ArrayList<>(refused.size());
+        for (SomethingRecord record : batch) {
+            if (!refused.contains(record)) {
+                attempts.remove(record);
+                continue;
+            }
+            int attempt = attempts.getOrDefault(record, 0) + 1;
+            if (attempt < MAX_ATTEMPTS) {
+                attempts.put(record, attempt);
+                retried.add(record);
+            } else {
+                attempts.remove(record);
+                deadLettered.increment();
+                log.error("Dropped the record of {} after {} failed attempts", record.getSomething(), attempt);
+            }
+        }
+        return retried;
+    }
+
+    /**
+     * Puts the failed {@code records} back in front of the queue, unless a later write superseded them, and waits
+     * before the next flush, so a database outage is not retried in a tight loop.  During shutdown they are dropped
+     * instead, so a database outage cannot hold it up.
+     */
+    private void retry(List<SomethingRecord> records) {
+        if (!running) {
+            log.error("Dropped {} unwritten records on shutdown", records.size());
+            return;
+        }
+        LinkedHashMap<String, SomethingRecord> retried = new LinkedHashMap<>();
+        for (SomethingRecord record : records) {
+            if (pending.containsKey(record.getSomething())) {
+                // Superseded
+                attempts.remove(record);
+            } else {
+                retried.put(record.getSomething(), record);
+            }
+        }
+        retried.putAll(pending);
+        pending.clear();
+        pending.putAll(retried);
+        oldestNanos = System.nanoTime();
+        long deadline = oldestNanos + retryNanos;
+        try {
+            for (long remaining = retryNanos; running && (remaining > 0); remaining = deadline - System.nanoTime()) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        } catch (InterruptedException ex) {
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.vevo.versions.resources;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+
+/**
+ * One item of a {@link BatchResource} request: the equivalent of a single {@code /foo/path/v{version}/{something}}
+ * call, which is a POST if {@code body} is set and a GET otherwise.
+ */
+public class BatchItem {
+    @JsonProperty
+    private int version = 1;
+
+    @JsonProperty
+    private String something;
+
+    @JsonProperty
+    private String body;
+
+    public BatchItem() {
+    }
+
+    public BatchItem(int version, String something, String body) {
+        this.version = version;
+        this.something = something;
+        this.body = body;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getSomething() {
+        return something;
+    }
+
+    public String getBody() {
+        return body;
+    }
+}
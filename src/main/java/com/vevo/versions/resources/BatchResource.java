@@ -0,0 +1,303 @@
+package com.vevo.versions.resources;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vevo.versions.Config;
+import com.vevo.versions.metrics.Endpoint;
+import com.vevo.versions.metrics.RequestMetrics;
+import com.vevo.versions.metrics.RequestTiming;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ConnectionCallback;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+
+/**
+ * Processes many items -- each the equivalent of a {@link VersionsResource} path request -- in one call.  Each item is
+ * dispatched exactly like a single request (see {@link VersionsResource#post} and {@link VersionsResource#render}):
+ * it is admitted by the concurrency limit, runs under its route's timeout, is recorded in the metrics and usage
+ * events, and a POST (an item with a body) is stored.  At most {@link Config#getBatchConcurrency()} items of a batch
+ * are in flight at a time.  The results are streamed as a JSON array in request order, each as soon as it and those
+ * before it are complete, until every item is complete or the batch's own timeout (that of the {@code batch}
+ * endpoint) expires.  Each result carries its own status, so one bad item does not fail the batch:
+ *
+ * <pre>
+ * [{"status":200,"value":"V1: a"},{"status":200,"value":{"value":"V2: b / body"}},{"status":406,"error":"..."}]
+ * </pre>
+ *
+ * <p>Items which are not complete when the batch times out are cancelled, and get a 503.  A failed item's
+ * {@code error} is its status' reason, plus the {@code detail} of a 400 (the schema violations).  GET items are not
+ * answered from the {@link ResponseCache}, since their output is embedded in the batch rather than sent as is.</p>
+ */
+@Path("/foo")
+@Api(value = "versions")
+public class BatchResource {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = MAPPER.getFactory();
+
+    private final VersionsResource resource;
+    private final RequestDispatcher dispatcher;
+    private final RequestMetrics metrics;
+    private final VersionRegistry registry = VersionRegistry.getDefault();
+    private final int concurrency;
+    private final int maxItems;
+    private final long timeoutMillis;
+
+    @Inject
+    public BatchResource(
+            VersionsResource resource, RequestDispatcher dispatcher, RequestMetrics metrics, Config config) {
+        this.resource = resource;
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+        this.concurrency = Math.max(1, config.getBatchConcurrency());
+        this.maxItems = config.getBatchMaxItems();
+        this.timeoutMillis =
+            config.getRequestTimeout(Endpoint.BATCH.getStrategy(), Endpoint.BATCH.getName(), 0);
+    }
+
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @ApiOperation(
+        value = "Process a batch of versioned requests",
+        notes = "Each item is (version, something, optional body).  Results are returned in order, each with its own "
+            + "status.")
+    @ApiResponses({
+        @ApiResponse(code = 200, message = "Batch results, in request order"),
+        @ApiResponse(code = 400, message = "Empty batch"),
+        @ApiResponse(code = 413, message = "Too many items")})
+    @POST
+    @Path("/batch")
+    public void batch(@HeaderParam(VersionsResource.CLIENT_ID_HEADER) String clientId, @Suspended AsyncResponse response, List<BatchItem> items) {
+        if ((items == null) || items.isEmpty()) {
+            response.resume(Response.status(Response.Status.BAD_REQUEST).build());
+            return;
+        }
+        if (items.size() > maxItems) {
+            response.resume(Response.status(Response.Status.REQUEST_ENTITY_TOO_LARGE).build());
+            return;
+        }
+        RequestTiming timing = metrics.start(Endpoint.BATCH, 0);
+        timing.workStarted();
+        Batch batch = new Batch(items, clientId);
+        ScheduledFuture<?> timeout = dispatcher.schedule(batch::timeOut, timeoutMillis);
+        response.register((ConnectionCallback) disconnected -> batch.cancel());
+        batch.advance();
+        StreamingOutput output = out -> {
+            boolean written = false;
+            try {
+                writeResults(batch.results, out, () -> {
+                    timeout.cancel(false);
+                    timing.workFinished();
+                });
+                written = true;
+            } finally {
+                if (!written) {
+                    // The client went away, or a result could not be written: stop the items still in flight
+                    batch.cancel();
+                }
+                timing.finish();
+            }
+        };
+        response.resume(Response.ok(output).build());
+    }
+
+    /**
+     * Writes {@code results} as a JSON array, in order: each result is written and flushed as soon as it (and those
+     * before it) is complete, so the client gets the early results while later items are still running.  Waits for
+     * every result, which the batch's timeout bounds.  {@code onComplete} is run once the last result is complete.
+     */
+    static void writeResults(CompletableFuture<BatchResult>[] results, OutputStream out, Runnable onComplete)
+            throws IOException {
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            json.writeStartArray();
+            json.flush();
+            for (CompletableFuture<BatchResult> result : results) {
+                BatchResult value;
+                try {
+                    value = result.join();
+                } catch (CancellationException ex) {
+                    // Cancelled, when the client disconnected
+                    value = BatchResult.error(Response.Status.SERVICE_UNAVAILABLE, null);
+                }
+                value.write(json);
+                json.flush();
+            }
+            onComplete.run();
+            json.writeEndArray();
+        }
+    }
+
+    /**
+     * The items of one batch, their results, and the requests in flight.
+     */
+    private final class Batch {
+        private final List<BatchItem> items;
+        private final String clientId;
+        private final CompletableFuture<BatchResult>[] results;
+        private final AtomicReferenceArray<CompletableFuture<Response>> requests;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // Only one thread at a time starts items (see advance), so next needs no synchronization of its own
+        private final AtomicInteger advancing = new AtomicInteger();
+        private int next;
+
+        @SuppressWarnings("unchecked")
+        Batch(List<BatchItem> items, String clientId) {
+            this.items = items;
+            this.clientId = clientId;
+            this.results = new CompletableFuture[items.size()];
+            this.requests = new AtomicReferenceArray<>(items.size());
+            for (int idx = 0; idx < results.length; idx++) {
+                results[idx] = new CompletableFuture<>();
+            }
+        }
+
+        /**
+         * Starts items until {@code concurrency} are in flight.  Items which complete inline call this again from
+         * within it; rather than recursing, the thread already advancing picks up where they left off.
+         */
+        void advance() {
+            if (advancing.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while ((next < results.length) && (inFlight.get() < concurrency)) {
+                    int idx = next++;
+                    if (!results[idx].isDone()) {
+                        inFlight.incrementAndGet();
+                        results[idx].whenComplete((result, ex) -> {
+                            inFlight.decrementAndGet();
+                            advance();
+                        });
+                        start(idx);
+                    }
+                }
+            } while (advancing.decrementAndGet() != 0);
+        }
+
+        private void start(int idx) {
+            BatchItem item = items.get(idx);
+            CompletableFuture<BatchResult> result = results[idx];
+            VersionContext versionContext = registry.get(item.getVersion());
+            if (!versionContext.isSupported()) {
+                result.complete(
+                    BatchResult.error(Response.Status.NOT_ACCEPTABLE, "Unsupported version: " + item.getVersion()));
+            } else if (item.getSomething() == null) {
+                result.complete(BatchResult.error(Response.Status.BAD_REQUEST, "Missing something"));
+            } else if (item.getBody() != null) {
+                requests.set(idx, resource.post(resource.route(Endpoint.PATH_POST, item.getVersion()),
+                    item.getSomething(), item.getBody(), clientId, output -> result.complete(BatchResult.of(output))));
+            } else {
+                requests.set(idx, resource.render(resource.route(Endpoint.PATH_GET, item.getVersion()),
+                    item.getSomething(), clientId, output -> result.complete(BatchResult.of(output))));
+            }
+        }
+
+        /**
+         * Answers the items which are not complete with a 503, and cancels those in flight.
+         */
+        void timeOut() {
+            for (int idx = 0; idx < results.length; idx++) {
+                if (results[idx].complete(BatchResult.error(Response.Status.SERVICE_UNAVAILABLE, "Timed out"))) {
+                    cancel(idx);
+                }
+            }
+        }
+
+        /**
+         * Cancels every item which is not complete.
+         */
+        void cancel() {
+            for (int idx = 0; idx < results.length; idx++) {
+                if (results[idx].cancel(false)) {
+                    cancel(idx);
+                }
+            }
+        }
+
+        private void cancel(int idx) {
+            CompletableFuture<Response> request = requests.get(idx);
+            if (request != null) {
+                request.cancel(true);
+            }
+        }
+    }
+
+    static final class BatchResult {
+        private final int status;
+        private final Object value;
+        private final String error;
+        private final byte[] detail;
+
+        private BatchResult(int status, Object value, String error, byte[] detail) {
+            this.status = status;
+            this.value = value;
+            this.error = error;
+            this.detail = detail;
+        }
+
+        static BatchResult ok(Object value) {
+            return new BatchResult(Response.Status.OK.getStatusCode(), value, null, null);
+        }
+
+        static BatchResult error(Response.Status status, String error) {
+            return new BatchResult(
+                status.getStatusCode(), null, (error == null) ? status.getReasonPhrase() : error, null);
+        }
+
+        /**
+         * The result of a dispatched item: its entity if it succeeded, else its status' reason (and the JSON entity
+         * of a 400, which lists the schema violations).
+         */
+        static BatchResult of(Response output) {
+            int status = output.getStatus();
+            if (status == Response.Status.OK.getStatusCode()) {
+                return ok(output.getEntity());
+            }
+            Response.StatusType type = output.getStatusInfo();
+            Object entity = output.getEntity();
+            return new BatchResult(status, null, type.getReasonPhrase(),
+                ((status == Response.Status.BAD_REQUEST.getStatusCode()) && (entity instanceof byte[]))
+                    ? (byte[]) entity : null);
+        }
+
+        void write(JsonGenerator json) throws IOException {
+            json.writeStartObject();
+            json.writeNumberField("status", status);
+            if (error != null) {
+                json.writeStringField("error", error);
+                if (detail != null) {
+                    json.writeFieldName("detail");
+                    json.writeRawValue(new String(detail, StandardCharsets.UTF_8));
+                }
+            } else {
+                json.writeFieldName("value");
+                MAPPER.writeValue(json, value);
+            }
+            json.writeEndObject();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.vevo.versions.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+
+
+/**
+ * Buffers the first {@link Compressor#getMinSize()} bytes of a response, and only if more are written compresses the
+ * response (setting {@code Content-Encoding}); a smaller response is written as is by {@link #finish()}.  Nothing is
+ * written to the underlying stream until that decision is made, so the headers can still be changed.  A
+ * {@code flush()} before then is deferred, which holds back at most {@code minSize} bytes of a streamed response.
+ *
+ * <p>A compressed response's strong {@code ETag} (i.e. that of a {@link ResponseCache} entry's uncompressed bytes) is
+ * weakened (see {@link #weakEtag}): compressing on the fly is not guaranteed to give the same bytes every time, and
+ * they are not the bytes the tag was computed from.</p>
+ */
+final class CompressingOutputStream extends OutputStream {
+    private static final String WEAK_PREFIX = "W/";
+
+    private final OutputStream out;
+    private final MultivaluedMap<String, Object> headers;
+    private final ContentEncoding encoding;
+    private final Compressor compressor;
+    private final byte[] buffer;
+    private int count;
+    private OutputStream compressed;
+
+    CompressingOutputStream(
+            OutputStream out, MultivaluedMap<String, Object> headers, ContentEncoding encoding,
+            Compressor compressor) {
+        this.out = out;
+        this.headers = headers;
+        this.encoding = encoding;
+        this.compressor = compressor;
+        this.buffer = new byte[compressor.getMinSize()];
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+        write(new byte[] {(byte) value}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (compressed == null) {
+            if (count + length <= buffer.length) {
+                System.arraycopy(bytes, offset, buffer, count, length);
+                count += length;
+                return;
+            }
+            headers.putSingle(HttpHeaders.CONTENT_ENCODING, encoding.getName());
+            headers.remove(HttpHeaders.CONTENT_LENGTH);
+            Object etag = headers.getFirst(HttpHeaders.ETAG);
+            if (etag != null) {
+                headers.putSingle(HttpHeaders.ETAG, weakEtag(etag.toString()));
+            }
+            compressed = compressor.compress(out, encoding);
+            compressed.write(buffer, 0, count);
+        }
+        compressed.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (compressed != null) {
+            compressed.flush();
+        }
+    }
+
+    /**
+     * Writes what is left: the end of the compressed data, or the whole (small) response uncompressed.  The underlying
+     * stream is not closed.
+     */
+    void finish() throws IOException {
+        if (compressed != null) {
+            compressed.close();
+        } else if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    /**
+     * Gives up on a response which failed part way: returns the deflater without writing the end of the compressed
+     * data, and writes nothing more.
+     */
+    void abort() {
+        if (compressed != null) {
+            compressor.abort(compressed);
+        }
+        count = 0;
+    }
+
+    /**
+     * Whether the response was compressed.
+     */
+    boolean isCompressed() {
+        return compressed != null;
+    }
+
+    /**
+     * The weak form of {@code etag}, i.e. {@code W/"..."} for {@code "..."}.  A weak tag still matches
+     * {@code If-None-Match}, which compares tags weakly.
+     */
+    static String weakEtag(String etag) {
+        return etag.startsWith(WEAK_PREFIX) ? etag : (WEAK_PREFIX + etag);
+    }
+}
@@ -0,0 +1,100 @@
+package com.vevo.versions.resources;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+
+/**
+ * Compresses JSON and NDJSON responses with the encoding negotiated from the request's {@code Accept-Encoding}
+ * header (see {@link ContentEncoding#negotiate}), once they are larger than {@link Compressor#getMinSize()} bytes.
+ * Responses which already have a {@code Content-Encoding}, such as precompressed {@link ResponseCache} entries, are
+ * written as they are.
+ */
+@Provider
+@Singleton
+public class CompressionInterceptor implements WriterInterceptor {
+    private static final String JSON_SUFFIX = "+json";
+    private static final String NDJSON_SUFFIX = "+x-ndjson";
+
+    private final Compressor compressor;
+
+    // A proxy to the headers of the current request
+    @Context
+    private HttpHeaders requestHeaders;
+
+    @Inject
+    public CompressionInterceptor(Compressor compressor) {
+        this.compressor = compressor;
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        MultivaluedMap<String, Object> headers = context.getHeaders();
+        if (headers.containsKey(HttpHeaders.CONTENT_ENCODING) || !isCompressible(context.getMediaType())) {
+            context.proceed();
+            return;
+        }
+        addVary(headers);
+        ContentEncoding encoding =
+            ContentEncoding.negotiate(requestHeaders.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if (encoding == null) {
+            context.proceed();
+            return;
+        }
+
+        CompressingOutputStream out =
+            new CompressingOutputStream(context.getOutputStream(), headers, encoding, compressor);
+        context.setOutputStream(out);
+        boolean written = false;
+        try {
+            context.proceed();
+            written = true;
+        } finally {
+            // A failed response gets no gzip trailer (it is broken anyway), but its deflater is still returned
+            if (written) {
+                out.finish();
+            } else {
+                out.abort();
+            }
+        }
+    }
+
+    static boolean isCompressible(MediaType mediaType) {
+        if (mediaType == null) {
+            return false;
+        }
+        String subtype = mediaType.getSubtype();
+        return (mediaType.getType().equals("text") && !mediaType.isWildcardSubtype())
+            || (mediaType.getType().equals("application") && (subtype.equals("json") || subtype.endsWith(JSON_SUFFIX)
+                || subtype.equals("x-ndjson") || subtype.endsWith(NDJSON_SUFFIX)));
+    }
+
+    /**
+     * Adds {@code Accept-Encoding} to the {@code Vary} header (unless it is already there), so caches keep the
+     * compressed and uncompressed responses apart.
+     */
+    private static void addVary(MultivaluedMap<String, Object> headers) {
+        List<Object> vary = headers.get(HttpHeaders.VARY);
+        if (vary == null) {
+            headers.putSingle(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            return;
+        }
+        for (Object value : vary) {
+            if (value.toString().toLowerCase().contains("accept-encoding")) {
+                return;
+            }
+        }
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    }
+}
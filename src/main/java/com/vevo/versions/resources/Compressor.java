@@ -0,0 +1,189 @@
+package com.vevo.versions.resources;
+
+import com.vevo.versions.Config;
+import com.vevo.versions.metrics.MetricRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+
+/**
+ * Compresses responses with {@link Deflater}s borrowed from a pool per {@link ContentEncoding}, rather than allocating
+ * one (and its native zlib state) per response.  Responses smaller than {@link Config#getCompressionMinSize()} bytes
+ * are not worth compressing; see {@link CompressionInterceptor} and {@link ResponseCache}.
+ */
+@Singleton
+public class Compressor {
+    // Idle deflaters kept per encoding; more may be in use at once, but the extra ones are ended when returned
+    private static final int MAX_POOLED = 64;
+    private static final int BUFFER_SIZE = 4096;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final int level;
+    private final int minSize;
+    private final BlockingQueue<Deflater>[] pools;
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    @Inject
+    public Compressor(Config config, MetricRegistry metrics) {
+        this(config.getCompressionLevel(), config.getCompressionMinSize());
+        metrics.counter("compression.bytes_in", this::getBytesIn);
+        metrics.counter("compression.bytes_out", this::getBytesOut);
+    }
+
+    /**
+     * @param level     The {@link Deflater} level, 1 (fastest) to 9 (smallest).
+     * @param minSize   The size (bytes) below which responses are sent uncompressed.
+     */
+    @SuppressWarnings("unchecked")
+    public Compressor(int level, int minSize) {
+        this.level = level;
+        this.minSize = minSize;
+        this.pools = new BlockingQueue[ContentEncoding.values().length];
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            pools[encoding.ordinal()] = new ArrayBlockingQueue<>(MAX_POOLED);
+        }
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Returns {@code bytes} compressed with {@code encoding}.
+     */
+    public byte[] compress(byte[] bytes, ContentEncoding encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 2));
+        try (OutputStream compressed = compress(out, encoding)) {
+            compressed.write(bytes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns a stream which compresses what is written to it with {@code encoding} into {@code out}.  Closing it
+     * finishes the compressed data and returns its {@link Deflater} to the pool, but does not close {@code out}.  Its
+     * {@code flush()} flushes what has been compressed so far (a zlib sync flush), for streamed responses.
+     */
+    public OutputStream compress(OutputStream out, ContentEncoding encoding) throws IOException {
+        Deflater deflater = pools[encoding.ordinal()].poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, encoding.isNowrap());
+        }
+        return (encoding == ContentEncoding.GZIP)
+            ? new GzipStream(out, deflater)
+            : new DeflateStream(out, deflater, encoding);
+    }
+
+    /**
+     * Returns the {@link Deflater} of {@code compressed} (a stream from {@link #compress(OutputStream,
+     * ContentEncoding)}) to the pool without finishing the compressed data, for a response which failed part way.
+     */
+    public void abort(OutputStream compressed) {
+        ((DeflateStream) compressed).abort();
+    }
+
+    /**
+     * The uncompressed and compressed size of everything compressed so far.
+     */
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    private void release(Deflater deflater, ContentEncoding encoding) {
+        bytesIn.add(deflater.getBytesRead());
+        bytesOut.add(deflater.getBytesWritten());
+        deflater.reset();
+        if (!pools[encoding.ordinal()].offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes zlib ({@code deflate}) data, and returns its deflater when closed.
+     */
+    private class DeflateStream extends DeflaterOutputStream {
+        private final ContentEncoding encoding;
+        private boolean closed;
+
+        DeflateStream(OutputStream out, Deflater deflater, ContentEncoding encoding) {
+            super(out, deflater, BUFFER_SIZE, true);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                finish();
+                writeTrailer();
+                out.flush();
+            } finally {
+                release(def, encoding);
+            }
+        }
+
+        void abort() {
+            if (!closed) {
+                closed = true;
+                release(def, encoding);
+            }
+        }
+
+        void writeTrailer() throws IOException {
+        }
+    }
+
+    /**
+     * Writes gzip data: a header, raw deflate data, and a trailer of the CRC-32 and length of the uncompressed data
+     * ({@link java.util.zip.GZIPOutputStream} can not use a pooled deflater).
+     */
+    private class GzipStream extends DeflateStream {
+        private final CRC32 crc = new CRC32();
+
+        GzipStream(OutputStream out, Deflater deflater) throws IOException {
+            super(out, deflater, ContentEncoding.GZIP);
+            out.write(GZIP_HEADER);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            super.write(bytes, offset, length);
+            crc.update(bytes, offset, length);
+        }
+
+        @Override
+        void writeTrailer() throws IOException {
+            writeInt((int) crc.getValue());
+            writeInt(def.getTotalIn());
+        }
+
+        private void writeInt(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.vevo.versions.resources;
+
+
+/**
+ * The response compressions we support, and {@code Accept-Encoding} negotiation between them.
+ */
+public enum ContentEncoding {
+    GZIP("gzip", true),
+    DEFLATE("deflate", false);
+
+    private final String name;
+    private final boolean nowrap;
+
+    ContentEncoding(String name, boolean nowrap) {
+        this.name = name;
+        this.nowrap = nowrap;
+    }
+
+    /**
+     * The {@code Content-Encoding} header value.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Whether the {@link java.util.zip.Deflater} writes raw deflate data ({@code gzip} adds its own header and
+     * trailer) rather than the zlib format ({@code deflate}).
+     */
+    boolean isNowrap() {
+        return nowrap;
+    }
+
+    /**
+     * Returns the encoding the client prefers in an {@code Accept-Encoding} header, i.e. {@code gzip, deflate;q=0.5},
+     * or {@code null} if it accepts neither (or sent no header).  {@code gzip} wins ties, and {@code *} means any
+     * encoding not otherwise listed.
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        ContentEncoding best = null;
+        float bestQuality = 0;
+        float wildcard = -1;
+        boolean[] listed = new boolean[values().length];
+        int start = 0;
+        int length = acceptEncoding.length();
+        while (start < length) {
+            int end = acceptEncoding.indexOf(',', start);
+            if (end == -1) {
+                end = length;
+            }
+            int params = acceptEncoding.indexOf(';', start);
+            String coding = acceptEncoding.substring(start, ((params == -1) || (params > end)) ? end : params).trim();
+            float quality = ((params == -1) || (params > end)) ? 1 : quality(acceptEncoding.substring(params + 1, end));
+            if (coding.equals("*")) {
+                wildcard = quality;
+            } else {
+                for (ContentEncoding encoding : values()) {
+                    if (!coding.equalsIgnoreCase(encoding.name)) {
+                        continue;
+                    }
+                    listed[encoding.ordinal()] = true;
+                    if ((quality > 0)
+                            && ((quality > bestQuality) || ((quality == bestQuality) && (encoding == GZIP)))) {
+                        best = encoding;
+                        bestQuality = quality;
+                    }
+                }
+            }
+            start = end + 1;
+        }
+        if ((best == null) && (wildcard > 0)) {
+            // Any encoding which was not listed (so not refused with q=0)
+            for (ContentEncoding encoding : values()) {
+                if (!listed[encoding.ordinal()]) {
+                    return encoding;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Parses the {@code q} parameter of an {@code Accept-Encoding} element, i.e. {@code q=0.5}; malformed values are
+     * treated as 0 (not acceptable).
+     */
+    private static float quality(String params) {
+        for (String param : params.split(";")) {
+            param = param.trim();
+            if (param.startsWith("q=") || param.startsWith("Q=")) {
+                try {
+                    return Float.parseFloat(param.substring(2).trim());
+                } catch (NumberFormatException ex) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+}
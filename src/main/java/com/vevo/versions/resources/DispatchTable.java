@@ -0,0 +1,171 @@
+package com.vevo.versions.resources;
+
+import com.vevo.versions.metrics.Endpoint;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.ToLongBiFunction;
+
+
+/**
+ * The routes of {@link VersionsResource}, built once at startup from a {@link VersionRegistry}.  A route is looked up
+ * by {@link Endpoint} (strategy and method) and version with two array reads, so adding a version adds a table entry
+ * rather than another Jersey resource method to match against.
+ */
+final class DispatchTable {
+    private static final Endpoint[] ROUTED = {
+        Endpoint.PATH_GET, Endpoint.PATH_POST, Endpoint.PATH_STREAM,
+        Endpoint.HEADER_GET, Endpoint.HEADER_POST, Endpoint.HEADER_STREAM};
+    private static final int MAX_VERSION_DIGITS = 9;
+
+    private final Route[][] routes = new Route[Endpoint.values().length][];
+
+    /**
+     * @param registry      The supported versions.
+     * @param pathType      The response media type of path requests, used in the {@link ResponseCache} key.
+     * @param headerTypes   The response media type of header requests by version.
+     * @param timeouts      The timeout (ms) of each endpoint and version.
+     * @param inline        Whether the work of {@link VersionContext#isNonBlocking() non-blocking} contexts may be run
+     *                      inline (see {@link Route#isInline()}).
+     */
+    DispatchTable(
+            VersionRegistry registry, String pathType, IntFunction<String> headerTypes,
+            ToLongBiFunction<Endpoint, Integer> timeouts, boolean inline) {
+        int size = registry.getLatest().getVersion() + 1;
+        for (Endpoint endpoint : ROUTED) {
+            Route[] byVersion = new Route[size];
+            for (VersionContext versionContext : registry.getSupported()) {
+                int version = versionContext.getVersion();
+                String mediaType = endpoint.getStrategy().equals("path") ? pathType : headerTypes.apply(version);
+                byVersion[version] = new Route(endpoint, versionContext, mediaType,
+                    timeouts.applyAsLong(endpoint, version), inline && versionContext.isNonBlocking());
+            }
+            routes[endpoint.ordinal()] = byVersion;
+        }
+    }
+
+    /**
+     * Returns the route for {@code endpoint} and {@code version}, or {@code null} if there is none.
+     */
+    Route get(Endpoint endpoint, int version) {
+        Route[] byVersion = routes[endpoint.ordinal()];
+        return ((byVersion == null) || (version < 0) || (version >= byVersion.length)) ? null : byVersion[version];
+    }
+
+    /**
+     * Returns the version of a path segment such as {@code v2}, or {@code -1} if it is malformed.
+     */
+    static int parsePathVersion(String segment) {
+        int length = segment.length();
+        if ((length < 2) || (length > MAX_VERSION_DIGITS + 1)
+                || ((segment.charAt(0) != 'v') && (segment.charAt(0) != 'V'))) {
+            return -1;
+        }
+        int version = 0;
+        for (int idx = 1; idx < length; idx++) {
+            char ch = segment.charAt(idx);
+            if ((ch < '0') || (ch > '9')) {
+                return -1;
+            }
+            version = (version * 10) + (ch - '0');
+        }
+        return version;
+    }
+
+    /**
+     * What a request is dispatched to: the timed {@link Endpoint}, the {@link VersionContext} doing the work, the
+     * media type of the response, how long the work may take, and whether it is run inline (see
+     * {@link RequestDispatcher}).
+     */
+    static final class Route {
+        // Run times are averaged with a weight of 1/16 per run.  The first (cold) runs are left out, so the class
+        // loading and interpretation of a fresh service do not move its routes, and the average is only trusted once
+        // it is made of enough runs
+        private static final int AVERAGE_SHIFT = 4;
+        private static final int COLD_RUNS = 1 << AVERAGE_SHIFT;
+        private static final int TRUSTED_RUNS = COLD_RUNS + (1 << AVERAGE_SHIFT);
+
+        private final Endpoint endpoint;
+        private final VersionContext versionContext;
+        private final String mediaType;
+        private final long timeoutMillis;
+        private final long timeoutNanos;
+        private final boolean inlineAllowed;
+
+        // Updated without synchronization: a race only loses a sample
+        private volatile boolean inline;
+        private volatile long averageNanos;
+        private volatile int runs;
+
+        private Route(
+                Endpoint endpoint, VersionContext versionContext, String mediaType, long timeoutMillis,
+                boolean inlineAllowed) {
+            this.endpoint = endpoint;
+            this.versionContext = versionContext;
+            this.mediaType = mediaType;
+            this.timeoutMillis = timeoutMillis;
+            this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            this.inlineAllowed = inlineAllowed;
+            this.inline = inlineAllowed;
+        }
+
+        Endpoint getEndpoint() {
+            return endpoint;
+        }
+
+        VersionContext getVersionContext() {
+            return versionContext;
+        }
+
+        String getMediaType() {
+            return mediaType;
+        }
+
+        long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        /**
+         * Whether the work is run on the calling (container) thread rather than the request executor.  Only routes of
+         * {@link VersionContext#isNonBlocking() non-blocking} contexts are ever inline: they start out inline, and
+         * {@link #recordRun} moves them off and back as their work gets slower and faster.
+         */
+        boolean isInline() {
+            return inline;
+        }
+
+        /**
+         * Records a run of the work which took {@code nanos}, and returns {@code true} if that changed
+         * {@link #isInline()} (possibly to more than one caller).  An inline route stops being inline when a run takes
+         * longer than the route's timeout, or the moving average of the runs (leaving out the first, cold runs, and
+         * once there are enough of them) exceeds {@code budgetNanos}.  It is inline again once the average is back under half of {@code budgetNanos}.
+         */
+        boolean recordRun(long nanos, long budgetNanos) {
+            if (!inlineAllowed) {
+                return false;
+            }
+            int count = runs;
+            boolean trusted = (count >= TRUSTED_RUNS);
+            if (!trusted) {
+                runs = count + 1;
+            }
+            long average = averageNanos;
+            if (count >= COLD_RUNS) {
+                average = (count == COLD_RUNS) ? nanos : (average + ((nanos - average) >> AVERAGE_SHIFT));
+                averageNanos = average;
+            }
+            if (inline && ((nanos > timeoutNanos) || (trusted && (average > budgetNanos)))) {
+                inline = false;
+                return true;
+            } else if (!inline && trusted && (average <= (budgetNanos / 2))) {
+                inline = true;
+                return true;
+            }
+            return false;
+        }
+
+        long getAverageNanos() {
+            return averageNanos;
+        }
+    }
+}
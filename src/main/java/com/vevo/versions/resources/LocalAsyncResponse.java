@@ -0,0 +1,97 @@
+package com.vevo.versions.resources;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+
+
+/**
+ * An {@link AsyncResponse} which completes {@link #getResult()} when resumed, so requests can be run through
+ * {@link VersionsResource} in-process without a container (i.e. by {@link ResourceWarmUp}, and the benchmarks).
+ * Timeouts and callbacks are ignored: there is no connection to time out or lose.
+ */
+class LocalAsyncResponse implements AsyncResponse {
+    private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+    /**
+     * Completes with the resumed entity, or exceptionally with the resumed Throwable.
+     */
+    CompletableFuture<Object> getResult() {
+        return result;
+    }
+
+    @Override
+    public boolean resume(Object response) {
+        return result.complete(response);
+    }
+
+    @Override
+    public boolean resume(Throwable response) {
+        return result.completeExceptionally(response);
+    }
+
+    @Override
+    public boolean cancel() {
+        return result.cancel(false);
+    }
+
+    @Override
+    public boolean cancel(int retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean cancel(Date retryAfter) {
+        return cancel();
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return !result.isDone();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return result.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    @Override
+    public boolean setTimeout(long time, TimeUnit unit) {
+        return true;
+    }
+
+    @Override
+    public void setTimeoutHandler(TimeoutHandler handler) {
+    }
+
+    @Override
+    public Collection<Class<?>> register(Class<?> callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public Collection<Class<?>> register(Object callback) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+        return Collections.emptyMap();
+    }
+}
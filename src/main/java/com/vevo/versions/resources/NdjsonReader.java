@@ -0,0 +1,85 @@
+package com.vevo.versions.resources;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Reads newline delimited records (NDJSON) from a stream one at a time, so memory is bounded by the longest record
+ * rather than by the size of the stream.  Blank lines are skipped and a trailing {@code \r} is removed.
+ */
+public class NdjsonReader {
+    public static final int DEFAULT_MAX_RECORD_BYTES = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int INITIAL_RECORD_SIZE = 256;
+
+    private final InputStream in;
+    private final int maxRecordBytes;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private byte[] record = new byte[INITIAL_RECORD_SIZE];
+
+    public NdjsonReader(InputStream in) {
+        this(in, DEFAULT_MAX_RECORD_BYTES);
+    }
+
+    public NdjsonReader(InputStream in, int maxRecordBytes) {
+        this.in = in;
+        this.maxRecordBytes = maxRecordBytes;
+    }
+
+    /**
+     * Returns the next record, or {@code null} at the end of the stream.
+     *
+     * @throws RecordTooLargeException  If a record is longer than the maximum record size.
+     */
+    public String next() throws IOException {
+        int length = 0;
+        while (true) {
+            if (position == limit) {
+                limit = Math.max(in.read(buffer), 0);
+                position = 0;
+                if (limit == 0) {
+                    return decode(length);
+                }
+            }
+            byte current = buffer[position++];
+            if (current == '\n') {
+                String line = decode(length);
+                if (line != null) {
+                    return line;
+                }
+                length = 0;
+                continue;
+            }
+            if (length == maxRecordBytes) {
+                throw new RecordTooLargeException(maxRecordBytes);
+            }
+            if (length == record.length) {
+                record = Arrays.copyOf(record, Math.min(length * 2, maxRecordBytes));
+            }
+            record[length++] = current;
+        }
+    }
+
+    /**
+     * Returns the record of the first {@code length} bytes, without a trailing {@code \r}, or {@code null} if that
+     * leaves it blank.
+     */
+    private String decode(int length) {
+        if ((length > 0) && (record[length - 1] == '\r')) {
+            length--;
+        }
+        return (length == 0) ? null : new String(record, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public static class RecordTooLargeException extends IOException {
+        RecordTooLargeException(int maxRecordBytes) {
+            super("NDJSON record exceeds " + maxRecordBytes + " bytes");
+        }
+    }
+}
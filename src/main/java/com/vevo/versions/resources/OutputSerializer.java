@@ -0,0 +1,45 @@
+package com.vevo.versions.resources;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Serializes the output of a {@link VersionContext} the same way Jersey writes it: {@link VersionedResponse}s with
+ * their own writer, Strings as-is, anything else as JSON.
+ */
+final class OutputSerializer {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private OutputSerializer() {
+    }
+
+    static byte[] serialize(Object output) {
+        if (output instanceof VersionedResponse) {
+            return ((VersionedResponse) output).toBytes();
+        }
+        if (output instanceof String) {
+            return ((String) output).getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            return MAPPER.writeValueAsBytes(output);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unable to serialize " + output.getClass().getName(), ex);
+        }
+    }
+
+    /**
+     * Same as {@link #serialize(Object)}, writing to {@code out}.
+     */
+    static void writeTo(Object output, OutputStream out) throws IOException {
+        if (output instanceof VersionedResponse) {
+            ((VersionedResponse) output).writeTo(out);
+        } else {
+            out.write(serialize(output));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.vevo.versions.resources;
+
+import java.util.function.BiFunction;
+
+
+/**
+ * Describes how a version renders its output.  Each version derives its plan from its predecessor's by applying a
+ * delta (a {@code UnaryOperator<RenderPlan>}), i.e. V2 = V1 with a new label, as a JSON value.  The plan of a version
+ * is then {@link #compile() compiled} once into a single function which renders the output model in one pass, without
+ * building the representations of the earlier versions.
+ */
+public final class RenderPlan {
+    private static final String LABEL_SEPARATOR = ": ";
+    private static final String BODY_SEPARATOR = " / ";
+
+    private final String label;
+    private final boolean value;
+
+    private RenderPlan(String label, boolean value) {
+        this.label = label;
+        this.value = value;
+    }
+
+    /**
+     * A plan rendering plain text, i.e. "{@code label}: path / body", as a {@link TextResponse}.
+     */
+    public static RenderPlan text(String label) {
+        return new RenderPlan(label, false);
+    }
+
+    public RenderPlan withLabel(String label) {
+        return new RenderPlan(label, value);
+    }
+
+    /**
+     * Renders the text as the {@code value} of a JSON object (a {@link ValueResponse}) instead of as plain text.
+     */
+    public RenderPlan asValue() {
+        return new RenderPlan(label, true);
+    }
+
+    /**
+     * Returns a function of (path, body) which renders this plan.
+     */
+    public BiFunction<String, String, VersionedResponse> compile() {
+        final String prefix = label + LABEL_SEPARATOR;
+        final boolean asValue = value;
+        return (path, body) -> {
+            int length = prefix.length() + path.length()
+                + ((body == null) ? 0 : (BODY_SEPARATOR.length() + body.length()));
+            StringBuilder text = new StringBuilder(length).append(prefix).append(path);
+            if (body != null) {
+                text.append(BODY_SEPARATOR).append(body);
+            }
+            return asValue ? new ValueResponse(text.toString()) : new TextResponse(text.toString());
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "RenderPlan[label=" + label + ", value=" + value + "]";
+    }
+}
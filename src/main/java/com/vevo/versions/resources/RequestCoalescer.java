@@ -0,0 +1,62 @@
+package com.vevo.versions.resources;
+
+import com.vevo.versions.metrics.MetricRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+
+/**
+ * Collapses identical concurrent GETs (same {@link ResponseCache.Key}, so same version and {@code something}) into one
+ * call to the {@link VersionContext}.  The first request becomes the leader and does the work; requests which arrive
+ * while it is in flight wait on its future instead.  The in-flight map is maintained with
+ * {@link ConcurrentMap#putIfAbsent} and {@link ConcurrentMap#remove(Object, Object)}, so no locks are held, and an
+ * entry is removed as soon as its future completes.
+ */
+@Singleton
+public class RequestCoalescer {
+    private final ConcurrentMap<ResponseCache.Key, CompletableFuture<ResponseCache.Entry>> inFlight =
+        new ConcurrentHashMap<>();
+    private final LongAdder collapsed = new LongAdder();
+
+    @Inject
+    public RequestCoalescer(MetricRegistry metrics) {
+        metrics.counter("coalescer.collapsed", this::getCollapsedCount);
+        metrics.gauge("coalescer.in_flight", this::getInFlightCount);
+    }
+
+    public RequestCoalescer() {
+    }
+
+    /**
+     * Returns the future of the request in flight for {@code key}, or {@code null} if there is none.  In that case the
+     * caller is the leader: {@code flight} is in flight for {@code key} until it completes, and the caller must
+     * complete it (normally or exceptionally).
+     */
+    public CompletableFuture<ResponseCache.Entry> join(
+            ResponseCache.Key key, CompletableFuture<ResponseCache.Entry> flight) {
+        CompletableFuture<ResponseCache.Entry> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            collapsed.increment();
+            return existing;
+        }
+        flight.whenComplete((entry, ex) -> inFlight.remove(key, flight));
+        return null;
+    }
+
+    /**
+     * The number of requests which waited on another request instead of doing the work.
+     */
+    public long getCollapsedCount() {
+        return collapsed.sum();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,224 @@
+package com.vevo.versions.resources;
+
+import com.vevo.versions.Config;
+import com.vevo.versions.concurrent.AdaptiveLimiter;
+import com.vevo.versions.concurrent.NamedThreadFactory;
+import com.vevo.versions.concurrent.RequestExecutor;
+import com.vevo.versions.metrics.RequestTiming;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+
+/**
+ * Runs the version specific work of a {@link DispatchTable.Route} under the {@link AdaptiveLimiter} and the route's
+ * timeout.  Every request is admitted by the limiter, or shed with a 503 and {@code Retry-After}.
+ *
+ * <p>The work of an {@link DispatchTable.Route#isInline() inline} route is run on the calling thread: it cannot be
+ * interrupted, but if it takes longer than the route's timeout the response is still a 503, and the limit backs off as
+ * for a timeout.  A route whose work times out, or averages more than the inline budget
+ * ({@link Config#getInlineBudgetMillis()}), is moved to the {@link RequestExecutor} until its work is fast again (see
+ * {@link DispatchTable.Route#recordRun}).  Work on the executor is interrupted and answered with a 503 when it times
+ * out, and interrupted when the request is cancelled (i.e. the client disconnected).</p>
+ */
+@Singleton
+public class RequestDispatcher {
+    static final String TIMER_THREAD_NAME_PREFIX = "versions-timeouts-";
+    static final String COMPLETION_THREAD_NAME_PREFIX = "versions-timeout-completions-";
+    private static final Logger log = LoggerFactory.getLogger(RequestDispatcher.class);
+
+    // Sent with 503s, when the request was shed or timed out
+    private static final int RETRY_AFTER_SECONDS = 1;
+
+    private final RequestExecutor executor;
+    private final AdaptiveLimiter limiter;
+    private final long inlineBudgetNanos;
+    private final ScheduledThreadPoolExecutor timeouts;
+    // Runs the timeouts once they are due, so completing a request (which resumes and may write its response) never
+    // holds up the single timer thread.  Timeouts are the exception, so few threads are kept.
+    private final ExecutorService completions;
+
+    @Inject
+    public RequestDispatcher(RequestExecutor executor, AdaptiveLimiter limiter, Config config) {
+        this(executor, limiter, config.getInlineBudgetMillis());
+    }
+
+    public RequestDispatcher(RequestExecutor executor, AdaptiveLimiter limiter, long inlineBudgetMillis) {
+        this.executor = executor;
+        this.limiter = limiter;
+        this.inlineBudgetNanos = TimeUnit.MILLISECONDS.toNanos(inlineBudgetMillis);
+        this.timeouts = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(TIMER_THREAD_NAME_PREFIX));
+        // Most requests complete before their timeout, so do not keep their cancelled timeouts until they are due
+        timeouts.setRemoveOnCancelPolicy(true);
+        this.completions = Executors.newCachedThreadPool(new NamedThreadFactory(COMPLETION_THREAD_NAME_PREFIX));
+    }
+
+    /**
+     * Runs {@code work} (see above), and completes the returned future with its result, with a 503 if it is shed or
+     * times out, or with a 500 if it throws.  Cancelling the future interrupts {@code work} if it is running on the
+     * executor.  {@code onDropped} (optional) is run if {@code work} is shed, rejected or interrupted.
+     */
+    CompletableFuture<Response> submit(
+            DispatchTable.Route route, RequestTiming timing, Supplier<Response> work, Runnable onDropped) {
+        return submit(route, route.isInline(), timing, work, onDropped);
+    }
+
+    /**
+     * Same as {@link #submit(DispatchTable.Route, RequestTiming, Supplier, Runnable)}, but running {@code work} inline
+     * only if {@code inline}, whatever the route, i.e. to warm up the executor path of an inline route.
+     */
+    CompletableFuture<Response> submit(
+            DispatchTable.Route route, boolean inline, RequestTiming timing, Supplier<Response> work,
+            Runnable onDropped) {
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        if (!limiter.tryAcquire()) {
+            dropped(onDropped);
+            result.complete(unavailable());
+        } else if (inline) {
+            result.complete(runInline(route, timing, work));
+        } else {
+            runOnExecutor(route, timing, work, onDropped, result);
+        }
+        return result;
+    }
+
+    /**
+     * Runs {@code task} after {@code delayMillis}, unless the returned future is cancelled first, i.e. to time out a
+     * request waiting for something other than its own work.  The timer thread hands {@code task} off to a completion
+     * thread, so it may complete (and resume) requests.
+     */
+    ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+        return timeouts.schedule(() -> completions.execute(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the timeouts.  Work still running on the executor is not timed out anymore.
+     */
+    public void shutdown() {
+        timeouts.shutdownNow();
+        completions.shutdown();
+    }
+
+    private Response runInline(DispatchTable.Route route, RequestTiming timing, Supplier<Response> work) {
+        long start = System.nanoTime();
+        Response output;
+        try {
+            output = timed(timing, work);
+        } catch (RuntimeException ex) {
+            output = serverError(route, ex);
+        }
+        long elapsed = System.nanoTime() - start;
+        recordRun(route, elapsed);
+        if (elapsed > TimeUnit.MILLISECONDS.toNanos(route.getTimeoutMillis())) {
+            // Answered like a timeout on the executor, and so is the limit
+            limiter.onDropped();
+            return unavailable();
+        }
+        limiter.onSuccess(elapsed);
+        return output;
+    }
+
+    private void runOnExecutor(
+            DispatchTable.Route route, RequestTiming timing, Supplier<Response> work, Runnable onDropped,
+            CompletableFuture<Response> result) {
+        long start = System.nanoTime();
+        FutureTask<Response> task = new FutureTask<Response>(() -> {
+            long workStart = System.nanoTime();
+            try {
+                return timed(timing, work);
+            } finally {
+                recordRun(route, System.nanoTime() - workStart);
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (isCancelled()) {
+                    // Timed out, cancelled or rejected: the canceller completes the result
+                    limiter.onDropped();
+                    dropped(onDropped);
+                    return;
+                }
+                limiter.onSuccess(System.nanoTime() - start);
+                Response output;
+                try {
+                    output = get();
+                } catch (InterruptedException | ExecutionException ex) {
+                    output = serverError(route, (ex.getCause() == null) ? ex : ex.getCause());
+                }
+                result.complete(output);
+            }
+        };
+        ScheduledFuture<?> timeout = schedule(() -> {
+            if (task.cancel(true)) {
+                result.complete(unavailable());
+            }
+        }, route.getTimeoutMillis());
+        result.whenComplete((output, ex) -> {
+            timeout.cancel(false);
+            if (ex instanceof CancellationException) {
+                task.cancel(true);
+            }
+        });
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            if (task.cancel(false)) {
+                result.complete(unavailable());
+            }
+        }
+    }
+
+    private void recordRun(DispatchTable.Route route, long nanos) {
+        if (route.recordRun(nanos, inlineBudgetNanos)) {
+            log.warn("Moved endpoint={} version={} {}: its work takes {}us on average",
+                route.getEndpoint().getName(), route.getVersionContext().getVersion(),
+                route.isInline() ? "back inline" : "to the request executor",
+                TimeUnit.NANOSECONDS.toMicros(route.getAverageNanos()));
+        }
+    }
+
+    static Response unavailable() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+            .build();
+    }
+
+    static Response serverError(DispatchTable.Route route, Throwable ex) {
+        log.error("Request failed: endpoint={} version={}",
+            route.getEndpoint().getName(), route.getVersionContext().getVersion(), ex);
+        return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+    }
+
+    private static void dropped(Runnable onDropped) {
+        if (onDropped != null) {
+            onDropped.run();
+        }
+    }
+
+    private static Response timed(RequestTiming timing, Supplier<Response> work) {
+        timing.workStarted();
+        try {
+            return work.get();
+        } finally {
+            timing.workFinished();
+        }
+    }
+}
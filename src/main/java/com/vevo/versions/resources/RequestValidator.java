@@ -0,0 +1,180 @@
+package com.vevo.versions.resources;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.github.fge.jackson.JsonLoader;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.LogLevel;
+import com.github.fge.jsonschema.core.report.ProcessingMessage;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+
+/**
+ * Validates POST bodies against the {@link VersionContext#getRequestSchema() request schema} of their version.  Schemas
+ * are {@link #load(String) loaded} and compiled once, when their context is created, and each body is parsed once into
+ * a {@link JsonNode} which is validated directly.  A body which starts with a JSON object or array is JSON, and must
+ * parse completely; anything else (legacy clients post plain text, such as {@code 42 apples} or {@code 123}) is
+ * validated as a JSON string.
+ */
+public final class RequestValidator {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonSchemaFactory FACTORY = JsonSchemaFactory.byDefault();
+    private static final String MALFORMED = "Malformed JSON: the body starts as an object or array, but does not parse";
+
+    private RequestValidator() {
+    }
+
+    /**
+     * Loads and compiles the schema at {@code resource} (on the classpath).
+     */
+    public static JsonSchema load(String resource) {
+        try {
+            return FACTORY.getJsonSchema(JsonLoader.fromResource(resource));
+        } catch (IOException | ProcessingException ex) {
+            throw new IllegalStateException("Unable to load schema " + resource, ex);
+        }
+    }
+
+    /**
+     * Returns the problems with {@code body} for {@code versionContext}, or an empty list if it is valid (or there is
+     * no body or schema).
+     */
+    public static List<Violation> validate(VersionContext versionContext, String body) {
+        if ((versionContext.getRequestSchema() == null) || (body == null)) {
+            return Collections.emptyList();
+        }
+        return validateParsed(versionContext, parse(body));
+    }
+
+    /**
+     * Same as {@link #validate(VersionContext, String)} for a body already {@link #parse parsed}, i.e. to reuse it
+     * afterwards (see {@link VersionContext#toStoredValue}).  {@code parsed} is {@code null} if there is no body.
+     */
+    public static List<Violation> validateParsed(VersionContext versionContext, JsonNode parsed) {
+        JsonSchema schema = versionContext.getRequestSchema();
+        if ((schema == null) || (parsed == null)) {
+            return Collections.emptyList();
+        }
+        if (parsed.isMissingNode()) {
+            return Collections.singletonList(new Violation("", MALFORMED));
+        }
+        ProcessingReport report = schema.validateUnchecked(parsed);
+        if (report.isSuccess()) {
+            return Collections.emptyList();
+        }
+        List<Violation> violations = new ArrayList<>();
+        for (ProcessingMessage message : report) {
+            if ((message.getLogLevel() == LogLevel.ERROR) || (message.getLogLevel() == LogLevel.FATAL)) {
+                violations.add(new Violation(
+                    message.asJson().path("instance").path("pointer").asText(), message.getMessage()));
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * The 400 response for an invalid body, i.e.:
+     *
+     * <pre>
+     * {"status":400,"error":"Invalid request body","version":2,
+     *  "violations":[{"pointer":"/value","message":"instance type (integer) does not match ..."}]}
+     * </pre>
+     */
+    public static Response badRequest(int version, List<Violation> violations) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = MAPPER.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+            json.writeNumberField("status", Response.Status.BAD_REQUEST.getStatusCode());
+            json.writeStringField("error", "Invalid request body");
+            json.writeNumberField("version", version);
+            json.writeArrayFieldStart("violations");
+            for (Violation violation : violations) {
+                json.writeStartObject();
+                json.writeStringField("pointer", violation.getPointer());
+                json.writeStringField("message", violation.getMessage());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to write violations", ex);
+        }
+        return Response.status(Response.Status.BAD_REQUEST)
+            .type(MediaType.APPLICATION_JSON_TYPE)
+            .entity(out.toByteArray())
+            .build();
+    }
+
+    /**
+     * Parses {@code body} as a JSON object or array, or as a JSON string if it is anything else.  A body which starts
+     * like an object or array but does not parse completely, such as a truncated {@code {"value": } or {@code {} and
+     * more} (Jackson stops after the first value, so it would otherwise be read as {@code {}}), is malformed: it is
+     * returned as a {@link MissingNode}, which {@link #validateParsed} reports as a violation.  Bodies which obviously
+     * are not JSON are not parsed, since a failed parse (an exception) costs several times more than a successful one.
+     */
+    static JsonNode parse(String body) {
+        if (!mayBeJson(body)) {
+            return TextNode.valueOf(body);
+        }
+        try (JsonParser parser = MAPPER.getFactory().createParser(body)) {
+            JsonNode node = MAPPER.readTree(parser);
+            return ((node == null) || (parser.nextToken() != null)) ? MissingNode.getInstance() : node;
+        } catch (JsonProcessingException ex) {
+            return MissingNode.getInstance();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to read body", ex);
+        }
+    }
+
+    private static boolean mayBeJson(String body) {
+        for (int idx = 0; idx < body.length(); idx++) {
+            char ch = body.charAt(idx);
+            if (!Character.isWhitespace(ch)) {
+                return (ch == '{') || (ch == '[');
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One problem with a body: where (a JSON pointer, empty for the whole body) and what.
+     */
+    public static final class Violation {
+        private final String pointer;
+        private final String message;
+
+        Violation(String pointer, String message) {
+            this.pointer = pointer;
+            this.message = message;
+        }
+
+        public String getPointer() {
+            return pointer;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return (pointer.isEmpty() ? "" : (pointer + ": ")) + message;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.vevo.versions.resources;
+
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.vevo.versions.Config;
+import com.vevo.versions.metrics.Endpoint;
+import com.vevo.versions.metrics.RequestMetrics;
+import com.vevo.versions.metrics.RequestTiming;
+import com.vevo.versions.persistence.SomethingStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+
+/**
+ * Runs requests through every route of {@link VersionsResource} before the endpoint starts (see
+ * {@link Config#isFastStart()}), so class loading, schema compilation and JIT compilation are not paid by the first
+ * requests.  The requests go through the resource's Jersey methods as a container would call them: header
+ * negotiation and path version parsing, the concurrency limit and {@link RequestDispatcher}, validation, the
+ * {@link RequestCoalescer} and the {@link ResponseCache} (misses, hits, 304s and precompressed entries).  Their
+ * responses are then written to a null stream the way Jersey writes them, with {@link VersionedResponseWriter} and
+ * {@link CompressingOutputStream}.  The work of each route is also run once more on the executor, which an inline
+ * route otherwise only reaches when it is moved there.
+ *
+ * <p>Warm-up requests are recorded in the metrics and usage events like any other, under the client id
+ * {@value #CLIENT_ID}.  Nothing is written while the {@link SomethingStore} is enabled: POSTs and streams are
+ * skipped, and GETs render whatever is stored.</p>
+ */
+@Singleton
+public class ResourceWarmUp {
+    static final String CLIENT_ID = "warm-up";
+    private static final String SOMETHING = "warm-up";
+    private static final String BODY = "{\"value\":\"warm up\"}";
+    private static final int STREAM_RECORDS = 4;
+    private static final String ACCEPT_ENCODING = "gzip, deflate";
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private final VersionsResource resource;
+    private final RequestDispatcher dispatcher;
+    private final RequestMetrics metrics;
+    private final Compressor compressor;
+    private final SomethingStore store;
+    private final VersionedResponseWriter writer = new VersionedResponseWriter();
+
+    // Rendered output large enough to be cached and precompressed, and to be compressed when written
+    private final String largeSomething;
+
+    @Inject
+    public ResourceWarmUp(
+            VersionsResource resource, RequestDispatcher dispatcher, RequestMetrics metrics, Compressor compressor,
+            SomethingStore store, Config config) {
+        this(resource, dispatcher, metrics, compressor, store, config.getNeedsCachingSizeThreshold());
+    }
+
+    /**
+     * @param cacheSizeThreshold    The size from which {@link ResponseCache} admits a response.
+     */
+    public ResourceWarmUp(
+            VersionsResource resource, RequestDispatcher dispatcher, RequestMetrics metrics, Compressor compressor,
+            SomethingStore store, int cacheSizeThreshold) {
+        this.resource = resource;
+        this.dispatcher = dispatcher;
+        this.metrics = metrics;
+        this.compressor = compressor;
+        this.store = store;
+        this.largeSomething =
+            SOMETHING + "-" + Strings.repeat("x", Math.max(cacheSizeThreshold, compressor.getMinSize()));
+    }
+
+    /**
+     * Runs the requests of every supported version {@code iterations} times.
+     */
+    public void run(int iterations) {
+        for (int idx = 0; idx < iterations; idx++) {
+            for (VersionContext versionContext : VersionRegistry.getDefault().getSupported()) {
+                runVersion(versionContext.getVersion());
+            }
+        }
+    }
+
+    private void runVersion(int version) {
+        String pathVersion = "v" + version;
+        String type = VersionsResource.headerType(version);
+        for (String something : new String[] {SOMETHING, largeSomething}) {
+            write(request(response ->
+                resource.pathVersionGet(pathVersion, null, null, CLIENT_ID, response, something)));
+            Response output = write(request(response ->
+                resource.headerVersionGet(type, null, ACCEPT_ENCODING, CLIENT_ID, response, something)));
+            // Not modified, if it was cached
+            String etag = output.getHeaderString(HttpHeaders.ETAG);
+            write(request(response ->
+                resource.headerVersionGet(type, etag, ACCEPT_ENCODING, CLIENT_ID, response, something)));
+
+            if (!store.isEnabled()) {
+                write(request(response ->
+                    resource.pathVersionPost(pathVersion, CLIENT_ID, response, something, BODY)));
+                write(request(response -> resource.headerVersionPost(type, CLIENT_ID, response, something, BODY)));
+            }
+        }
+
+        if (!store.isEnabled()) {
+            write(resource.pathVersionStream(pathVersion, CLIENT_ID, SOMETHING, records()));
+            write(resource.headerVersionStream(
+                VersionsResource.headerStreamType(version), CLIENT_ID, SOMETHING, records()));
+        }
+
+        for (Endpoint endpoint : new Endpoint[] {Endpoint.PATH_GET, Endpoint.HEADER_GET}) {
+            DispatchTable.Route route = resource.route(endpoint, version);
+            RequestTiming timing = metrics.start(endpoint, version);
+            write(dispatcher.submit(route, false, timing,
+                () -> Response.ok(route.getVersionContext().doSomeVersionSpecificWork(SOMETHING, null)).build(), null)
+                .whenComplete((output, ex) -> timing.finish())
+                .join());
+        }
+    }
+
+    /**
+     * Calls {@code method} with a {@link LocalAsyncResponse}, and returns the response it is resumed with.  Every
+     * request completes, at the latest with a 503 when its route times out.
+     */
+    private static Response request(Consumer<AsyncResponse> method) {
+        LocalAsyncResponse response = new LocalAsyncResponse();
+        method.accept(response);
+        return (Response) response.getResult().join();
+    }
+
+    private static InputStream records() {
+        return new ByteArrayInputStream(Strings.repeat(BODY + "\n", STREAM_RECORDS).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the entity of {@code response} to a null stream, compressed unless it already is (a precompressed cached
+     * entry), and returns {@code response}.
+     */
+    private Response write(Response response) {
+        Object entity = response.getEntity();
+        if (entity == null) {
+            return response;
+        }
+        OutputStream sink = ByteStreams.nullOutputStream();
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        try {
+            if (response.getHeaderString(HttpHeaders.CONTENT_ENCODING) != null) {
+                sink.write((byte[]) entity);
+                return response;
+            }
+            CompressingOutputStream out = new CompressingOutputStream(sink, headers, ContentEncoding.GZIP, compressor);
+            if (entity instanceof VersionedResponse) {
+                writer.writeTo((VersionedResponse) entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS,
+                    MediaType.APPLICATION_JSON_TYPE, headers, out);
+            } else if (entity instanceof byte[]) {
+                out.write((byte[]) entity);
+            } else if (entity instanceof StreamingOutput) {
+                ((StreamingOutput) entity).write(out);
+            } else {
+                OutputSerializer.writeTo(entity, out);
+            }
+            out.finish();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,233 @@
+package com.vevo.versions.resources;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.net.HttpHeaders;
+import com.vevo.versions.Config;
+import com.vevo.versions.metrics.MetricRegistry;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.core.Response;
+
+
+/**
+ * A bounded in-memory cache of serialized GET responses, keyed by (version, path parameter, media type).  Entries
+ * carry a strong ETag so that conditional requests ({@code If-None-Match}) can be answered with a 304.
+ *
+ * <p>Only responses which took longer than {@link Config#getNeedsCachingTimeThreshold()} ms to produce, or are larger
+ * than {@link Config#getNeedsCachingSizeThreshold()} bytes, are admitted.  Entries are evicted by total size and
+ * TTL.  Admitted entries large enough to compress (see {@link Compressor}) are gzipped once, up front, so cache hits
+ * from clients which accept gzip are sent without compressing them again.</p>
+ */
+@Singleton
+public class ResponseCache {
+    // Rough per-entry overhead (key, entry, ETag), so many small entries still count against the size bound
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final long timeThresholdNanos;
+    private final int sizeThreshold;
+    private final Cache<Key, Entry> cache;
+    private final Compressor compressor;
+    // Responses larger than this are compressed, up front or by CompressionInterceptor
+    private final int compressMinSize;
+
+    @Inject
+    public ResponseCache(Config config, Compressor compressor, MetricRegistry metrics) {
+        this(config.getNeedsCachingTimeThreshold(), config.getNeedsCachingSizeThreshold(),
+            config.getResponseCacheMaxBytes(), config.getResponseCacheTtlSeconds(), compressor);
+        metrics.counter("response_cache.hits", this::getHitCount);
+        metrics.counter("response_cache.misses", this::getMissCount);
+        metrics.counter("response_cache.evictions", this::getEvictionCount);
+        metrics.gauge("response_cache.size", this::getSize);
+    }
+
+    public ResponseCache(int timeThresholdMillis, int sizeThreshold, long maxBytes, int ttlSeconds) {
+        this(timeThresholdMillis, sizeThreshold, maxBytes, ttlSeconds, null);
+    }
+
+    /**
+     * @param compressor    Precompresses admitted entries, or {@code null} to cache them uncompressed only.
+     */
+    public ResponseCache(
+            int timeThresholdMillis, int sizeThreshold, long maxBytes, int ttlSeconds, Compressor compressor) {
+        this.compressor = compressor;
+        this.compressMinSize = (compressor == null) ? Integer.MAX_VALUE : compressor.getMinSize();
+        this.timeThresholdNanos = TimeUnit.MILLISECONDS.toNanos(timeThresholdMillis);
+        this.sizeThreshold = sizeThreshold;
+        this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Key key, Entry entry) -> entry.bytes.length
+                + ((entry.gzipped == null) ? 0 : entry.gzipped.length) + ENTRY_OVERHEAD)
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Returns the cached entry for {@code key}, or {@code null}.
+     */
+    public Entry get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Drops the cached entry for {@code key}, if any.
+     */
+    public void invalidate(Key key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Produces the output for {@code key} with {@code work}, serializes it, and caches it if slow or large enough.
+     *
+     * <p>Every GET is serialized here, with the output's own pre-bound writer (see {@link OutputSerializer}), rather
+     * than streamed by {@link VersionedResponseWriter} when it turns out not to be admitted: admission depends on the
+     * serialized size, the ETag every GET carries (so any GET can be answered with a 304) is a hash of the bytes and
+     * must be known before the headers are sent, and coalesced GETs share the bytes (see {@link RequestCoalescer}).
+     * Responses under the size threshold are small, so buffering and hashing them costs little.</p>
+     */
+    public Entry render(Key key, Supplier<Object> work) {
+        long start = System.nanoTime();
+        byte[] bytes = OutputSerializer.serialize(work.get());
+        long elapsed = System.nanoTime() - start;
+
+        if ((elapsed < timeThresholdNanos) && (bytes.length < sizeThreshold)) {
+            return new Entry(bytes, null, compressMinSize);
+        }
+        Entry entry = new Entry(bytes, (bytes.length < compressMinSize)
+            ? null : compressor.compress(bytes, ContentEncoding.GZIP), compressMinSize);
+        cache.put(key, entry);
+        return entry;
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public static final class Key {
+        private final int version;
+        private final String something;
+        private final String mediaType;
+        private final int hash;
+
+        public Key(int version, String something, String mediaType) {
+            this.version = version;
+            this.something = something;
+            this.mediaType = mediaType;
+            this.hash = Objects.hash(version, something, mediaType);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return (version == other.version) && something.equals(other.something)
+                && mediaType.equals(other.mediaType);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public static final class Entry {
+        private static final String VARY = HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING;
+
+        private final byte[] bytes;
+        private final byte[] gzipped;
+        private final String etag;
+        private final String gzipEtag;
+        private final boolean compressible;
+
+        /**
+         * @param compressMinSize   The size from which {@link CompressionInterceptor} compresses {@code bytes} (when
+         *                          not sending {@code gzipped}).
+         */
+        Entry(byte[] bytes, byte[] gzipped, int compressMinSize) {
+            String hash = Hashing.murmur3_128().hashBytes(bytes).toString();
+            this.bytes = bytes;
+            this.gzipped = gzipped;
+            this.etag = '"' + hash + '"';
+            this.gzipEtag = (gzipped == null) ? null : ('"' + hash + "-gzip\"");
+            this.compressible = bytes.length > compressMinSize;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * The gzipped bytes, or {@code null} if the entry was not precompressed.
+         */
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+
+        /**
+         * The strong ETag, including quotes.
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Returns {@code true} if the {@code If-None-Match} header value matches this entry.
+         */
+        public boolean matches(String ifNoneMatch) {
+            return matches(ifNoneMatch, etag);
+        }
+
+        /**
+         * Builds a 304 if {@code ifNoneMatch} matches, otherwise a 200 with the serialized bytes.  If the entry was
+         * precompressed and {@code acceptEncoding} accepts gzip, the gzipped bytes are sent instead, with their own
+         * ETag (the ETag is per representation).  If the bytes are to be compressed on the fly instead, the ETag is
+         * the weak one {@link CompressionInterceptor} sends with them (see {@link CompressingOutputStream}), so a 304
+         * carries the same ETag as the 200.
+         */
+        public Response toResponse(String ifNoneMatch, String acceptEncoding) {
+            ContentEncoding encoding = ContentEncoding.negotiate(acceptEncoding);
+            boolean gzip = (gzipped != null) && (encoding == ContentEncoding.GZIP);
+            String tag = gzip ? gzipEtag
+                : ((encoding != null) && compressible) ? CompressingOutputStream.weakEtag(etag) : etag;
+            Response.ResponseBuilder builder = matches(ifNoneMatch, tag)
+                ? Response.notModified()
+                : Response.ok(gzip ? gzipped : bytes);
+            if (gzip) {
+                builder.header(HttpHeaders.CONTENT_ENCODING, ContentEncoding.GZIP.getName());
+            }
+            return builder
+                .header(HttpHeaders.ETAG, tag)
+                .header(HttpHeaders.VARY, VARY)
+                .build();
+        }
+
+        /**
+         * Whether {@code ifNoneMatch} lists {@code tag}, compared weakly (ignoring {@code W/}) as the header is.
+         */
+        private static boolean matches(String ifNoneMatch, String tag) {
+            return (ifNoneMatch != null)
+                && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(tag.substring(tag.indexOf('"'))));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.vevo.versions.resources;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The timeout of a streamed request.  Streams are read and written by the container thread, so they cannot be
+ * interrupted: instead, the body and output are wrapped so that a read or write after the deadline throws
+ * {@link TimeoutException}, which ends the stream at the next record.
+ */
+final class StreamDeadline {
+    private final long timeoutMillis;
+    private final long deadline;
+
+    /**
+     * Starts the timeout of {@code timeoutMillis}.
+     */
+    StreamDeadline(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    InputStream wrap(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                check();
+                return super.read();
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) throws IOException {
+                check();
+                return super.read(bytes, offset, length);
+            }
+        };
+    }
+
+    OutputStream wrap(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int value) throws IOException {
+                check();
+                out.write(value);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                check();
+                out.write(bytes, offset, length);
+            }
+        };
+    }
+
+    /**
+     * @throws TimeoutException if the deadline has passed.
+     */
+    void check() throws TimeoutException {
+        if (System.nanoTime() - deadline > 0) {
+            throw new TimeoutException("Timed out after " + timeoutMillis + "ms");
+        }
+    }
+
+    /**
+     * Thrown by the wrapped streams after the deadline.
+     */
+    static final class TimeoutException extends IOException {
+        TimeoutException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.vevo.versions.resources;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * A plain text response, written as UTF-8 (this is how V1 "labels text as json").  The text is encoded through a
+ * per-thread encoder and buffer, so writing it does not copy it into a new byte array.
+ */
+public final class TextResponse extends VersionedResponse {
+    private static final int BUFFER_SIZE = 4096;
+    private static final ThreadLocal<CharsetEncoder> ENCODER = ThreadLocal.withInitial(() ->
+        StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocate(BUFFER_SIZE));
+
+    private final String text;
+
+    public TextResponse(String text) {
+        this.text = text;
+    }
+
+    @JsonValue
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        CharsetEncoder encoder = ENCODER.get().reset();
+        ByteBuffer buffer = BUFFER.get();
+        CharBuffer chars = CharBuffer.wrap(text);
+        CoderResult result;
+        do {
+            buffer.clear();
+            result = encoder.encode(chars, buffer, true);
+            out.write(buffer.array(), 0, buffer.position());
+        } while (result.isOverflow());
+        do {
+            buffer.clear();
+            result = encoder.flush(buffer);
+            out.write(buffer.array(), 0, buffer.position());
+        } while (result.isOverflow());
+    }
+
+    @Override
+    public byte[] toBytes() {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof TextResponse) && text.equals(((TextResponse) other).text);
+    }
+
+    @Override
+    public int hashCode() {
+        return text.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,55 @@
+package com.vevo.versions.resources;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * A JSON response with a single {@code value}, i.e. {@code {"value":"V2: whatever"}}.
+ */
+public final class ValueResponse extends VersionedResponse {
+    private static final ObjectWriter WRITER = MAPPER.writerFor(ValueResponse.class);
+
+    private final String value;
+
+    public ValueResponse(String value) {
+        this.value = value;
+    }
+
+    @JsonProperty("value")
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        WRITER.writeValue(out, this);
+    }
+
+    @Override
+    public byte[] toBytes() {
+        try {
+            return WRITER.writeValueAsBytes(this);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to serialize " + getClass().getName(), ex);
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof ValueResponse) && value.equals(((ValueResponse) other).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "{value=" + value + "}";
+    }
+}
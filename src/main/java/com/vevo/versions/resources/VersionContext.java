@@ -1,60 +1,216 @@
 package com.vevo.versions.resources;
 
-import java.util.Collections;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.main.JsonSchema;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 
 public interface VersionContext {
 
+    /**
+     * Does the work, returning its output.  Built-in contexts return a {@link VersionedResponse} (their typed model);
+     * other outputs are serialized generically (Strings as-is, anything else as JSON).
+     */
     Object doSomeVersionSpecificWork(String path, String body);
 
+    /**
+     * Streaming variant of {@link #doSomeVersionSpecificWork}, for large bodies.  Reads {@code body} incrementally and
+     * writes the output to {@code out} as it goes, so memory does not grow with the size of the body.  By default, the
+     * body is read as NDJSON and each record is passed to {@code onRecord} (i.e. to store it, as a POST of the record
+     * would be) and then to {@link #doSomeVersionSpecificWork}, writing one output line per record.  Contexts may
+     * override this to consume the raw stream, and must still pass each record to {@code onRecord} before its output.
+     */
+    default void streamVersionSpecificWork(String path, InputStream body, OutputStream out, Consumer<String> onRecord)
+            throws IOException {
+        NdjsonReader records = new NdjsonReader(body);
+        for (String record = records.next(); record != null; record = records.next()) {
+            onRecord.accept(record);
+            OutputSerializer.writeTo(doSomeVersionSpecificWork(path, record), out);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Returns {@code true} if {@link #doSomeVersionSpecificWork} is cheap and never blocks.  Such work is run directly
+     * on the container thread, since handing it to the request executor would cost more than the work itself (see
+     * {@link RequestDispatcher}).  It is still admitted by the concurrency limit, and answered with a 503 if it
+     * outlasts its timeout, but it cannot be interrupted: a timed out request holds its container thread until the
+     * work returns, and a client which disconnects does not stop it.  Work which turns out to average more than the
+     * inline budget is moved to the request executor until it is fast again.  Nothing is run inline while the
+     * {@link com.vevo.versions.persistence.SomethingStore} is enabled.
+     */
+    default boolean isNonBlocking() {
+        return false;
+    }
+
+    /**
+     * The schema POST bodies must conform to, or {@code null} to accept any body.  Compile it once (see
+     * {@link RequestValidator#load}), not per call.
+     */
+    default JsonSchema getRequestSchema() {
+        return null;
+    }
+
+    /**
+     * Converts a POST {@code body} to the version independent value which is stored (see
+     * {@link com.vevo.versions.persistence.SomethingStore}).  Every version renders its GETs from that value, as the
+     * {@code body} of {@link #doSomeVersionSpecificWork}.  {@code parsed} is the body as it was parsed for validation
+     * (see {@link RequestValidator#parse}), or {@code null} if there is no body, so it is not parsed again.  By
+     * default, the body is stored as-is.
+     */
+    default String toStoredValue(String body, JsonNode parsed) {
+        return body;
+    }
+
+    /**
+     * The version number implemented by this context.
+     */
+    int getVersion();
+
+    /**
+     * Returns {@code false} only for {@link #UNSUPPORTED}.
+     */
+    default boolean isSupported() {
+        return true;
+    }
+
     VersionContext V1 = new Version1Context();
     VersionContext V2 = new Version2Context();
 
+    /**
+     * The result of resolving a version which is not supported.  See {@link VersionRegistry}.
+     */
+    VersionContext UNSUPPORTED = new UnsupportedVersionContext();
+
+    /**
+     * Returns the context for {@code version} from the {@link VersionRegistry#getDefault() default registry}.  Prefer
+     * {@link VersionRegistry#get(int)}, which does not throw.
+     */
     static VersionContext getVersionContext(int version) {
-        VersionContext result;
-        switch (version) {
-            case 1:
-                result = V1;
-                break;
-            case 2:
-                result = V2;
-                break;
-            default:
-                throw new IllegalArgumentException("Bad version number: " + version);
+        VersionContext result = VersionRegistry.getDefault().get(version);
+        if (!result.isSupported()) {
+            throw new IllegalArgumentException("Bad version number: " + version);
         }
         return result;
     }
 
     /**
      * Parses a String such as "application/vnd.vevo.header-v2" and extracts the version to create the appropriate
-     * VersionContext.  If the version is not specified, {@code defaultContext} is returned.
+     * VersionContext.  If the version is not specified, {@code defaultContext} is returned.  The String may list
+     * several media types with q-values, see {@link VersionNegotiator}.
      */
     static VersionContext getVersionContext(String mediaType, String prefix, VersionContext defaultContext) {
-        int version = -1;
-        int start = mediaType.indexOf(prefix);
-        if (start != -1) {
-            start += prefix.length();
-            int end = mediaType.lastIndexOf('+');
-            if (end == -1) {
-                throw new IllegalArgumentException("Bad type: " + mediaType);
-            }
-            version = Integer.parseInt(mediaType.substring(start, end));
+        VersionContext result =
+            VersionNegotiator.resolve(mediaType, prefix, VersionRegistry.getDefault(), defaultContext);
+        if (!result.isSupported()) {
+            throw new IllegalArgumentException("Bad type: " + mediaType);
         }
-
-        return (version == -1) ? defaultContext : getVersionContext(version);
+        return result;
     }
 
     class Version1Context implements VersionContext {
-        public Object doSomeVersionSpecificWork(String path, String body) {
-            return "V1: " + path + ((body == null) ? "" : " / " + body);
+        static final RenderPlan PLAN = RenderPlan.text("V1");
+        static final JsonSchema SCHEMA = RequestValidator.load("/schemas/v1-request.json");
+
+        private final BiFunction<String, String, VersionedResponse> renderer;
+
+        public Version1Context() {
+            this(PLAN);
+        }
+
+        /**
+         * For subclasses (later versions), with the plan derived from their predecessor's.
+         */
+        protected Version1Context(RenderPlan plan) {
+            this.renderer = plan.compile();
+        }
+
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+
+        @Override
+        public JsonSchema getRequestSchema() {
+            return SCHEMA;
+        }
+
+        @Override
+        public VersionedResponse doSomeVersionSpecificWork(String path, String body) {
+            return renderer.apply(path, body);
+        }
+
+        @Override
+        public boolean isNonBlocking() {
+            return true;
         }
     }
 
     class Version2Context extends Version1Context {
+        // V2 relabels the V1 text and returns it as JSON
+        static final UnaryOperator<RenderPlan> DELTA = plan -> plan.withLabel("V2").asValue();
+        static final RenderPlan PLAN = DELTA.apply(Version1Context.PLAN);
+        static final JsonSchema SCHEMA = RequestValidator.load("/schemas/v2-request.json");
+
+        public Version2Context() {
+            this(PLAN);
+        }
+
+        protected Version2Context(RenderPlan plan) {
+            super(plan);
+        }
+
+        @Override
+        public int getVersion() {
+            return 2;
+        }
+
+        /**
+         * V2 bodies are either plain text, or their value wrapped in an object like a V2 response, which is unwrapped.
+         */
+        @Override
+        public String toStoredValue(String body, JsonNode parsed) {
+            if (parsed == null) {
+                return body;
+            }
+            JsonNode value = parsed.path("value");
+            return value.isTextual() ? value.asText() : body;
+        }
+
+        @Override
+        public JsonSchema getRequestSchema() {
+            return SCHEMA;
+        }
+    }
+
+    class UnsupportedVersionContext implements VersionContext {
+        @Override
+        public int getVersion() {
+            return -1;
+        }
+
+        @Override
+        public boolean isSupported() {
+            return false;
+        }
+
+        @Override
+        public boolean isNonBlocking() {
+            return true;
+        }
+
+        /**
+         * Never called: callers check {@link #isSupported()} first, and answer unsupported versions themselves.
+         */
+        @Override
         public Object doSomeVersionSpecificWork(String path, String body) {
-            return Collections.singletonMap(
-                "value",
-                super.doSomeVersionSpecificWork(path, body).toString().replace("V1", "V2"));
+            throw new IllegalStateException("Work requested of an unsupported version; check isSupported() first");
         }
     }
 }
@@ -0,0 +1,219 @@
+package com.vevo.versions.resources;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.vevo.versions.metrics.MetricRegistry;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+
+/**
+ * Resolves the {@link VersionContext} requested by an {@code Accept} or {@code Content-Type} header.  Headers may list
+ * several media ranges with q-values, i.e. {@code application/json;q=0.5, application/vnd.vevo.header-v2+json}.  The
+ * range with the highest q-value wins; on a tie a versioned (vendor) type is preferred over a generic one, and then
+ * the first listed.  Ranges which do not contain the vendor prefix select the default context.
+ *
+ * <p>Parsing walks the header in place and does not allocate.  Resolved headers are kept in a bounded cache keyed by
+ * the raw header value, so repeated values resolve with a single lookup.  Once the cache is full, the least recently
+ * used values are evicted, so a burst of one-off headers does not keep the common ones out.</p>
+ */
+@Singleton
+public class VersionNegotiator {
+    private static final int MAX_QUALITY = 1000;
+    private static final int MAX_VERSION_DIGITS = 9;
+    // Distinct header values cached by the injected negotiator
+    private static final int DEFAULT_CACHE_SIZE = 1024;
+
+    private final String prefix;
+    private final VersionRegistry registry;
+    private final VersionContext defaultContext;
+    private final Cache<String, VersionContext> cache;
+
+    /**
+     * The negotiator of {@link VersionsResource}'s header versioned endpoints, over the default
+     * {@link VersionRegistry}.
+     */
+    @Inject
+    public VersionNegotiator(MetricRegistry metrics) {
+        this(VersionsResource.HEADER_RESOURCE_CONTENT_TYPE_PREFIX, VersionRegistry.getDefault(),
+            VersionRegistry.getDefault().get(VersionsResource.DEFAULT_VERSION), DEFAULT_CACHE_SIZE);
+        metrics.counter("negotiator.hits", this::getCacheHits);
+        metrics.counter("negotiator.misses", this::getCacheMisses);
+    }
+
+    /**
+     * @param prefix            The (lower case) part of the media type which precedes the version number, i.e.
+     *                          {@code vnd.vevo.header-v}.
+     * @param registry          The supported versions.
+     * @param defaultContext    The context used when no version is specified.
+     * @param maxCacheSize      The maximum number of distinct header values to cache.
+     */
+    public VersionNegotiator(String prefix, VersionRegistry registry, VersionContext defaultContext, int maxCacheSize) {
+        this.prefix = prefix;
+        this.registry = registry;
+        this.defaultContext = defaultContext;
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(maxCacheSize)
+            .recordStats()
+            .build();
+    }
+
+    /**
+     * Returns the {@link VersionContext} for the given header value, or {@link VersionContext#UNSUPPORTED} if none of
+     * the listed media ranges is acceptable (unsupported version, malformed version, or {@code q=0}).  A missing
+     * header selects the default context.
+     */
+    public VersionContext negotiate(String header) {
+        if ((header == null) || header.isEmpty()) {
+            return defaultContext;
+        }
+        VersionContext result = cache.getIfPresent(header);
+        if (result == null) {
+            result = resolve(header, prefix, registry, defaultContext);
+            cache.put(header, result);
+        }
+        return result;
+    }
+
+    public long getCacheHits() {
+        return cache.stats().hitCount();
+    }
+
+    public long getCacheMisses() {
+        return cache.stats().missCount();
+    }
+
+    public int getCacheSize() {
+        return (int) cache.size();
+    }
+
+    /**
+     * Uncached negotiation.  See {@link #negotiate(String)}.
+     */
+    static VersionContext resolve(
+            String header, String prefix, VersionRegistry registry, VersionContext defaultContext) {
+        if (header.isEmpty()) {
+            return defaultContext;
+        }
+        VersionContext best = VersionContext.UNSUPPORTED;
+        int bestQuality = 0;
+        boolean bestVersioned = false;
+
+        int length = header.length();
+        int start = 0;
+        while (start < length) {
+            int end = header.indexOf(',', start);
+            if (end == -1) {
+                end = length;
+            }
+            int paramStart = header.indexOf(';', start);
+            int typeEnd = ((paramStart == -1) || (paramStart > end)) ? end : paramStart;
+
+            // Empty ranges (i.e. a trailing comma) are ignored
+            int quality = (skipWhitespace(header, start, typeEnd) == typeEnd) ? 0
+                : (typeEnd == end) ? MAX_QUALITY : parseQuality(header, typeEnd, end);
+            if (quality > 0) {
+                int version = parseVersion(header, start, typeEnd, prefix);
+                boolean versioned = (version != 0);
+                VersionContext candidate = versioned ? registry.get(version) : defaultContext;
+                if (candidate.isSupported()
+                    && ((quality > bestQuality) || ((quality == bestQuality) && versioned && !bestVersioned))) {
+                    best = candidate;
+                    bestQuality = quality;
+                    bestVersioned = versioned;
+                }
+            }
+            start = end + 1;
+        }
+        return best;
+    }
+
+    /**
+     * Returns the version number found after {@code prefix} in {@code header[start, end)}, {@code 0} if the prefix is
+     * not present, or {@code -1} if the version is malformed.  Versions start at 1, so {@code v0} is malformed rather
+     * than mistaken for the absence of a version (which selects the default).
+     */
+    private static int parseVersion(String header, int start, int end, String prefix) {
+        int prefixLength = prefix.length();
+        int last = end - prefixLength;
+        for (int idx = start; idx <= last; idx++) {
+            if (header.regionMatches(true, idx, prefix, 0, prefixLength)) {
+                int pos = idx + prefixLength;
+                int version = 0;
+                int digits = 0;
+                for (; (pos < end) && (digits < MAX_VERSION_DIGITS); pos++, digits++) {
+                    char ch = header.charAt(pos);
+                    if ((ch < '0') || (ch > '9')) {
+                        break;
+                    }
+                    version = (version * 10) + (ch - '0');
+                }
+                if ((digits == 0) || (version == 0) || ((pos < end) && (header.charAt(pos) != '+') && !isWhitespace(header, pos, end))) {
+                    return -1;
+                }
+                return version;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the q-value of the parameters found in {@code header[start, end)} scaled to 0-1000, or {@code 0} if the
+     * q-value is malformed.  Parameters other than {@code q} are ignored.
+     */
+    private static int parseQuality(String header, int start, int end) {
+        int pos = start;
+        while (pos < end) {
+            // pos is at ';'
+            int next = header.indexOf(';', pos + 1);
+            if ((next == -1) || (next > end)) {
+                next = end;
+            }
+            int name = skipWhitespace(header, pos + 1, next);
+            if ((name < next) && ((header.charAt(name) == 'q') || (header.charAt(name) == 'Q'))) {
+                int equals = skipWhitespace(header, name + 1, next);
+                if ((equals < next) && (header.charAt(equals) == '=')) {
+                    return parseQValue(header, skipWhitespace(header, equals + 1, next), next);
+                }
+            }
+            pos = next;
+        }
+        return MAX_QUALITY;
+    }
+
+    private static int parseQValue(String header, int pos, int end) {
+        int quality = 0;
+        int scale = MAX_QUALITY;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for (; pos < end; pos++) {
+            char ch = header.charAt(pos);
+            if ((ch >= '0') && (ch <= '9')) {
+                if (seenDot) {
+                    scale /= 10;
+                }
+                quality = seenDot ? (quality + ((ch - '0') * scale)) : ((quality * 10) + ((ch - '0') * scale));
+                seenDigit = true;
+            } else if ((ch == '.') && !seenDot && seenDigit) {
+                seenDot = true;
+            } else if (isWhitespace(header, pos, end)) {
+                break;
+            } else {
+                return 0;
+            }
+        }
+        return (seenDigit && (quality <= MAX_QUALITY)) ? quality : 0;
+    }
+
+    private static int skipWhitespace(String header, int pos, int end) {
+        while (isWhitespace(header, pos, end)) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isWhitespace(String header, int pos, int end) {
+        return (pos < end) && ((header.charAt(pos) == ' ') || (header.charAt(pos) == '\t'));
+    }
+}
@@ -0,0 +1,111 @@
+package com.vevo.versions.resources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+
+/**
+ * Holds the supported {@link VersionContext}s in an array indexed by version number, so a version resolves in
+ * constant time.  Unknown versions resolve to {@link VersionContext#UNSUPPORTED} rather than throwing.
+ *
+ * <p>The {@link #getDefault() default} registry contains the built-in contexts plus any listed in
+ * {@code META-INF/services/com.vevo.versions.resources.VersionContext}, so new versions can be added at startup
+ * without changing {@link VersionContext}.  A service-loaded context replaces a built-in one of the same version.</p>
+ */
+public class VersionRegistry {
+    // Versions are array indexes, so keep them reasonably small
+    static final int MAX_VERSION = 1024;
+
+    private final VersionContext[] contexts;
+    private final List<VersionContext> supported;
+
+    private VersionRegistry(VersionContext[] contexts) {
+        this.contexts = contexts;
+        List<VersionContext> list = new ArrayList<>();
+        for (VersionContext context : contexts) {
+            if (context.isSupported()) {
+                list.add(context);
+            }
+        }
+        this.supported = Collections.unmodifiableList(list);
+    }
+
+    /**
+     * The registry of built-in and service-loaded contexts.
+     */
+    public static VersionRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Returns the context for {@code version}, or {@link VersionContext#UNSUPPORTED}.
+     */
+    public VersionContext get(int version) {
+        return ((version >= 0) && (version < contexts.length)) ? contexts[version] : VersionContext.UNSUPPORTED;
+    }
+
+    /**
+     * The supported contexts, ordered by version.
+     */
+    public List<VersionContext> getSupported() {
+        return supported;
+    }
+
+    public VersionContext getLatest() {
+        return supported.get(supported.size() - 1);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private final List<VersionContext> contexts = new ArrayList<>();
+
+        /**
+         * Adds {@code context}, replacing any context previously added for the same version.
+         */
+        public Builder add(VersionContext context) {
+            int version = context.getVersion();
+            if ((version < 1) || (version > MAX_VERSION)) {
+                throw new IllegalArgumentException("Bad version number: " + version + " (" + context + ")");
+            }
+            contexts.add(context);
+            return this;
+        }
+
+        /**
+         * Adds the contexts listed in {@code META-INF/services/com.vevo.versions.resources.VersionContext}.
+         */
+        public Builder addServiceLoaded() {
+            for (VersionContext context : ServiceLoader.load(VersionContext.class)) {
+                add(context);
+            }
+            return this;
+        }
+
+        public VersionRegistry build() {
+            int maxVersion = 0;
+            for (VersionContext context : contexts) {
+                maxVersion = Math.max(maxVersion, context.getVersion());
+            }
+            VersionContext[] array = new VersionContext[maxVersion + 1];
+            Arrays.fill(array, VersionContext.UNSUPPORTED);
+            for (VersionContext context : contexts) {
+                array[context.getVersion()] = context;
+            }
+            return new VersionRegistry(array);
+        }
+    }
+
+    private static class DefaultHolder {
+        static final VersionRegistry INSTANCE = builder()
+            .add(VersionContext.V1)
+            .add(VersionContext.V2)
+            .addServiceLoaded()
+            .build();
+    }
+}
@@ -0,0 +1,38 @@
+package com.vevo.versions.resources;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * The typed output of a {@link VersionContext}.  Each version's model knows how to write itself -- JSON models with an
+ * {@code ObjectWriter} bound to their type once, when the class is loaded -- and is written to the response stream by
+ * {@link VersionedResponseWriter} without an intermediate copy.  Models are also annotated for Jackson, so they
+ * serialize the same way when embedded in other output (i.e. batch results).
+ */
+public abstract class VersionedResponse {
+    // Never close the response stream, Jersey owns it
+    static final ObjectMapper MAPPER = new ObjectMapper().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    /**
+     * Writes this response to {@code out}, without closing it.
+     */
+    public abstract void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * This response as bytes, i.e. for caching.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writeTo(out);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to serialize " + getClass().getName(), ex);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,43 @@
+package com.vevo.versions.resources;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+
+/**
+ * Writes {@link VersionedResponse} entities straight to the response stream with their own pre-bound writer, instead
+ * of letting Jersey find a generic (reflective) Jackson writer for every request.  This serves POSTs and batch items;
+ * GETs are serialized to bytes with the same writer by {@link ResponseCache#render} (see there for why).
+ */
+@Provider
+@Produces(MediaType.WILDCARD)
+public class VersionedResponseWriter implements MessageBodyWriter<VersionedResponse> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return VersionedResponse.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(
+            VersionedResponse response, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(
+            VersionedResponse response, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream)
+            throws IOException {
+        response.writeTo(entityStream);
+    }
+}
@@ -2,12 +2,40 @@ package com.vevo.versions.resources;
 
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import io.swagger.annotations.Info;
 import io.swagger.annotations.SwaggerDefinition;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vevo.versions.Config;
+import com.vevo.versions.concurrent.AdaptiveLimiter;
+import com.vevo.versions.events.UsagePipeline;
+import com.vevo.versions.metrics.Endpoint;
+import com.vevo.versions.metrics.RequestMetrics;
+import com.vevo.versions.metrics.RequestTiming;
+import com.vevo.versions.persistence.SomethingRecord;
+import com.vevo.versions.persistence.SomethingStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
@@ -17,50 +45,122 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.ConnectionCallback;
 import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 
+@Singleton
 @Path("/foo")
 @Api(value = "versions")
 @SwaggerDefinition(
     info = @Info(title = "Version test", description = "Some description", version = "1.0")
 )
 public class VersionsResource {
+    private static final Logger log = LoggerFactory.getLogger(VersionsResource.class);
+
     // Substring of the header that specifies the version
-    private static final String HEADER_RESOURCE_CONTENT_TYPE_PREFIX = "vnd.vevo.header-v";
+    static final String HEADER_RESOURCE_CONTENT_TYPE_PREFIX = "vnd.vevo.header-v";
     private static final String APPLICATION_PREFIX = "application/";
     private static final String JSON_SUFFIX = "+json";
 
     static final String V1_TYPE = APPLICATION_PREFIX + HEADER_RESOURCE_CONTENT_TYPE_PREFIX + "1" + JSON_SUFFIX;
     static final String V2_TYPE = APPLICATION_PREFIX + HEADER_RESOURCE_CONTENT_TYPE_PREFIX + "2" + JSON_SUFFIX;
 
+    // Newline delimited JSON, for the streaming endpoints
+    static final String NDJSON = "application/x-ndjson";
+    private static final String NDJSON_SUFFIX = "+x-ndjson";
+    static final String V1_NDJSON_TYPE = APPLICATION_PREFIX + HEADER_RESOURCE_CONTENT_TYPE_PREFIX + "1" + NDJSON_SUFFIX;
+    static final String V2_NDJSON_TYPE = APPLICATION_PREFIX + HEADER_RESOURCE_CONTENT_TYPE_PREFIX + "2" + NDJSON_SUFFIX;
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    // Writes in-band errors; generators do not close the response stream
+    private static final JsonFactory STREAM_ERRORS =
+        new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    private static final String STREAM_OK_MESSAGE =
+        "One output line per record.  A record which fails, or a stream which times out, ends the response with an "
+            + "error line, i.e. {\"status\":413,\"error\":\"...\"}";
+    private static final String SHED_MESSAGE = "Shed by the concurrency limit, or timed out";
+
+    private static final VersionRegistry REGISTRY = VersionRegistry.getDefault();
+
+    // Unversioned paths route to this version
+    static final int DEFAULT_VERSION = 1;
+
+    // The versions which may be used in a path, for swagger.  Annotation values must be constants, so this cannot be
+    // read from VersionRegistry.getDefault(); VersionRegistryTest fails when the two differ.
+    static final String PATH_VERSIONS = "v1,v2";
+    private static final String VERSIONED_PATH = "/path/{version: [vV]\\d+}/{something}";
+
+    // Identifies the calling client in usage events, so we know who still uses a version
+    static final String CLIENT_ID_HEADER = "X-Client-Id";
+    private static final String UNKNOWN_CLIENT = "unknown";
+
+    // The GET endpoints, whose cached responses a write invalidates
+    private static final Endpoint[] GET_ENDPOINTS = {Endpoint.PATH_GET, Endpoint.HEADER_GET};
+
+    private final RequestDispatcher dispatcher;
+    private final AdaptiveLimiter limiter;
+    private final ResponseCache responseCache;
+    private final RequestCoalescer coalescer;
+    private final RequestMetrics metrics;
+    private final UsagePipeline usage;
+    private final SomethingStore store;
+    // Resolves Accept / Content-Type headers, shared by all requests so repeated header values are cached
+    private final VersionNegotiator negotiator;
+
+    // The routes of every (strategy, method, version), with their timeouts from Config.  Work is only run inline
+    // while the store is disabled, since its cache misses go to the database
+    private final DispatchTable routes;
+
+    @Inject
+    public VersionsResource(
+            RequestDispatcher dispatcher, AdaptiveLimiter limiter, ResponseCache responseCache,
+            RequestCoalescer coalescer, RequestMetrics metrics, UsagePipeline usage, SomethingStore store,
+            VersionNegotiator negotiator, Config config) {
+        this.dispatcher = dispatcher;
+        this.limiter = limiter;
+        this.responseCache = responseCache;
+        this.coalescer = coalescer;
+        this.metrics = metrics;
+        this.usage = usage;
+        this.store = store;
+        this.negotiator = negotiator;
+        this.routes = new DispatchTable(REGISTRY, MediaType.APPLICATION_JSON, VersionsResource::headerType,
+            (endpoint, version) -> config.getRequestTimeout(endpoint.getStrategy(), endpoint.getName(), version),
+            !store.isEnabled());
+    }
+
 
     // Scenario: V1 of all these endpoints returns plain/text but labels it as json... v2 corrects this.
     //
+    // Each strategy has one Jersey method per HTTP method (plus the legacy unversioned path), whatever the number of
+    // versions.  The version is taken from the path or header and looked up in the DispatchTable.
+    //
     // PATH NOTES:
     //   *  If you want "v2" before "/foo", might need a whole new class... or not use prefix at the class level.
     //
-    //   *  The version is part of the path, so if there isn't a path match, you get 404. This might be solvable by
-    //      doing {version} in the @Path, but that might collide with the namespace of some legacy paths.  This is an
-    //      intrinsic problem w/ renaming the document as a versioning strategy.
+    //   *  The version is part of the path, so an unknown version gets 404.  The {version} template only matches
+    //      "v<digits>" followed by another segment, so it does not collide with the legacy (v1) "/path/{something}",
+    //      but a legacy path that looks like a version would.  This is an intrinsic problem w/ renaming the document
+    //      as a versioning strategy.
     //
     // HEADER NOTES:
     //
     //   *  Resource path doesn't change
     //
     //   *  If you use @Consumes, you have to list all the possible values (it does accept multiple), if you omit
-    //      @Consumes, you get everything that is posted.  Being specific allows you to create multiple methods -- nice
-    //      for swagger.  You can still delegate to a single method, so you don't have to duplicate much code.  See
-    //      headerVersionPostV2 for example.
+    //      @Consumes, you get everything that is posted.  Listing each versioned type documents every version in
+    //      swagger without needing a method per version.
 
     /////////////////////////////////////////////////////////////////////////////////////////////////////////
     // POST Endpoints -- Clients send /v2 in path or "Content-Type: application/vnd.vevo.header-v2+json"
     /////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Path v1 Post.
+     * Path versioned Post.
      */
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
@@ -68,21 +168,18 @@ public class VersionsResource {
         value = "ApiOperation: postAction value field",
         notes = "ApiOperation: postAction notes field",
         response = String.class)
-    @ApiResponses({@ApiResponse(code = 200, response = String.class, message = "postAction 200 response message")})
+    @ApiResponses({
+        @ApiResponse(code = 200, response = String.class, message = "postAction 200 response message"),
+        @ApiResponse(code = 400, message = "Body does not match the version's request schema"),
+        @ApiResponse(code = 404, message = "Unsupported version")})
     @POST
-    @Path("/path/{something}")
-    public void pathVersionPostV1(@Suspended AsyncResponse response, @PathParam("something") String something, String body) {
-        VersionContext versionContext = VersionContext.getVersionContext(1);
-        CompletableFuture.supplyAsync(() -> {
-                // NOTE: In this example... here's how we branch on version specific stuff
-                return versionContext.doSomeVersionSpecificWork(something, body);
-            }).
-            exceptionally(ex -> { throw new RuntimeException(ex); }).
-            thenAccept(output -> response.resume(Response.status(200).entity(output).build()));
+    @Path(VERSIONED_PATH)
+    public void pathVersionPost(@ApiParam(allowableValues = PATH_VERSIONS) @PathParam("version") String version, @HeaderParam(CLIENT_ID_HEADER) String clientId, @Suspended AsyncResponse response, @PathParam("something") String something, String body) {
+        dispatch(pathRoute(Endpoint.PATH_POST, version), response, something, body, clientId);
     }
 
     /**
-     * Path v2 Post.
+     * Path Post without a version (v1).
      */
     @Consumes(MediaType.APPLICATION_JSON)
     @Produces(MediaType.APPLICATION_JSON)
@@ -90,60 +187,108 @@ public class VersionsResource {
         value = "ApiOperation: postAction value field",
         notes = "ApiOperation: postAction notes field",
         response = String.class)
-    @ApiResponses({@ApiResponse(code = 200, response = String.class, message = "postAction 200 response message")})
+    @ApiResponses({
+        @ApiResponse(code = 200, response = String.class, message = "postAction 200 response message"),
+        @ApiResponse(code = 400, message = "Body does not match the version's request schema")})
     @POST
-    @Path("/path/v2/{something}")       // NOTE: /v2
-    public void pathVersionPostV2(@Suspended AsyncResponse response, @PathParam("something") String something, String body) {
-        VersionContext versionContext = VersionContext.getVersionContext(2);
-        CompletableFuture.supplyAsync(() -> {
-                // NOTE: In this example... here's how we branch on version specific stuff
-                return versionContext.doSomeVersionSpecificWork(something, body);
-            }).
-            exceptionally(ex -> { throw new RuntimeException(ex); }).
-            thenAccept(output -> response.resume(Response.status(200).entity(output).build()));
+    @Path("/path/{something}")
+    public void pathVersionPostDefault(@HeaderParam(CLIENT_ID_HEADER) String clientId, @Suspended AsyncResponse response, @PathParam("something") String something, String body) {
+        dispatch(routes.get(Endpoint.PATH_POST, DEFAULT_VERSION), response, something, body, clientId);
     }
 
-
     /**
-     *  Header default and v1 Post.
+     *  Header Post (default (v1), v1, and v2).
      */
-    @Consumes({MediaType.APPLICATION_JSON, V1_TYPE})
+    @Consumes({MediaType.APPLICATION_JSON, V1_TYPE, V2_TYPE})
     @Produces(MediaType.APPLICATION_JSON)
     @ApiOperation(
         value = "ApiOperation: postAction value field",
         notes = "ApiOperation: postAction notes field",
         response = String.class)
-    @ApiResponses({@ApiResponse(code = 200, response = String.class, message = "postAction 200 response message")})
+    @ApiResponses({
+        @ApiResponse(code = 200, response = String.class, message = "postAction 200 response message"),
+        @ApiResponse(code = 400, message = "Body does not match the version's request schema")})
     @POST
     @Path("/header/{something}")
-    public void headerVersionPost(@HeaderParam("Content-type") String contentType, @Suspended AsyncResponse response, @PathParam("something") String something, String body) {
+    public void headerVersionPost(@HeaderParam("Content-type") String contentType, @HeaderParam(CLIENT_ID_HEADER) String clientId, @Suspended AsyncResponse response, @PathParam("something") String something, String body) {
         // NOTE: We extract version info from the header here...
-        final VersionContext versionContext = VersionContext.getVersionContext(
-                contentType.toLowerCase(), HEADER_RESOURCE_CONTENT_TYPE_PREFIX, VersionContext.V1);
+        final VersionContext versionContext = negotiator.negotiate(contentType);
+        if (!versionContext.isSupported()) {
+            response.resume(Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build());
+            return;
+        }
 
-        CompletableFuture.supplyAsync(() -> {
-                // NOTE: In this example... here's how we branch on version specific stuff
-                return versionContext.doSomeVersionSpecificWork(something, body);
-            }).
-            exceptionally(ex -> { throw new RuntimeException(ex); }).
-            thenAccept(output -> response.resume(Response.status(200).entity(output).build()));
+        dispatch(routes.get(Endpoint.HEADER_POST, versionContext.getVersion()), response, something, body, clientId);
     }
 
+
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Streaming POST Endpoints -- Clients send NDJSON with "Content-Type: application/x-ndjson" (path) or
+    // "Content-Type: application/vnd.vevo.header-v2+x-ndjson" (header).  Each record is processed (and stored, like
+    // the body of a POST) as it is read and its output written as one line, so the body is never buffered as a whole.
+    // Output is sent as it is produced, so the 200 status may be sent before a bad record is read: errors are
+    // reported in-band, as a last line such as {"status":413,"error":"NDJSON record exceeds 1048576 bytes"}.  Streams
+    // are admitted by the concurrency limit (or shed with a 503), and one which outlasts its timeout ends with
+    // {"status":503,"error":"Timed out ..."}.
+    /////////////////////////////////////////////////////////////////////////////////////////////////////////
+
     /**
-     *  Header v2 Post.  Note, this case exists solely for the documentation (swagger).  Note that it delegates to
-     *  {@link #headerVersionPost}.
+     * Path versioned streaming Post.
      */
-    @Consumes({V2_TYPE})
-    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(NDJSON)
+    @Produces(NDJSON)
     @ApiOperation(
-        value = "ApiOperation: postAction value field",
-        notes = "ApiOperation: postAction notes field",
+        value = "ApiOperation: streaming postAction value field",
+        notes = "ApiOperation: streaming postAction notes field",
+        response = String.class)
+    @ApiResponses({
+        @ApiResponse(code = 200, response = String.class, message = STREAM_OK_MESSAGE),
+        @ApiResponse(code = 404, message = "Unsupported version"),
+        @ApiResponse(code = 503, message = SHED_MESSAGE)})
+    @POST
+    @Path(VERSIONED_PATH)
+    public Response pathVersionStream(@ApiParam(allowableValues = PATH_VERSIONS) @PathParam("version") String version, @HeaderParam(CLIENT_ID_HEADER) String clientId, @PathParam("something") String something, InputStream body) {
+        return stream(pathRoute(Endpoint.PATH_STREAM, version), something, body, clientId);
+    }
+
+    /**
+     * Path streaming Post without a version (v1).
+     */
+    @Consumes(NDJSON)
+    @Produces(NDJSON)
+    @ApiOperation(
+        value = "ApiOperation: streaming postAction value field",
+        notes = "ApiOperation: streaming postAction notes field",
+        response = String.class)
+    @ApiResponses({
+        @ApiResponse(code = 200, response = String.class, message = STREAM_OK_MESSAGE),
+        @ApiResponse(code = 503, message = SHED_MESSAGE)})
+    @POST
+    @Path("/path/{something}")
+    public Response pathVersionStreamDefault(@HeaderParam(CLIENT_ID_HEADER) String clientId, @PathParam("something") String something, InputStream body) {
+        return stream(routes.get(Endpoint.PATH_STREAM, DEFAULT_VERSION), something, body, clientId);
+    }
+
+    /**
+     *  Header default, v1 and v2 streaming Post.
+     */
+    @Consumes({NDJSON, V1_NDJSON_TYPE, V2_NDJSON_TYPE})
+    @Produces(NDJSON)
+    @ApiOperation(
+        value = "ApiOperation: streaming postAction value field",
+        notes = "ApiOperation: streaming postAction notes field",
         response = String.class)
-    @ApiResponses({@ApiResponse(code = 200, response = String.class, message = "postAction 200 response message")})
+    @ApiResponses({
+        @ApiResponse(code = 200, response = String.class, message = STREAM_OK_MESSAGE),
+        @ApiResponse(code = 503, message = SHED_MESSAGE)})
     @POST
     @Path("/header/{something}")
-    public void headerVersionPostV2(@HeaderParam("Content-type") String contentType, @Suspended AsyncResponse response, @PathParam("something") String something, String body) {
-        headerVersionPost(contentType, response, something, body);
+    public Response headerVersionStream(@HeaderParam("Content-type") String contentType, @HeaderParam(CLIENT_ID_HEADER) String clientId, @PathParam("something") String something, InputStream body) {
+        VersionContext versionContext = negotiator.negotiate(contentType);
+        if (!versionContext.isSupported()) {
+            return Response.status(Response.Status.UNSUPPORTED_MEDIA_TYPE).build();
+        }
+        return stream(routes.get(Endpoint.HEADER_STREAM, versionContext.getVersion()), something, body, clientId);
     }
 
 
@@ -152,47 +297,36 @@ public class VersionsResource {
     /////////////////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Path v1 Get.
+     * Path versioned Get.
      */
     @Produces(MediaType.APPLICATION_JSON)
     @ApiOperation(
         value = "ApiOperation: path get value",
         notes = "ApiOperation: path get notes",
         response = String.class)
-    @ApiResponses({@ApiResponse(code = 200, response = String.class, message = "Path get 200 response message")})
+    @ApiResponses({
+        @ApiResponse(code = 200, response = String.class, message = "Path get 200 response message"),
+        @ApiResponse(code = 404, message = "Unsupported version")})
     @GET
-    @Path("/path/{something}")
-    public void pathVersionGetV1(@Suspended AsyncResponse response, @PathParam("something") String something) {
-        // NOTE: Could also calculate version from URL, but can't combine @Path annotations. Hardcoding for now.
-        VersionContext versionContext = VersionContext.getVersionContext(1);
-        CompletableFuture.supplyAsync(() -> {
-            // NOTE: In this example... here's how we branch on version specific stuff
-            return versionContext.doSomeVersionSpecificWork(something, null);
-        }).
-            exceptionally(ex -> { throw new RuntimeException(ex); }).
-            thenAccept(output -> response.resume(Response.status(200).entity(output).build()));
+    @Path(VERSIONED_PATH)
+    public void pathVersionGet(@ApiParam(allowableValues = PATH_VERSIONS) @PathParam("version") String version, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding, @HeaderParam(CLIENT_ID_HEADER) String clientId, @Suspended AsyncResponse response, @PathParam("something") String something) {
+        dispatchGet(pathRoute(Endpoint.PATH_GET, version), response, something, ifNoneMatch, acceptEncoding, clientId);
     }
 
     /**
-     * Path v2 Get.
+     * Path Get without a version (v1).
      */
     @Produces(MediaType.APPLICATION_JSON)
     @ApiOperation(
-        value = "ApiOperation: path v2 get value",
-        notes = "ApiOperation: path v2 get notes",
+        value = "ApiOperation: path get value",
+        notes = "ApiOperation: path get notes",
         response = String.class)
-    @ApiResponses({@ApiResponse(code = 200, response = String.class, message = "Path get v2 200 response message")})
+    @ApiResponses({@ApiResponse(code = 200, response = String.class, message = "Path get 200 response message")})
     @GET
-    @Path("/path/v2/{something}")
-    public void pathVersionGetV2(@Suspended AsyncResponse response, @PathParam("something") String something) {
-        // NOTE: Could also calculate version from URL, but can't combine @Path annotations. Hardcoding for now.
-        VersionContext versionContext = VersionContext.getVersionContext(2);
-        CompletableFuture.supplyAsync(() -> {
-            // NOTE: In this example... here's how we branch on version specific stuff
-            return versionContext.doSomeVersionSpecificWork(something, null);
-        }).
-            exceptionally(ex -> { throw new RuntimeException(ex); }).
-            thenAccept(output -> response.resume(Response.status(200).entity(output).build()));
+    @Path("/path/{something}")
+    public void pathVersionGetDefault(@HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding, @HeaderParam(CLIENT_ID_HEADER) String clientId, @Suspended AsyncResponse response, @PathParam("something") String something) {
+        dispatchGet(
+            routes.get(Endpoint.PATH_GET, DEFAULT_VERSION), response, something, ifNoneMatch, acceptEncoding, clientId);
     }
 
     /**
@@ -206,16 +340,373 @@ public class VersionsResource {
     @ApiResponses({@ApiResponse(code = 200, response = String.class, message = "Header get 200 response message")})
     @GET
     @Path("/header/{something}")
-    public void headerVersionGetV1(@HeaderParam("Accept") String accept, @Suspended AsyncResponse response, @PathParam("something") String something) {
+    public void headerVersionGet(@HeaderParam("Accept") String accept, @HeaderParam(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch, @HeaderParam(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding, @HeaderParam(CLIENT_ID_HEADER) String clientId, @Suspended AsyncResponse response, @PathParam("something") String something) {
         // NOTE: We extract version info from the header here...
-        final VersionContext versionContext = VersionContext.getVersionContext(
-            accept.toLowerCase(), HEADER_RESOURCE_CONTENT_TYPE_PREFIX, VersionContext.V1);
-
-        CompletableFuture.supplyAsync(() -> {
-                // NOTE: In this example... here's how we branch on version specific stuff
-                return versionContext.doSomeVersionSpecificWork(something, null);
-            }).
-            exceptionally(ex -> { throw new RuntimeException(ex); }).
-            thenAccept(output -> response.resume(Response.status(200).entity(output).build()));
+        final VersionContext versionContext = negotiator.negotiate(accept);
+        if (!versionContext.isSupported()) {
+            response.resume(Response.status(Response.Status.NOT_ACCEPTABLE).build());
+            return;
+        }
+
+        dispatchGet(routes.get(Endpoint.HEADER_GET, versionContext.getVersion()), response, something, ifNoneMatch,
+            acceptEncoding, clientId);
+    }
+
+    /**
+     * Returns the route for a path request, or {@code null} if {@code version} (i.e. {@code v2}) is not supported.
+     */
+    private DispatchTable.Route pathRoute(Endpoint endpoint, String version) {
+        return routes.get(endpoint, DispatchTable.parsePathVersion(version));
+    }
+
+    /**
+     * The media type of {@code version} in the header strategy, i.e. {@code application/vnd.vevo.header-v2+json}.
+     */
+    static String headerType(int version) {
+        return APPLICATION_PREFIX + HEADER_RESOURCE_CONTENT_TYPE_PREFIX + version + JSON_SUFFIX;
+    }
+
+    /**
+     * Same as {@link #headerType(int)} for the streaming endpoints, i.e.
+     * {@code application/vnd.vevo.header-v2+x-ndjson}.
+     */
+    static String headerStreamType(int version) {
+        return APPLICATION_PREFIX + HEADER_RESOURCE_CONTENT_TYPE_PREFIX + version + NDJSON_SUFFIX;
+    }
+
+    /**
+     * Returns the route for {@code endpoint} and {@code version}, or {@code null} if there is none.
+     */
+    DispatchTable.Route route(Endpoint endpoint, int version) {
+        return routes.get(endpoint, version);
+    }
+
+    /**
+     * Resumes {@code response} with a POST of {@code something} through {@code route} (see
+     * {@link #post(DispatchTable.Route, String, String, String, Consumer)}).  A {@code null} route is a 404.
+     */
+    private void dispatch(
+            DispatchTable.Route route, AsyncResponse response, String something, String body, String clientId) {
+        if (route == null) {
+            response.resume(Response.status(Response.Status.NOT_FOUND).build());
+            return;
+        }
+        cancelOnDisconnect(response, post(route, something, body, clientId, response::resume));
+    }
+
+    /**
+     * Resumes {@code response} with a GET of {@code something} through {@code route} (see
+     * {@link #get(DispatchTable.Route, String, String, String, String, Consumer)}).  A {@code null} route is a 404.
+     */
+    private void dispatchGet(
+            DispatchTable.Route route, AsyncResponse response, String something, String ifNoneMatch,
+            String acceptEncoding, String clientId) {
+        if (route == null) {
+            response.resume(Response.status(Response.Status.NOT_FOUND).build());
+            return;
+        }
+        cancelOnDisconnect(response, get(route, something, ifNoneMatch, acceptEncoding, clientId, response::resume));
+    }
+
+    /**
+     * Runs a POST of {@code something} through {@code route} (see {@link RequestDispatcher}), and passes its response
+     * to {@code onResponse}.  The request is timed in {@link RequestMetrics} under the route's endpoint, and its use
+     * by {@code clientId} is recorded in the {@link UsagePipeline}.  A {@code body} which does not match the version's
+     * request schema is a 400 (see {@link RequestValidator}).  If the {@link SomethingStore} is enabled, the body is
+     * stored (see {@link VersionContext#toStoredValue}) and the cached GETs of {@code something} are invalidated; the
+     * request is a 400 if the body is too long to store, and a 503 if the store's write queue is full.
+     *
+     * @return The request, which is cancelled (see {@link RequestDispatcher}) if its response is no longer wanted.
+     */
+    CompletableFuture<Response> post(
+            DispatchTable.Route route, String something, String body, String clientId, Consumer<Response> onResponse) {
+        VersionContext versionContext = route.getVersionContext();
+        RequestTiming timing = metrics.start(route.getEndpoint(), versionContext.getVersion());
+        record(route, clientId);
+        // Parsed once, to validate and to store
+        JsonNode parsed = (body == null) ? null : RequestValidator.parse(body);
+        List<RequestValidator.Violation> violations = RequestValidator.validateParsed(versionContext, parsed);
+        if (!violations.isEmpty()) {
+            return completed(RequestValidator.badRequest(versionContext.getVersion(), violations), timing, onResponse);
+        }
+        return dispatch(route, timing, () -> {
+            try {
+                store(versionContext, something, body, parsed);
+            } catch (IllegalArgumentException ex) {
+                return Response.status(Response.Status.BAD_REQUEST).build();
+            } catch (RejectedExecutionException ex) {
+                return RequestDispatcher.unavailable();
+            }
+            // NOTE: In this example... here's how we branch on version specific stuff
+            return Response.status(200).entity(versionContext.doSomeVersionSpecificWork(something, body)).build();
+        }, null, onResponse);
+    }
+
+    /**
+     * Same as {@link #post(DispatchTable.Route, String, String, String, Consumer)} for GETs, which go through the
+     * {@link ResponseCache}.  A cached response is passed on directly (as a 304 if {@code ifNoneMatch} matches its
+     * ETag, and precompressed if {@code acceptEncoding} accepts gzip) without invoking the route's
+     * {@link VersionContext}.  Otherwise, if an identical GET is already in flight, this one gets its result (see
+     * {@link RequestCoalescer}), or a 503 if that GET is shed, times out or is cancelled, or this one times out.  If
+     * the {@link SomethingStore} is enabled, the output is rendered from the stored value.
+     */
+    CompletableFuture<Response> get(
+            DispatchTable.Route route, String something, String ifNoneMatch, String acceptEncoding, String clientId,
+            Consumer<Response> onResponse) {
+        VersionContext versionContext = route.getVersionContext();
+        RequestTiming timing = metrics.start(route.getEndpoint(), versionContext.getVersion());
+        record(route, clientId);
+        ResponseCache.Key key = new ResponseCache.Key(versionContext.getVersion(), something, route.getMediaType());
+        ResponseCache.Entry cached = responseCache.get(key);
+        if (cached != null) {
+            return completed(cached.toResponse(ifNoneMatch, acceptEncoding), timing, onResponse);
+        }
+
+        CompletableFuture<ResponseCache.Entry> flight = new CompletableFuture<>();
+        CompletableFuture<ResponseCache.Entry> leader = coalescer.join(key, flight);
+        if (leader != null) {
+            CompletableFuture<Response> result = new CompletableFuture<>();
+            ScheduledFuture<?> timeout = dispatcher.schedule(
+                () -> result.complete(RequestDispatcher.unavailable()), route.getTimeoutMillis());
+            leader.whenComplete((entry, ex) -> result.complete(
+                (ex == null) ? entry.toResponse(ifNoneMatch, acceptEncoding)
+                    : (ex instanceof CancellationException) ? RequestDispatcher.unavailable()
+                    : RequestDispatcher.serverError(route, ex)));
+            result.whenComplete((output, ex) -> {
+                timeout.cancel(false);
+                if (ex == null) {
+                    onResponse.accept(output);
+                }
+                timing.finish();
+            });
+            return result;
+        }
+
+        CompletableFuture<Response> result = dispatch(route, timing, () -> {
+            try {
+                ResponseCache.Entry entry = responseCache.render(key,
+                    () -> versionContext.doSomeVersionSpecificWork(something, storedValue(something)));
+                flight.complete(entry);
+                return entry.toResponse(ifNoneMatch, acceptEncoding);
+            } catch (Throwable ex) {
+                flight.completeExceptionally(ex);
+                throw ex;
+            }
+        }, () -> flight.completeExceptionally(new CancellationException("Request dropped")), onResponse);
+        // Whatever became of the work, the followers (and the coalescer entry) must not outlive this request: if it
+        // ended without completing the flight, the followers get a 503
+        result.whenComplete((output, ex) -> flight.completeExceptionally(new CancellationException("Request ended")));
+        return result;
+    }
+
+    /**
+     * Same as {@link #get(DispatchTable.Route, String, String, String, String, Consumer)}, but bypassing the
+     * {@link ResponseCache} and {@link RequestCoalescer}: the response's entity is the output of the route's
+     * {@link VersionContext}, not its serialized bytes, for callers which embed it in their own output (i.e.
+     * {@link BatchResource}).
+     */
+    CompletableFuture<Response> render(
+            DispatchTable.Route route, String something, String clientId, Consumer<Response> onResponse) {
+        VersionContext versionContext = route.getVersionContext();
+        RequestTiming timing = metrics.start(route.getEndpoint(), versionContext.getVersion());
+        record(route, clientId);
+        return dispatch(route, timing, () -> Response.ok(
+            versionContext.doSomeVersionSpecificWork(something, storedValue(something))).build(), null, onResponse);
+    }
+
+    /**
+     * Builds a response which streams {@code body} through {@link VersionContext#streamVersionSpecificWork} while the
+     * response is written (chunked).  A {@code null} route is a 404, and a stream the {@link AdaptiveLimiter} has no
+     * capacity for is a 503.  The stream only takes its permit once the response is written; one which is shed then
+     * gets a 503 line.  Each record is validated and stored like the body of a POST (see
+     * {@link #post(DispatchTable.Route, String, String, String, Consumer)}) before its output is written.  A record
+     * which is too large, invalid or cannot be stored, reading or writing past the route's timeout (see
+     * {@link StreamDeadline}), or a failure of the work (a 500), ends the response with an error line (see
+     * {@link #writeStreamError}), since the 200 may have been sent with the first buffer.
+     */
+    private Response stream(DispatchTable.Route route, String something, InputStream body, String clientId) {
+        if (route == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+        VersionContext versionContext = route.getVersionContext();
+        RequestTiming timing = metrics.start(route.getEndpoint(), versionContext.getVersion());
+        record(route, clientId);
+        if (!limiter.hasCapacity()) {
+            timing.finish();
+            return RequestDispatcher.unavailable();
+        }
+        StreamingOutput output = out -> {
+            timing.workStarted();
+            // The permit is only taken once the response is written, so one Jersey never writes does not hold it
+            if (!limiter.tryAcquire()) {
+                writeStreamError(out, Response.Status.SERVICE_UNAVAILABLE, "Shed by the concurrency limit");
+                timing.workFinished();
+                timing.finish();
+                return;
+            }
+            StreamDeadline deadline = new StreamDeadline(route.getTimeoutMillis());
+            boolean timedOut = false;
+            try (OutputStream buffered = new BufferedOutputStream(out, STREAM_BUFFER_SIZE)) {
+                try {
+                    versionContext.streamVersionSpecificWork(something, deadline.wrap(body), deadline.wrap(buffered),
+                        record -> storeRecord(versionContext, something, record));
+                } catch (NdjsonReader.RecordTooLargeException ex) {
+                    writeStreamError(buffered, Response.Status.REQUEST_ENTITY_TOO_LARGE, ex.getMessage());
+                } catch (RecordRefusedException ex) {
+                    writeStreamError(buffered, ex.getStatus(), ex.getMessage());
+                } catch (StreamDeadline.TimeoutException ex) {
+                    timedOut = true;
+                    writeStreamError(buffered, Response.Status.SERVICE_UNAVAILABLE, ex.getMessage());
+                } catch (RuntimeException ex) {
+                    RequestDispatcher.serverError(route, ex);
+                    writeStreamError(buffered, Response.Status.INTERNAL_SERVER_ERROR,
+                        Response.Status.INTERNAL_SERVER_ERROR.getReasonPhrase());
+                }
+            } finally {
+                // A stream's latency depends on its size and the client, so only a timeout adapts the limit
+                if (timedOut) {
+                    limiter.onDropped();
+                } else {
+                    limiter.release();
+                }
+                timing.workFinished();
+                timing.finish();
+            }
+        };
+        return Response.ok(output).build();
+    }
+
+    /**
+     * Runs {@code work} through the {@link RequestDispatcher}, and passes its response to {@code onResponse} unless the
+     * request is cancelled first.  {@code onDropped} (optional) is run if {@code work} is shed, rejected or
+     * interrupted.
+     */
+    private CompletableFuture<Response> dispatch(
+            DispatchTable.Route route, RequestTiming timing, Supplier<Response> work, Runnable onDropped,
+            Consumer<Response> onResponse) {
+        CompletableFuture<Response> result = dispatcher.submit(route, timing, work, onDropped);
+        result.whenComplete((output, ex) -> {
+            if (ex == null) {
+                onResponse.accept(output);
+            }
+            timing.finish();
+        });
+        return result;
+    }
+
+    private static CompletableFuture<Response> completed(
+            Response output, RequestTiming timing, Consumer<Response> onResponse) {
+        onResponse.accept(output);
+        timing.finish();
+        return CompletableFuture.completedFuture(output);
+    }
+
+    /**
+     * Cancels {@code request} if the client of {@code response} disconnects before it is complete.
+     */
+    private static void cancelOnDisconnect(AsyncResponse response, CompletableFuture<Response> request) {
+        if (!request.isDone()) {
+            response.register((ConnectionCallback) disconnected -> request.cancel(true));
+        }
+    }
+
+    /**
+     * Writes an in-band error line to a streamed response, i.e. {@code {"status":413,"error":"..."}}.  Nothing is read
+     * after it.
+     */
+    private static void writeStreamError(OutputStream out, Response.Status status, String error) throws IOException {
+        try (JsonGenerator json = STREAM_ERRORS.createGenerator(out)) {
+            json.writeStartObject();
+            json.writeNumberField("status", status.getStatusCode());
+            json.writeStringField("error", error);
+            json.writeEndObject();
+        }
+        out.write('\n');
+    }
+
+    /**
+     * If the {@link SomethingStore} is enabled, stores {@code body} (see {@link VersionContext#toStoredValue}) as the
+     * value of {@code something}, and invalidates its cached GETs.
+     *
+     * @param parsed    {@code body}, parsed (see {@link RequestValidator#parse}), or {@code null} if there is none.
+     * @throws IllegalArgumentException if the value is too long to store.
+     * @throws RejectedExecutionException if the store's write queue is full.
+     */
+    private void store(VersionContext versionContext, String something, String body, JsonNode parsed) {
+        if (store.isEnabled()) {
+            store.write(something, versionContext.toStoredValue(body, parsed));
+            invalidate(something);
+        }
+    }
+
+    /**
+     * Validates a streamed {@code record}, and stores it if the {@link SomethingStore} is enabled, like the body of a
+     * POST.
+     *
+     * @throws RecordRefusedException if it is invalid, or cannot be stored.
+     */
+    private void storeRecord(VersionContext versionContext, String something, String record) {
+        JsonNode parsed = RequestValidator.parse(record);
+        List<RequestValidator.Violation> violations = RequestValidator.validateParsed(versionContext, parsed);
+        if (!violations.isEmpty()) {
+            throw new RecordRefusedException(Response.Status.BAD_REQUEST, "Invalid record: " + violations.get(0));
+        }
+        try {
+            store(versionContext, something, record, parsed);
+        } catch (IllegalArgumentException ex) {
+            throw new RecordRefusedException(Response.Status.BAD_REQUEST, ex.getMessage());
+        } catch (RejectedExecutionException ex) {
+            throw new RecordRefusedException(Response.Status.SERVICE_UNAVAILABLE, ex.getMessage());
+        }
+    }
+
+    /**
+     * The stored value of {@code something}, or {@code null} if there is none or the {@link SomethingStore} is
+     * disabled.
+     */
+    private String storedValue(String something) {
+        SomethingRecord record = store.read(something);
+        return (record == null) ? null : record.getValue();
+    }
+
+    /**
+     * Drops the cached GET responses of {@code something} after it was written, in every version and media type.  A
+     * GET already in flight may still cache the previous value, until the cache TTL.
+     */
+    private void invalidate(String something) {
+        for (VersionContext context : REGISTRY.getSupported()) {
+            for (Endpoint endpoint : GET_ENDPOINTS) {
+                DispatchTable.Route route = routes.get(endpoint, context.getVersion());
+                if (route != null) {
+                    responseCache.invalidate(
+                        new ResponseCache.Key(context.getVersion(), something, route.getMediaType()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a use of {@code route} by {@code clientId} (see {@link UsagePipeline}); this never blocks or does I/O.
+     */
+    private void record(DispatchTable.Route route, String clientId) {
+        usage.record(route.getEndpoint(), route.getVersionContext().getVersion(),
+            ((clientId == null) || clientId.isEmpty()) ? UNKNOWN_CLIENT : clientId);
+    }
+
+    /**
+     * Thrown by {@link #storeRecord} for a streamed record which is not stored, and reported in-band with
+     * {@link #getStatus()}.
+     */
+    private static final class RecordRefusedException extends RuntimeException {
+        private final Response.Status status;
+
+        RecordRefusedException(Response.Status status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        Response.Status getStatus() {
+            return status;
+        }
     }
 }
@@ -0,0 +1,7 @@
+-- The {something} resources, in their version independent form (see SomethingRecord).  utf8mb4, so any text a client
+-- sends can be stored; the key is at most 191 characters, the longest utf8mb4 key InnoDB indexes (767 bytes)
+CREATE TABLE foo (
+    something VARCHAR(191) NOT NULL PRIMARY KEY,
+    body MEDIUMTEXT,
+    updated BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
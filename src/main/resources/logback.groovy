@@ -3,10 +3,21 @@ import ch.qos.logback.classic.encoder.PatternLayoutEncoder
 import ch.qos.logback.core.ConsoleAppender
 import ch.qos.logback.core.rolling.RollingFileAppender
 import ch.qos.logback.core.rolling.TimeBasedRollingPolicy
+import com.vevo.versions.logging.CountingAsyncAppender
 
 def PATTERN = "%d{HH:mm:ss.SSS} [%thread] %-5level %logger{36} - %msg%n"
 def location = "build/logs/versions.log"
 
+// Async logging (LOG_ASYNC=false to write synchronously): each appender gets a bounded queue (LOG_QUEUE_SIZE) and a
+// worker thread, so request threads never block on stdout or disk.  Once fewer than LOG_DISCARDING_THRESHOLD slots
+// are left, events at or below LOG_DISCARD_LEVEL are discarded; when the queue is full, everything is dropped.  Both
+// are counted in the logging.* gauges.
+def env = System.getenv()
+def async = !"false".equalsIgnoreCase(env.LOG_ASYNC)
+def queue = (env.LOG_QUEUE_SIZE ?: "8192") as int
+def threshold = (env.LOG_DISCARDING_THRESHOLD ?: String.valueOf(queue.intdiv(5))) as int
+def discardLevel = env.LOG_DISCARD_LEVEL ?: "INFO"
+
 appender("CONSOLE", ConsoleAppender) {
   encoder(PatternLayoutEncoder) {
     pattern = PATTERN
@@ -24,7 +35,22 @@ appender("ROLLING", RollingFileAppender) {
   }
 }
 
-root(Level.INFO, ["CONSOLE", "ROLLING"])
+def appenders = ["CONSOLE", "ROLLING"]
+if (async) {
+  appenders = appenders.collect { name ->
+    appender("ASYNC_" + name, CountingAsyncAppender) {
+      queueSize = queue
+      discardingThreshold = threshold
+      delegate.discardLevel = discardLevel
+      neverBlock = true
+      includeCallerData = false
+      appenderRef(name)
+    }
+    "ASYNC_" + name
+  }
+}
+
+root(Level.INFO, appenders)
 
 logger("com.vevo.versions", Level.INFO)
 logger("com.getsentry.raven", Level.WARN)
@@ -0,0 +1,35 @@
+package com.vevo.versions;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class ConfigTest {
+
+    @Test
+    public void durationsShouldParseToMillis() {
+        Assert.assertEquals(Config.parseMillis("250ms"), 250);
+        Assert.assertEquals(Config.parseMillis(" 5s "), 5000);
+        Assert.assertEquals(Config.parseMillis("30 S"), 30000);
+        Assert.assertEquals(Config.parseMillis("0ms"), 0);
+    }
+
+    @Test
+    public void durationsWithoutUnitsShouldBeRejected() {
+        for (String value : new String[] {"250", "", "ms", "5m", "-1s", "1.5s", "fives"}) {
+            try {
+                Config.parseMillis(value);
+                Assert.fail("Expected '" + value + "' to be rejected!");
+            } catch (IllegalArgumentException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void defaultTimeoutShouldBeInSeconds() {
+        Config config = new Config();
+        Assert.assertEquals(config.getRequestTimeout("path", "get", 1),
+            config.getRequestTimeout() * 1000L);
+    }
+}
@@ -0,0 +1,62 @@
+package com.vevo.versions;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class StartupProfilerTest {
+
+    @Test
+    public void phasesShouldBeRecordedInOrder() {
+        StartupProfiler profiler = new StartupProfiler();
+        Assert.assertEquals(profiler.time("config", () -> "parsed"), "parsed");
+        profiler.time("module", () -> sleep(20));
+        profiler.defer("statsd", false, () -> { });
+
+        Map<String, Long> phases = profiler.getPhases();
+        Assert.assertEquals(phases.keySet().toString(), "[config, module, statsd]");
+        Assert.assertTrue(phases.get("module") >= 20);
+        Assert.assertEquals(profiler.getReadyMillis(), 0);
+        profiler.ready();
+        Assert.assertTrue(profiler.getReadyMillis() >= 20);
+    }
+
+    @Test
+    public void deferredPhasesShouldRunInTheBackground() throws InterruptedException {
+        StartupProfiler profiler = new StartupProfiler();
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<String> thread = new AtomicReference<>();
+        profiler.defer("usage_sink", true, () -> {
+            thread.set(Thread.currentThread().getName());
+            done.countDown();
+        });
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        Assert.assertTrue(thread.get().startsWith("versions-startup-"), thread.get());
+    }
+
+    @Test
+    public void failedPhasesShouldStillBeRecorded() {
+        StartupProfiler profiler = new StartupProfiler();
+        try {
+            profiler.time("genesis", () -> {
+                throw new IllegalStateException("Bad config");
+            });
+            Assert.fail();
+        } catch (IllegalStateException ex) {
+            Assert.assertTrue(profiler.getPhases().containsKey("genesis"));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
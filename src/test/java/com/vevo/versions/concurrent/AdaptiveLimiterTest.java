@@ -0,0 +1,86 @@
+package com.vevo.versions.concurrent;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class AdaptiveLimiterTest {
+
+    @Test
+    public void requestsBeyondTheLimitShouldBeRejected() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(2, 1, 10, 1000);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(limiter.getInFlight(), 2);
+        Assert.assertEquals(limiter.getRejectedCount(), 1);
+
+        limiter.onSuccess(0);
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void capacityChecksShouldNotAdmit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1, 10, 1000);
+        Assert.assertTrue(limiter.hasCapacity());
+        Assert.assertEquals(limiter.getInFlight(), 0);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.hasCapacity());
+        Assert.assertEquals(limiter.getRejectedCount(), 1);
+    }
+
+    @Test
+    public void fastRequestsShouldGrowTheLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 1, 20, 1000);
+        for (int idx = 0; idx < 100; idx++) {
+            // Use the whole limit, then complete everything quickly
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int release = 0; release < acquired; release++) {
+                limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        Assert.assertEquals(limiter.getLimit(), 20);
+        Assert.assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test
+    public void idleServiceShouldNotGrowTheLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 1, 20, 1000);
+        for (int idx = 0; idx < 100; idx++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.onSuccess(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        Assert.assertEquals(limiter.getLimit(), 10);
+    }
+
+    @Test
+    public void slowOrDroppedRequestsShouldShrinkTheLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 5, 20, 1000);
+        Assert.assertTrue(limiter.tryAcquire());
+        limiter.onSuccess(TimeUnit.SECONDS.toNanos(2));
+        Assert.assertEquals(limiter.getLimit(), 9);
+
+        for (int idx = 0; idx < 20; idx++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.onDropped();
+        }
+        Assert.assertEquals(limiter.getLimit(), 5);
+        Assert.assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test
+    public void releasedRequestsShouldNotAdaptTheLimit() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(10, 5, 20, 1000);
+        for (int idx = 0; idx < 20; idx++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release();
+        }
+        Assert.assertEquals(limiter.getLimit(), 10);
+        Assert.assertEquals(limiter.getInFlight(), 0);
+    }
+}
@@ -0,0 +1,48 @@
+package com.vevo.versions.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class RequestExecutorTest {
+
+    @Test
+    public void saturatedExecutorShouldRejectAndCount() throws Exception {
+        RequestExecutor executor = new RequestExecutor(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            executor.execute(() -> { });   // queued
+
+            Assert.assertEquals(executor.getActiveThreads(), 1);
+            Assert.assertEquals(executor.getQueueDepth(), 1);
+            try {
+                executor.execute(() -> { });
+                Assert.fail("Expected rejection!");
+            } catch (RejectedExecutionException expected) {
+                // expected
+            }
+            Assert.assertEquals(executor.getRejectedCount(), 1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.vevo.versions.events;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class RingBufferTest {
+
+    @Test
+    public void shouldBeFifoAndRejectWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        Assert.assertNull(buffer.poll());
+        for (int idx = 0; idx < 4; idx++) {
+            Assert.assertTrue(buffer.offer(idx));
+        }
+        Assert.assertFalse(buffer.offer(4));
+        Assert.assertEquals(buffer.size(), 4);
+
+        // Wrap around the ring a few times
+        for (int idx = 0; idx < 20; idx++) {
+            Assert.assertEquals(buffer.poll(), Integer.valueOf(idx));
+            Assert.assertTrue(buffer.offer(idx + 4));
+        }
+        Assert.assertEquals(buffer.size(), 4);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void capacityShouldBeAPowerOfTwo() {
+        new RingBuffer<>(1000);
+    }
+
+    @Test
+    public void concurrentProducersAndConsumersShouldNotLoseOrDuplicate() throws InterruptedException {
+        RingBuffer<Long> buffer = new RingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 50000;
+        AtomicLong sum = new AtomicLong();
+        AtomicLong consumed = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int idx = 0; idx < producers; idx++) {
+            threads.add(new Thread(() -> {
+                for (long value = 1; value <= perProducer; value++) {
+                    while (!buffer.offer(value)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+            threads.add(new Thread(() -> {
+                while (consumed.get() < (long) producers * perProducer) {
+                    Long value = buffer.poll();
+                    if (value == null) {
+                        Thread.yield();
+                    } else {
+                        sum.addAndGet(value);
+                        consumed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(consumed.get(), (long) producers * perProducer);
+        Assert.assertEquals(sum.get(), producers * ((long) perProducer * (perProducer + 1) / 2));
+        Assert.assertNull(buffer.poll());
+    }
+}
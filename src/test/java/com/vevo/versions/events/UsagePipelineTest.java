@@ -0,0 +1,97 @@
+package com.vevo.versions.events;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vevo.versions.metrics.Endpoint;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class UsagePipelineTest {
+
+    @Test
+    public void eventsShouldBeCountedBySink() {
+        MemoryUsageSink sink = new MemoryUsageSink();
+        UsagePipeline usage = new UsagePipeline(sink, 1024, 2, 10);
+        for (int idx = 0; idx < 100; idx++) {
+            usage.record(Endpoint.PATH_GET, 1, "web");
+            usage.record(Endpoint.HEADER_POST, 2, "ios");
+        }
+        usage.shutdown();
+
+        Assert.assertEquals(sink.getTotal(new UsageEvent(Endpoint.PATH_GET, 1, "web")), 100);
+        Assert.assertEquals(sink.getTotal(new UsageEvent(Endpoint.HEADER_POST, 2, "ios")), 100);
+        Assert.assertEquals(sink.getTotal(new UsageEvent(Endpoint.PATH_GET, 2, "web")), 0);
+        Assert.assertEquals(usage.getDroppedCount(), 0);
+        Assert.assertEquals(usage.getSentCount(), sink.getCounts().size());
+
+        UsageCount count = sink.getCounts().get(0);
+        Assert.assertTrue(count.getFrom() <= count.getTo());
+    }
+
+    @Test
+    public void eventsShouldBeDroppedWhenTheBufferIsFull() {
+        MemoryUsageSink sink = new MemoryUsageSink();
+        // No producers, so nothing drains the buffer
+        UsagePipeline usage = new UsagePipeline(sink, 4, 0, 10);
+        for (int idx = 0; idx < 10; idx++) {
+            usage.record(Endpoint.PATH_POST, 1, "web");
+        }
+        Assert.assertEquals(usage.getBufferedCount(), 4);
+        Assert.assertEquals(usage.getDroppedCount(), 6);
+    }
+
+    @Test
+    public void failedSendsShouldBeCounted() {
+        UsagePipeline usage = new UsagePipeline(batch -> {
+            throw new IllegalStateException("Stream not found");
+        }, 16, 1, 10);
+        usage.record(Endpoint.PATH_GET, 1, "web");
+        usage.shutdown();
+        Assert.assertEquals(usage.getFailedCount(), 1);
+        Assert.assertEquals(usage.getSentCount(), 0);
+    }
+
+    @Test
+    public void partlyFailedSendsShouldBeCounted() {
+        // Like Kinesis throttling some of the records of a PutRecords
+        UsagePipeline usage = new UsagePipeline(batch -> batch.size() - 1, 16, 1, 10);
+        usage.record(Endpoint.PATH_GET, 1, "web");
+        usage.record(Endpoint.PATH_GET, 2, "web");
+        usage.shutdown();
+        Assert.assertEquals(usage.getFailedCount() + usage.getSentCount(), 2);
+        Assert.assertTrue(usage.getFailedCount() >= 1);
+    }
+
+    @Test(timeOut = 5000)
+    public void idleProducersShouldWakeForEvents() throws Exception {
+        MemoryUsageSink sink = new MemoryUsageSink();
+        UsagePipeline usage = new UsagePipeline(sink, 16, 1, 60000);
+        // Long enough for the producer to back off
+        Thread.sleep(200);
+        usage.record(Endpoint.PATH_GET, 1, "web");
+        while (usage.getBufferedCount() > 0) {
+            Thread.sleep(1);
+        }
+        // Shutdown wakes the producer too, rather than waiting out its park
+        usage.shutdown();
+        Assert.assertEquals(sink.getTotal(new UsageEvent(Endpoint.PATH_GET, 1, "web")), 1);
+    }
+
+    @Test
+    public void disabledPipelineShouldIgnoreEvents() {
+        UsagePipeline usage = new UsagePipeline(null, 0, 0, 0);
+        usage.record(Endpoint.PATH_GET, 1, "web");
+        Assert.assertFalse(usage.isEnabled());
+        Assert.assertEquals(usage.getDroppedCount(), 0);
+        usage.shutdown();
+    }
+
+    @Test
+    public void countsShouldSerializeAsJson() throws Exception {
+        UsageCount count = new UsageCount(new UsageEvent(Endpoint.HEADER_GET, 2, "web"), 3, 10, 20);
+        Assert.assertEquals(new ObjectMapper().writeValueAsString(count),
+            "{\"version\":2,\"strategy\":\"header\",\"endpoint\":\"get\",\"clientId\":\"web\",\"count\":3,"
+                + "\"from\":10,\"to\":20}");
+    }
+}
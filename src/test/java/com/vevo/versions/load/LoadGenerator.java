@@ -0,0 +1,191 @@
+package com.vevo.versions.load;
+
+import com.vevo.versions.concurrent.NamedThreadFactory;
+import com.vevo.versions.metrics.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Sends a weighted mix of {@link LoadScenario}s to a running service and records throughput, latency and errors per
+ * scenario.  Two modes are supported:
+ *
+ * <ul>
+ *     <li>Closed loop: {@code clients} threads each send a request as soon as their previous one completes.</li>
+ *     <li>Open loop: requests are started at a fixed {@code rate} regardless of how fast the service responds, with
+ *     {@code clients} threads to send them.  Latency is measured from when a request was due to be sent, so time
+ *     spent waiting for a free client counts (no coordinated omission).</li>
+ * </ul>
+ *
+ * Only requests started after the warmup period are recorded.
+ */
+public class LoadGenerator {
+
+    public enum Mode { OPEN, CLOSED }
+
+    private final String uri;
+    private final Map<LoadScenario, Integer> mix;
+    private final Mode mode;
+    private final int clients;
+    private final int rate;
+    private final long warmupNanos;
+    private final long durationNanos;
+
+    private final LoadScenario[] weighted;
+    private final Map<LoadScenario, Result> results = new EnumMap<>(LoadScenario.class);
+
+    /**
+     * @param uri       The service uri, i.e. {@code http://localhost:8888}.
+     * @param mix       The relative weight of each scenario.
+     * @param mode      Open or closed loop.
+     * @param clients   The number of concurrent clients (threads).
+     * @param rate      The requests per second to send in open loop mode.
+     * @param warmup    The seconds to run before recording.
+     * @param duration  The seconds to record.
+     * @throws IllegalArgumentException if there are no clients, no scenario has a weight, or the open loop rate is
+     *                                  not between 1 and a billion per second.
+     */
+    public LoadGenerator(
+            String uri, Map<LoadScenario, Integer> mix, Mode mode, int clients, int rate, int warmup, int duration) {
+        if (clients <= 0) {
+            throw new IllegalArgumentException("Need at least one client: " + clients);
+        }
+        if ((mode == Mode.OPEN) && ((rate <= 0) || (rate > TimeUnit.SECONDS.toNanos(1)))) {
+            throw new IllegalArgumentException("Open loop rate out of range: " + rate);
+        }
+        if ((warmup < 0) || (duration < 0)) {
+            throw new IllegalArgumentException("Negative warmup or duration: " + warmup + " / " + duration);
+        }
+        this.uri = uri;
+        this.mix = mix;
+        this.mode = mode;
+        this.clients = clients;
+        this.rate = rate;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmup);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(duration);
+
+        List<LoadScenario> list = new ArrayList<>();
+        for (Map.Entry<LoadScenario, Integer> entry : mix.entrySet()) {
+            if (entry.getValue() < 0) {
+                throw new IllegalArgumentException("Negative weight: " + entry);
+            }
+            for (int idx = 0; idx < entry.getValue(); idx++) {
+                list.add(entry.getKey());
+            }
+            results.put(entry.getKey(), new Result());
+        }
+        if (list.isEmpty()) {
+            throw new IllegalArgumentException("Empty scenario mix: " + mix);
+        }
+        this.weighted = list.toArray(new LoadScenario[list.size()]);
+    }
+
+    /**
+     * Runs the load and returns the results per scenario.
+     */
+    public Map<LoadScenario, Result> run() throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(clients, new NamedThreadFactory("load-client-"));
+        long start = System.nanoTime();
+        long recordFrom = start + warmupNanos;
+        long end = recordFrom + durationNanos;
+        try {
+            if (mode == Mode.CLOSED) {
+                for (int idx = 0; idx < clients; idx++) {
+                    pool.execute(() -> {
+                        long now;
+                        while ((now = System.nanoTime()) < end) {
+                            send(now, recordFrom);
+                        }
+                    });
+                }
+            } else {
+                long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+                for (long due = start; due < end; due += interval) {
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    final long intended = due;
+                    pool.execute(() -> send(intended, recordFrom));
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(TimeUnit.NANOSECONDS.toSeconds(durationNanos) + 60, TimeUnit.SECONDS);
+        }
+        for (Result result : results.values()) {
+            result.seconds = TimeUnit.NANOSECONDS.toMillis(durationNanos) / 1000.0;
+        }
+        return results;
+    }
+
+    public Map<LoadScenario, Integer> getMix() {
+        return mix;
+    }
+
+    /**
+     * Sends one request from the mix, recording it if it was due after {@code recordFrom}.
+     */
+    private void send(long intended, long recordFrom) {
+        LoadScenario scenario = weighted[ThreadLocalRandom.current().nextInt(weighted.length)];
+        String something = "load" + ThreadLocalRandom.current().nextInt(100);
+        boolean ok;
+        try {
+            ok = scenario.send(uri, something) == 200;
+        } catch (Exception ex) {
+            ok = false;
+        }
+        if (intended >= recordFrom) {
+            Result result = results.get(scenario);
+            result.latency.recordNanos(System.nanoTime() - intended);
+            if (!ok) {
+                result.errors.increment();
+            }
+        }
+    }
+
+    /**
+     * The results of one scenario.
+     */
+    public static class Result {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private double seconds;
+
+        public long getCount() {
+            return latency.snapshot().getCount();
+        }
+
+        public double getThroughput() {
+            return (seconds == 0) ? 0 : (getCount() / seconds);
+        }
+
+        public double getErrorRate() {
+            long count = getCount();
+            return (count == 0) ? 0 : (errors.sum() / (double) count);
+        }
+
+        /**
+         * The latency (ms) below which {@code percentile} percent of the requests completed.
+         */
+        public double getLatencyMillis(double percentile) {
+            return latency.snapshot().getPercentileMicros(percentile) / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d throughput=%.1f/s p50=%.1fms p99=%.1fms p999=%.1fms errors=%.2f%%",
+                getCount(), getThroughput(), getLatencyMillis(50), getLatencyMillis(99), getLatencyMillis(99.9),
+                getErrorRate() * 100);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.vevo.versions.load;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+
+public class LoadGeneratorTest {
+    private static final String URI = "http://localhost:8888";
+    private static final Map<LoadScenario, Integer> MIX = Collections.singletonMap(LoadScenario.PATH_GET_V1, 1);
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void openLoopShouldRequireARate() {
+        new LoadGenerator(URI, MIX, LoadGenerator.Mode.OPEN, 1, 0, 0, 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRequireClients() {
+        new LoadGenerator(URI, MIX, LoadGenerator.Mode.CLOSED, 0, 0, 0, 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void shouldRequireAScenario() {
+        new LoadGenerator(URI, Collections.singletonMap(LoadScenario.PATH_GET_V1, 0), LoadGenerator.Mode.CLOSED,
+            1, 0, 0, 1);
+    }
+
+    @Test
+    public void closedLoopShouldNotRequireARate() {
+        new LoadGenerator(URI, MIX, LoadGenerator.Mode.CLOSED, 1, 0, 0, 1);
+    }
+}
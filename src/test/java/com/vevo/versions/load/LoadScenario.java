@@ -0,0 +1,54 @@
+package com.vevo.versions.load;
+
+import com.google.common.net.HttpHeaders;
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.Unirest;
+import com.mashape.unirest.http.exceptions.UnirestException;
+import javax.ws.rs.core.MediaType;
+
+
+/**
+ * The requests a {@link LoadGenerator} can send: each combination of strategy (path / header), method (GET / POST)
+ * and version.
+ */
+public enum LoadScenario {
+    PATH_GET_V1("GET", "/foo/path/", MediaType.APPLICATION_JSON),
+    PATH_GET_V2("GET", "/foo/path/v2/", MediaType.APPLICATION_JSON),
+    HEADER_GET_V1("GET", "/foo/header/", "application/vnd.vevo.header-v1+json"),
+    HEADER_GET_V2("GET", "/foo/header/", "application/vnd.vevo.header-v2+json"),
+    PATH_POST_V1("POST", "/foo/path/", MediaType.APPLICATION_JSON),
+    PATH_POST_V2("POST", "/foo/path/v2/", MediaType.APPLICATION_JSON),
+    HEADER_POST_V1("POST", "/foo/header/", "application/vnd.vevo.header-v1+json"),
+    HEADER_POST_V2("POST", "/foo/header/", "application/vnd.vevo.header-v2+json");
+
+    private static final String BODY = "the body";
+
+    private final String method;
+    private final String path;
+    private final String mediaType;
+
+    LoadScenario(String method, String path, String mediaType) {
+        this.method = method;
+        this.path = path;
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Sends one request for {@code something} and returns its status.
+     */
+    public int send(String uri, String something) throws UnirestException {
+        HttpResponse<String> response;
+        if (method.equals("GET")) {
+            response = Unirest.get(uri + path + something)
+                .header(HttpHeaders.ACCEPT, mediaType)
+                .asString();
+        } else {
+            response = Unirest.post(uri + path + something)
+                .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_TYPE, mediaType)
+                .body(BODY)
+                .asString();
+        }
+        return response.getStatus();
+    }
+}
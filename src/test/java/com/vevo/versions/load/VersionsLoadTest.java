@@ -0,0 +1,96 @@
+package com.vevo.versions.load;
+
+import com.mashape.unirest.http.Unirest;
+import com.vevo.genesis.Genesis;
+import com.vevo.versions.Config;
+import com.vevo.versions.VersionsIntegrationTest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Load test of the local service, run with {@code ./gradlew loadTest -Pconfig=<path>}.  Settings (system properties,
+ * passed through from {@code -P}):
+ *
+ * <ul>
+ *     <li>{@code load.mode}: {@code closed} (default) or {@code open}</li>
+ *     <li>{@code load.clients}: concurrent clients (default 50)</li>
+ *     <li>{@code load.rate}: requests per second in open mode (default 500)</li>
+ *     <li>{@code load.warmup} / {@code load.duration}: seconds (default 5 / 30)</li>
+ *     <li>{@code load.mix}: scenario weights, i.e. {@code HEADER_GET_V2=4,PATH_POST_V1=1} (default all equal)</li>
+ *     <li>{@code slo.p99} / {@code slo.p999}: max latency per scenario in ms (default 250 / 1000)</li>
+ *     <li>{@code slo.errorRate}: max error fraction per scenario (default 0.001)</li>
+ * </ul>
+ */
+public class VersionsLoadTest extends VersionsIntegrationTest {
+    public static final String LOAD_GROUP = "load";
+
+    private static final Logger log = LoggerFactory.getLogger(VersionsLoadTest.class);
+
+    private Config config;
+
+    @BeforeClass(groups = LOAD_GROUP)
+    public void beforeClass() {
+        Genesis genesis = verifyStarted();
+        config = genesis.getLocator().get(Config.class);
+    }
+
+    @Test(groups = LOAD_GROUP)
+    public void serviceShouldMeetSlosUnderLoad() throws Exception {
+        int clients = Integer.getInteger("load.clients", 50);
+        Unirest.setConcurrency(clients * 2, clients * 2);
+
+        LoadGenerator generator = new LoadGenerator(
+            config.getUri(),
+            parseMix(System.getProperty("load.mix")),
+            LoadGenerator.Mode.valueOf(System.getProperty("load.mode", "closed").toUpperCase()),
+            clients,
+            Integer.getInteger("load.rate", 500),
+            Integer.getInteger("load.warmup", 5),
+            Integer.getInteger("load.duration", 30));
+        Map<LoadScenario, LoadGenerator.Result> results = generator.run();
+
+        double maxP99 = Double.parseDouble(System.getProperty("slo.p99", "250"));
+        double maxP999 = Double.parseDouble(System.getProperty("slo.p999", "1000"));
+        double maxErrorRate = Double.parseDouble(System.getProperty("slo.errorRate", "0.001"));
+
+        List<String> violations = new ArrayList<>();
+        for (Map.Entry<LoadScenario, LoadGenerator.Result> entry : results.entrySet()) {
+            LoadGenerator.Result result = entry.getValue();
+            log.info("{}: {}", entry.getKey(), result);
+            if (result.getLatencyMillis(99) > maxP99) {
+                violations.add(entry.getKey() + " p99 " + result.getLatencyMillis(99) + "ms > " + maxP99 + "ms");
+            }
+            if (result.getLatencyMillis(99.9) > maxP999) {
+                violations.add(entry.getKey() + " p999 " + result.getLatencyMillis(99.9) + "ms > " + maxP999 + "ms");
+            }
+            if (result.getErrorRate() > maxErrorRate) {
+                violations.add(entry.getKey() + " error rate " + result.getErrorRate() + " > " + maxErrorRate);
+            }
+        }
+        Assert.assertTrue(violations.isEmpty(), "SLOs exceeded: " + violations);
+    }
+
+    private static Map<LoadScenario, Integer> parseMix(String mix) {
+        Map<LoadScenario, Integer> result = new EnumMap<>(LoadScenario.class);
+        if ((mix == null) || mix.trim().isEmpty()) {
+            for (LoadScenario scenario : LoadScenario.values()) {
+                result.put(scenario, 1);
+            }
+            return result;
+        }
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            result.put(LoadScenario.valueOf(parts[0].trim()), (parts.length > 1) ? Integer.parseInt(parts[1].trim()) : 1);
+        }
+        return result;
+    }
+}
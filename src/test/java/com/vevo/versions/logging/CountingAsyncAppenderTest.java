@@ -0,0 +1,89 @@
+package com.vevo.versions.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class CountingAsyncAppenderTest {
+
+    @Test
+    public void discardedAndDroppedEventsShouldBeCounted() throws InterruptedException {
+        LoggerContext context = new LoggerContext();
+        BlockingAppender downstream = new BlockingAppender();
+        downstream.setContext(context);
+        downstream.start();
+
+        CountingAsyncAppender async = new CountingAsyncAppender();
+        async.setContext(context);
+        async.setQueueSize(4);
+        async.setDiscardingThreshold(2);
+        async.setNeverBlock(true);
+        async.addAppender(downstream);
+        async.start();
+
+        Logger log = context.getLogger("test");
+        log.setLevel(Level.DEBUG);
+        log.setAdditive(false);
+        log.addAppender(async);
+
+        // Blocks the worker, so everything after this stays in the queue
+        log.warn("block");
+        Assert.assertTrue(downstream.entered.await(5, TimeUnit.SECONDS));
+        log.info("queued 1");
+        log.info("queued 2");
+        log.info("queued 3");
+        log.debug("discarded 1");
+        log.warn("queued 4");
+        Assert.assertEquals(async.getNumberOfElementsInQueue(), 4);
+        log.error("dropped");
+        log.info("discarded 2");
+        Assert.assertEquals(async.getDiscardedCount(), 2);
+        Assert.assertEquals(async.getDroppedCount(), 1);
+
+        downstream.release.countDown();
+        async.stop();
+        Assert.assertEquals(downstream.messages.size(), 5);
+        Assert.assertFalse(downstream.messages.contains("dropped"));
+    }
+
+    @Test
+    public void discardLevelShouldBeConfigurable() {
+        CountingAsyncAppender async = new CountingAsyncAppender();
+        Assert.assertEquals(async.getDiscardLevel(), "INFO");
+        async.setDiscardLevel("warn");
+        Assert.assertEquals(async.getDiscardLevel(), "WARN");
+        async.setDiscardLevel("nonsense");
+        Assert.assertEquals(async.getDiscardLevel(), "INFO");
+    }
+
+    /**
+     * Blocks on the first event until released.
+     */
+    private static class BlockingAppender extends AppenderBase<ILoggingEvent> {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> messages = new CopyOnWriteArrayList<>();
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            entered.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            messages.add(event.getFormattedMessage());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.vevo.versions.metrics;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class AccessLogTest {
+
+    @Test
+    public void sampledRequestsShouldBeLogged() {
+        ListAppender<ILoggingEvent> events = new ListAppender<>();
+        AccessLog accessLog = new AccessLog(logger(events), 1);
+        accessLog.log(Endpoint.HEADER_GET, 2, 1500000, 200000, 1000000);
+        Assert.assertEquals(events.list.size(), 1);
+        Assert.assertEquals(events.list.get(0).getFormattedMessage(),
+            "endpoint=get strategy=header version=2 total_us=1500 queue_us=200 work_us=1000");
+    }
+
+    @Test
+    public void unsampledRequestsShouldNotBeLogged() {
+        ListAppender<ILoggingEvent> events = new ListAppender<>();
+        Logger logger = logger(events);
+        AccessLog none = new AccessLog(logger, 0);
+        AccessLog some = new AccessLog(logger, 0.1);
+        for (int idx = 0; idx < 1000; idx++) {
+            none.log(Endpoint.PATH_POST, 1, 1, 1, 1);
+        }
+        Assert.assertEquals(events.list.size(), 0);
+        for (int idx = 0; idx < 10000; idx++) {
+            some.log(Endpoint.PATH_POST, 1, 1, 1, 1);
+        }
+        Assert.assertTrue((events.list.size() > 500) && (events.list.size() < 1500), "Sampled " + events.list.size());
+    }
+
+    private static Logger logger(ListAppender<ILoggingEvent> events) {
+        LoggerContext context = new LoggerContext();
+        events.setContext(context);
+        events.start();
+        Logger logger = context.getLogger(AccessLog.LOGGER_NAME);
+        logger.addAppender(events);
+        return logger;
+    }
+}
@@ -0,0 +1,47 @@
+package com.vevo.versions.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsShouldCoverTheirValues() {
+        for (long micros = 0; micros < 100000; micros += 7) {
+            int bucket = LatencyHistogram.bucket(micros);
+            Assert.assertTrue(LatencyHistogram.upperBound(bucket) >= micros, "Bucket too small for " + micros);
+            Assert.assertTrue((bucket == 0) || (LatencyHistogram.upperBound(bucket - 1) < micros),
+                "Bucket too large for " + micros);
+        }
+    }
+
+    @Test
+    public void percentilesShouldBeWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis, TimeUnit.MILLISECONDS);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(snapshot.getCount(), 100);
+        Assert.assertEquals(snapshot.getMaxMicros(), 100000);
+        assertWithin(snapshot.getPercentileMicros(50), 50000);
+        assertWithin(snapshot.getPercentileMicros(99), 99000);
+        Assert.assertEquals(snapshot.getPercentileMicros(100), 100000);
+    }
+
+    @Test
+    public void drainShouldReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(5000);
+        Assert.assertEquals(histogram.drain().getCount(), 1);
+        Assert.assertEquals(histogram.snapshot().getCount(), 0);
+        Assert.assertEquals(histogram.snapshot().getPercentileMicros(99), 0);
+    }
+
+    private static void assertWithin(long actual, long expected) {
+        Assert.assertTrue(Math.abs(actual - expected) <= (expected / 8), actual + " is not close to " + expected);
+    }
+}
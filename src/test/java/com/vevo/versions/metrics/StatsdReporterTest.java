@@ -0,0 +1,73 @@
+package com.vevo.versions.metrics;
+
+import com.timgroup.statsd.NonBlockingStatsDClient;
+import com.timgroup.statsd.StatsDClient;
+import com.vevo.versions.Config;
+import com.vevo.versions.concurrent.AdaptiveLimiter;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class StatsdReporterTest {
+
+    @Test
+    public void timersGaugesAndCountersShouldBeSentAsDogStatsd() throws Exception {
+        RequestMetrics metrics = new RequestMetrics(Integer.MAX_VALUE);
+        AtomicLong rejected = new AtomicLong(5);
+        metrics.getRegistry().gauge("executor.queue_depth", () -> 3);
+        metrics.getRegistry().counter("executor.rejected", rejected::get);
+        metrics.start(Endpoint.HEADER_GET, 2).finish();
+        // Components register their own gauges and counters
+        AdaptiveLimiter limiter = new AdaptiveLimiter(new Config(), metrics.getRegistry());
+
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            socket.setSoTimeout(500);
+            StatsDClient client = new NonBlockingStatsDClient("versions", "localhost", socket.getLocalPort());
+            try {
+                StatsdReporter reporter = new StatsdReporter(metrics, client);
+                reporter.run();
+                String lines = receive(socket);
+                Assert.assertTrue(lines.contains(
+                    "versions.request.total.count:1|c|#endpoint:get,strategy:header,version:2"), lines);
+                Assert.assertTrue(lines.contains("versions.request.work.p99:"), lines);
+                Assert.assertTrue(lines.contains("versions.executor.queue_depth:3|g"), lines);
+                Assert.assertTrue(lines.contains("versions.executor.rejected:5|c"), lines);
+                Assert.assertTrue(lines.contains("versions.limiter.limit:" + limiter.getLimit() + "|g"), lines);
+
+                // Counters are sent as their increase since the previous flush
+                rejected.set(8);
+                reporter.run();
+                lines = receive(socket);
+                Assert.assertTrue(lines.contains("versions.executor.rejected:3|c"), lines);
+                Assert.assertFalse(lines.contains("versions.request.total.count"), lines);
+            } finally {
+                client.stop();
+            }
+        }
+        Assert.assertEquals(metrics.getTimers(Endpoint.HEADER_GET, 2).getTotal().snapshot().getCount(), 0,
+            "Expected the histograms to be reset by the flush!");
+    }
+
+    /**
+     * Everything received until nothing more arrives.
+     */
+    private static String receive(DatagramSocket socket) throws Exception {
+        StringBuilder lines = new StringBuilder();
+        DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+        try {
+            while (true) {
+                socket.receive(packet);
+                lines.append(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8)).append('\n');
+            }
+        } catch (SocketTimeoutException ex) {
+            return lines.toString();
+        }
+    }
+}
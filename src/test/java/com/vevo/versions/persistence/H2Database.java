@@ -0,0 +1,34 @@
+package com.vevo.versions.persistence;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+
+/**
+ * In-memory H2 databases, in MySQL mode, with the schema of the Liquibase changelog.
+ */
+final class H2Database {
+    private static final String SCHEMA = "classpath:db/changelog/001-create-foo.sql";
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    private H2Database() {
+    }
+
+    /**
+     * Creates a new, empty database.  It lives until the JVM exits.
+     */
+    static DataSource create() throws SQLException {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:versions-" + COUNT.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("RUNSCRIPT FROM '" + SCHEMA + "'");
+        }
+        return dataSource;
+    }
+}
@@ -0,0 +1,63 @@
+package com.vevo.versions.persistence;
+
+import com.google.common.base.Strings;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class SomethingDaoTest {
+
+    @Test
+    public void upsertsShouldInsertAndUpdateInOneStatement() throws SQLException {
+        SomethingDao dao = new SomethingDao(H2Database.create());
+        Assert.assertEquals(dao.upsert(Arrays.asList(
+            new SomethingRecord("a", "one", 1), new SomethingRecord("b", null, 1))), 1);
+        Assert.assertEquals(dao.load("a"), new SomethingRecord("a", "one", 1));
+        Assert.assertEquals(dao.load("b"), new SomethingRecord("b", null, 1));
+
+        Assert.assertEquals(dao.upsert(Arrays.asList(
+            new SomethingRecord("b", "two", 2), new SomethingRecord("c", "three", 2))), 1);
+        Assert.assertEquals(dao.load("a"), new SomethingRecord("a", "one", 1));
+        Assert.assertEquals(dao.load("b"), new SomethingRecord("b", "two", 2));
+        Assert.assertEquals(dao.load("c"), new SomethingRecord("c", "three", 2));
+
+        dao.upsert(new SomethingRecord("a", "four", 3));
+        Assert.assertEquals(dao.load("a"), new SomethingRecord("a", "four", 3));
+    }
+
+    @Test
+    public void recordsShouldKeepTheirCharacters() throws SQLException {
+        SomethingDao dao = new SomethingDao(H2Database.create());
+        // Outside the Basic Multilingual Plane, i.e. four bytes in UTF-8
+        SomethingRecord record = new SomethingRecord("caf\u00e9-\ud83d\ude00", "\ud83d\ude00 / \u00e9", 1);
+        dao.upsert(record);
+        Assert.assertEquals(dao.load(record.getSomething()), record);
+        Assert.assertEquals(SomethingDao.length(record), 10 + 9);
+    }
+
+    @Test
+    public void missingRecordsShouldLoadAsNull() throws SQLException {
+        SomethingDao dao = new SomethingDao(H2Database.create());
+        Assert.assertNull(dao.load("whatever"));
+        Assert.assertEquals(dao.upsert(Collections.emptyList()), 0);
+    }
+
+    @Test
+    public void largeBatchesShouldBeSplit() throws SQLException {
+        SomethingDao dao = new SomethingDao(H2Database.create());
+        String half = Strings.repeat("x", SomethingDao.MAX_STATEMENT_BYTES / 2);
+        List<SomethingRecord> records = Arrays.asList(new SomethingRecord("a", half, 1),
+            new SomethingRecord("b", "small", 1), new SomethingRecord("c", half, 1));
+        // a and b fit in one statement, c does not
+        Assert.assertEquals(dao.upsert(records), 2);
+        for (SomethingRecord record : records) {
+            Assert.assertEquals(dao.load(record.getSomething()), record);
+        }
+    }
+}
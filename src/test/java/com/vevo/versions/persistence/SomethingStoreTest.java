@@ -0,0 +1,256 @@
+package com.vevo.versions.persistence;
+
+import com.google.common.base.Strings;
+import org.h2.jdbcx.JdbcDataSource;
+
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class SomethingStoreTest {
+    // Long enough that nothing is flushed by time during a test
+    private static final long NEVER = TimeUnit.MINUTES.toMillis(10);
+
+    @Test
+    public void writesShouldBeReadBeforeTheyAreWritten() throws SQLException {
+        SomethingDao dao = new SomethingDao(H2Database.create());
+        SomethingStore store = new SomethingStore(dao, 100, 60, 100, 100, NEVER);
+        SomethingRecord record = store.write("whatever", "the body");
+        Assert.assertSame(store.read("whatever"), record);
+        Assert.assertNull(dao.load("whatever"));
+        Assert.assertEquals(store.getPendingCount(), 1);
+
+        store.shutdown();
+        Assert.assertEquals(dao.load("whatever"), record);
+        Assert.assertEquals(store.getWrittenCount(), 1);
+        Assert.assertEquals(store.getPendingCount(), 0);
+    }
+
+    @Test
+    public void writesShouldBeCoalescedAndBatched() throws SQLException {
+        SomethingDao dao = new SomethingDao(H2Database.create());
+        SomethingStore store = new SomethingStore(dao, 100, 60, 100, 100, NEVER);
+        for (int round = 0; round < 5; round++) {
+            for (int key = 0; key < 10; key++) {
+                store.write("key" + key, "round" + round);
+            }
+        }
+        store.shutdown();
+
+        Assert.assertEquals(store.getWrittenCount(), 10);
+        Assert.assertEquals(store.getCoalescedCount(), 40);
+        Assert.assertEquals(store.getStatementCount(), 1);
+        for (int key = 0; key < 10; key++) {
+            Assert.assertEquals(dao.load("key" + key).getValue(), "round4");
+        }
+    }
+
+    @Test
+    public void fullBatchesShouldBeWrittenWithoutWaiting() throws Exception {
+        SomethingDao dao = new SomethingDao(H2Database.create());
+        SomethingStore store = new SomethingStore(dao, 100, 60, 100, 2, NEVER);
+        store.write("a", "one");
+        store.write("b", "two");
+        for (int idx = 0; (idx < 100) && (store.getWrittenCount() < 2); idx++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(dao.load("b").getValue(), "two");
+        store.shutdown();
+    }
+
+    @Test
+    public void readsShouldBeCached() throws SQLException {
+        SomethingDao dao = new SomethingDao(H2Database.create());
+        dao.upsert(new SomethingRecord("stored", "the body", 1));
+        SomethingStore store = new SomethingStore(dao, 100, 60, 100, 100, NEVER);
+
+        Assert.assertEquals(store.read("stored").getValue(), "the body");
+        Assert.assertEquals(store.read("stored").getValue(), "the body");
+        // So are missing records
+        Assert.assertNull(store.read("missing"));
+        Assert.assertNull(store.read("missing"));
+        Assert.assertEquals(store.getCacheMissCount(), 2);
+        Assert.assertEquals(store.getCacheHitCount(), 2);
+        Assert.assertEquals(store.getCacheSize(), 2);
+
+        // Writes replace the cached record
+        store.write("missing", "now stored");
+        Assert.assertEquals(store.read("missing").getValue(), "now stored");
+        store.shutdown();
+    }
+
+    @Test
+    public void writesShouldBeRejectedWhenTheQueueStaysFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch writing = new CountDownLatch(1);
+        SomethingDao dao = new SomethingDao(H2Database.create()) {
+            @Override
+            public int upsert(List<SomethingRecord> records) throws SQLException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.upsert(records);
+            }
+        };
+        SomethingStore store = new SomethingStore(dao, 100, 60, 1, 1, 0);
+        store.write("a", "one");
+        Assert.assertTrue(writing.await(5, TimeUnit.SECONDS));
+        // "a" is being written, so the queue has room for one more key
+        store.write("b", "two");
+        store.write("b", "three");
+        Assert.assertEquals(store.getPendingCount(), 1);
+        try {
+            store.write("c", "four");
+            Assert.fail("Expected the write to be rejected");
+        } catch (RejectedExecutionException ex) {
+            Assert.assertEquals(store.getRejectedCount(), 1);
+        }
+        // The record being written is still read as written
+        Assert.assertEquals(store.read("a").getValue(), "one");
+
+        release.countDown();
+        store.shutdown();
+        Assert.assertEquals(dao.load("b").getValue(), "three");
+        Assert.assertNull(dao.load("c"));
+    }
+
+    @Test
+    public void failedWritesShouldBeRetried() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        SomethingDao dao = new SomethingDao(H2Database.create()) {
+            @Override
+            public int upsert(List<SomethingRecord> records) throws SQLException {
+                if (calls.incrementAndGet() == 1) {
+                    throw new SQLException("Connection refused");
+                }
+                return super.upsert(records);
+            }
+        };
+        SomethingStore store = new SomethingStore(dao, 100, 60, 100, 100, 0);
+        store.write("whatever", "the body");
+        for (int idx = 0; (idx < 500) && (store.getWrittenCount() == 0); idx++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(store.getFailedCount(), 1);
+        Assert.assertEquals(store.getWrittenCount(), 1);
+        Assert.assertEquals(dao.load("whatever").getValue(), "the body");
+        store.shutdown();
+    }
+
+    @Test(timeOut = 10000)
+    public void refusedRecordsShouldBeDeadLetteredWithoutHoldingUpTheOthers() throws Exception {
+        SomethingDao dao = new SomethingDao(H2Database.create()) {
+            @Override
+            public int upsert(List<SomethingRecord> records) throws SQLException {
+                for (SomethingRecord record : records) {
+                    if (record.getSomething().equals("poison")) {
+                        throw new SQLException("Data too long", "22001");
+                    }
+                }
+                return super.upsert(records);
+            }
+        };
+        SomethingStore store = new SomethingStore(dao, 100, 60, 100, 100, NEVER);
+        for (String key : new String[] {"a", "b", "poison", "c", "d"}) {
+            store.write(key, "the body");
+        }
+        // Flushed as one batch, which is split until the poison record is alone
+        store.write("e", "the body");
+        Assert.assertEquals(store.getPendingCount(), 6);
+        store.shutdown();
+        for (String key : new String[] {"a", "b", "c", "d", "e"}) {
+            Assert.assertEquals(dao.load(key).getValue(), "the body");
+        }
+        Assert.assertNull(dao.load("poison"));
+        Assert.assertEquals(store.getWrittenCount(), 5);
+    }
+
+    @Test(timeOut = 10000)
+    public void recordsRefusedRepeatedlyShouldBeDeadLettered() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        SomethingDao dao = new SomethingDao(H2Database.create()) {
+            @Override
+            public int upsert(List<SomethingRecord> records) throws SQLException {
+                if (records.get(0).getSomething().equals("poison")) {
+                    attempts.incrementAndGet();
+                    throw new SQLException("Data too long", "22001");
+                }
+                return super.upsert(records);
+            }
+        };
+        SomethingStore store = new SomethingStore(dao, 100, 60, 100, 1, 0);
+        store.write("poison", "the body");
+        for (int idx = 0; (idx < 500) && (store.getDeadLetteredCount() == 0); idx++) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(store.getDeadLetteredCount(), 1);
+        Assert.assertEquals(attempts.get(), WriteBehindQueue.MAX_ATTEMPTS);
+        Assert.assertEquals(store.getPendingCount(), 0);
+
+        // The others are still written
+        store.write("whatever", "the body");
+        store.shutdown();
+        Assert.assertEquals(dao.load("whatever").getValue(), "the body");
+    }
+
+    @Test
+    public void connectionErrorsShouldBeTransient() {
+        Assert.assertTrue(WriteBehindQueue.isTransient(new SQLTransientConnectionException("Timed out")));
+        Assert.assertTrue(WriteBehindQueue.isTransient(new SQLException("Communications link failure", "08S01")));
+        Assert.assertTrue(WriteBehindQueue.isTransient(new SQLException("Deadlock found", "40001")));
+        // i.e. wrapped by a pool
+        Assert.assertTrue(WriteBehindQueue.isTransient(new IllegalStateException(new SQLRecoverableException())));
+        Assert.assertFalse(WriteBehindQueue.isTransient(new SQLException("Data too long", "22001")));
+        Assert.assertFalse(WriteBehindQueue.isTransient(new IllegalStateException("Bug")));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void valuesTooLongToStoreInBytesShouldBeRefused() throws SQLException {
+        SomethingStore store = new SomethingStore(new SomethingDao(H2Database.create()), 100, 60, 100, 100, NEVER);
+        try {
+            // Fewer characters than the limit, but two bytes each
+            store.write("whatever", Strings.repeat("\u00e9", (SomethingStore.MAX_VALUE_BYTES / 2) + 1));
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void recordsTooLongToStoreShouldBeRefused() throws SQLException {
+        SomethingStore store = new SomethingStore(new SomethingDao(H2Database.create()), 100, 60, 100, 100, NEVER);
+        try {
+            store.write(Strings.repeat("x", SomethingStore.MAX_KEY_LENGTH + 1), "the body");
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, expectedExceptionsMessageRegExp = ".*changelog.*")
+    public void storeWithoutItsTableShouldFailToStart() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:versions-no-schema;MODE=MySQL");
+        new SomethingStore(new SomethingDao(dataSource), 100, 60, 100, 100, NEVER);
+    }
+
+    @Test
+    public void disabledStoreShouldStoreNothing() {
+        SomethingStore store = new SomethingStore(null, 0, 1, 0, 1, 0);
+        Assert.assertFalse(store.isEnabled());
+        store.write("whatever", "the body");
+        Assert.assertNull(store.read("whatever"));
+        Assert.assertEquals(store.getPendingCount(), 0);
+        store.shutdown();
+    }
+}
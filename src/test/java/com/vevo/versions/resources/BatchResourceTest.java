@@ -0,0 +1,109 @@
+package com.vevo.versions.resources;
+
+import com.google.common.net.HttpHeaders;
+import com.mashape.unirest.http.HttpResponse;
+import com.mashape.unirest.http.Unirest;
+import com.vevo.genesis.Genesis;
+import com.vevo.genesis.IntegrationTest;
+import com.vevo.versions.Config;
+import com.vevo.versions.VersionsIntegrationTest;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+
+public class BatchResourceTest extends VersionsIntegrationTest {
+    private static final String BATCH_PATH = "/foo/batch";
+
+    private Config config;
+
+    @BeforeClass(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void beforeClass() {
+        Genesis genesis = verifyStarted();
+        config = genesis.getLocator().get(Config.class);
+    }
+
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void batchShouldReturnResultsInOrder() throws Exception {
+        HttpResponse<String> result = Unirest.post(config.getUri() + BATCH_PATH)
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+            .body("[{\"version\":1,\"something\":\"a\"},"
+                + "{\"version\":2,\"something\":\"b\",\"body\":\"the body\"},"
+                + "{\"version\":9,\"something\":\"c\"}]")
+            .asObject(String.class);
+        String expected = "[{\"status\":200,\"value\":\"V1: a\"},"
+            + "{\"status\":200,\"value\":{\"value\":\"V2: b / the body\"}},"
+            + "{\"status\":406,\"error\":\"Unsupported version: 9\"}]";
+        Assert.assertEquals(result.getStatus(), Response.Status.OK.getStatusCode(),"Expected OK response!");
+        Assert.assertEquals(result.getBody(), expected, "Expected '" + expected + "'!");
+    }
+
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void invalidItemsShouldReturnTheirViolations() throws Exception {
+        HttpResponse<String> result = Unirest.post(config.getUri() + BATCH_PATH)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+            .body("[{\"version\":2,\"something\":\"a\",\"body\":\"[1, 2]\"},{\"version\":1}]")
+            .asObject(String.class);
+        Assert.assertEquals(result.getStatus(), Response.Status.OK.getStatusCode(),"Expected OK response!");
+        Assert.assertTrue(result.getBody().startsWith("[{\"status\":400,\"error\":\"Bad Request\",\"detail\":{"),
+            "Unexpected body: " + result.getBody());
+        Assert.assertTrue(result.getBody().endsWith("{\"status\":400,\"error\":\"Missing something\"}]"),
+            "Unexpected body: " + result.getBody());
+    }
+
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void emptyBatchShouldReturn400() throws Exception {
+        HttpResponse<String> result = Unirest.post(config.getUri() + BATCH_PATH)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+            .body("[]")
+            .asObject(String.class);
+        Assert.assertEquals(result.getStatus(), Response.Status.BAD_REQUEST.getStatusCode(),"Expected 400 response!");
+    }
+
+    @Test(timeOut = 10000)
+    @SuppressWarnings("unchecked")
+    public void earlyResultsShouldBeWrittenBeforeSlowItemsComplete() throws Exception {
+        CompletableFuture<BatchResource.BatchResult> slow = new CompletableFuture<>();
+        CompletableFuture<BatchResource.BatchResult>[] results = new CompletableFuture[] {
+            CompletableFuture.completedFuture(BatchResource.BatchResult.ok("a")),
+            slow,
+            CompletableFuture.completedFuture(BatchResource.BatchResult.ok("c"))};
+        // What the client has been sent, at every flush
+        BlockingQueue<String> flushed = new LinkedBlockingQueue<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushed.add(toString());
+            }
+        };
+        AtomicBoolean completed = new AtomicBoolean();
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                BatchResource.writeResults(results, out, () -> completed.set(true));
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+
+        String first = "[{\"status\":200,\"value\":\"a\"}";
+        while (!flushed.take().equals(first)) {
+            // Flushed part way through the first result
+        }
+        Assert.assertFalse(writer.isDone(), "Expected the writer to wait for the slow item!");
+        Assert.assertFalse(completed.get(), "Expected the batch to be incomplete!");
+
+        slow.complete(BatchResource.BatchResult.error(Response.Status.SERVICE_UNAVAILABLE, "Timed out"));
+        writer.join();
+        Assert.assertTrue(completed.get(), "Expected the batch to be complete!");
+        Assert.assertEquals(out.toString(), "[{\"status\":200,\"value\":\"a\"},"
+            + "{\"status\":503,\"error\":\"Timed out\"},{\"status\":200,\"value\":\"c\"}]");
+    }
+}
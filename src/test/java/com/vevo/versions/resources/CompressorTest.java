@@ -0,0 +1,117 @@
+package com.vevo.versions.resources;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class CompressorTest {
+    private static final byte[] BYTES =
+        String.join(",", Collections.nCopies(200, "{\"value\":\"V2: whatever\"}")).getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void compressedBytesShouldRoundTrip() throws IOException {
+        Compressor compressor = new Compressor(6, 16);
+        // Twice, so the second time uses pooled deflaters
+        for (int idx = 0; idx < 2; idx++) {
+            byte[] gzipped = compressor.compress(BYTES, ContentEncoding.GZIP);
+            Assert.assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(gzipped))), BYTES);
+            byte[] deflated = compressor.compress(BYTES, ContentEncoding.DEFLATE);
+            Assert.assertEquals(inflate(new InflaterInputStream(new ByteArrayInputStream(deflated))), BYTES);
+            Assert.assertTrue(deflated.length < BYTES.length / 10);
+        }
+        Assert.assertEquals(compressor.getBytesIn(), 4L * BYTES.length);
+        Assert.assertTrue(compressor.getBytesOut() < compressor.getBytesIn());
+    }
+
+    @Test
+    public void encodingShouldBeNegotiated() {
+        Assert.assertNull(ContentEncoding.negotiate(null));
+        Assert.assertNull(ContentEncoding.negotiate("identity"));
+        Assert.assertNull(ContentEncoding.negotiate("gzip;q=0, deflate;q=0"));
+        Assert.assertEquals(ContentEncoding.negotiate("gzip, deflate, br"), ContentEncoding.GZIP);
+        Assert.assertEquals(ContentEncoding.negotiate("deflate, gzip"), ContentEncoding.GZIP);
+        Assert.assertEquals(ContentEncoding.negotiate("gzip;q=0.5, deflate"), ContentEncoding.DEFLATE);
+        Assert.assertEquals(ContentEncoding.negotiate("DEFLATE"), ContentEncoding.DEFLATE);
+        Assert.assertEquals(ContentEncoding.negotiate("*"), ContentEncoding.GZIP);
+        Assert.assertEquals(ContentEncoding.negotiate("gzip;q=0, *"), ContentEncoding.DEFLATE);
+        Assert.assertEquals(ContentEncoding.negotiate("gzip;q=oops, deflate;q=0.1"), ContentEncoding.DEFLATE);
+    }
+
+    @Test
+    public void smallResponsesShouldNotBeCompressed() throws IOException {
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompressingOutputStream compressing =
+            new CompressingOutputStream(out, headers, ContentEncoding.GZIP, new Compressor(6, 1024));
+        compressing.write(BYTES, 0, 100);
+        compressing.flush();
+        Assert.assertEquals(out.size(), 0);
+        compressing.finish();
+
+        Assert.assertFalse(compressing.isCompressed());
+        Assert.assertNull(headers.getFirst("Content-Encoding"));
+        Assert.assertEquals(out.size(), 100);
+    }
+
+    @Test
+    public void largeResponsesShouldBeCompressed() throws IOException {
+        MultivaluedMap<String, Object> headers = new MultivaluedHashMap<>();
+        headers.putSingle("Content-Length", BYTES.length);
+        headers.putSingle("ETag", "\"tag\"");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompressingOutputStream compressing =
+            new CompressingOutputStream(out, headers, ContentEncoding.GZIP, new Compressor(6, 1024));
+        for (byte value : BYTES) {
+            compressing.write(value);
+        }
+        compressing.finish();
+
+        Assert.assertTrue(compressing.isCompressed());
+        Assert.assertEquals(headers.getFirst("Content-Encoding"), "gzip");
+        Assert.assertNull(headers.getFirst("Content-Length"));
+        // The ETag of the uncompressed bytes no longer matches them byte for byte
+        Assert.assertEquals(headers.getFirst("ETag"), "W/\"tag\"");
+        Assert.assertEquals(inflate(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))), BYTES);
+    }
+
+    @Test
+    public void failedResponsesShouldReturnTheirDeflater() throws IOException {
+        Compressor compressor = new Compressor(6, 16);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompressingOutputStream compressing =
+            new CompressingOutputStream(out, new MultivaluedHashMap<>(), ContentEncoding.GZIP, compressor);
+        compressing.write(BYTES, 0, BYTES.length);
+        compressing.abort();
+        compressing.abort();
+
+        // Returned (counted), and the truncated response has no trailer
+        Assert.assertEquals(compressor.getBytesIn(), BYTES.length);
+        try {
+            inflate(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+            Assert.fail("Aborted response should be truncated!");
+        } catch (EOFException ex) {
+            // Expected
+        }
+    }
+
+    private static byte[] inflate(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return ByteStreams.toByteArray(stream);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.vevo.versions.resources;
+
+import com.vevo.versions.metrics.Endpoint;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+
+public class DispatchTableTest {
+    private final DispatchTable table = new DispatchTable(VersionRegistry.getDefault(), "application/json",
+        version -> "type-v" + version, (endpoint, version) -> (endpoint == Endpoint.HEADER_GET) ? 100 * version : 50,
+        true);
+
+    @Test
+    public void routesShouldResolveEachEndpointAndVersion() {
+        DispatchTable.Route route = table.get(Endpoint.PATH_POST, 2);
+        Assert.assertSame(route.getEndpoint(), Endpoint.PATH_POST);
+        Assert.assertSame(route.getVersionContext(), VersionContext.V2);
+        Assert.assertEquals(route.getMediaType(), "application/json");
+        Assert.assertEquals(route.getTimeoutMillis(), 50);
+
+        route = table.get(Endpoint.HEADER_GET, 1);
+        Assert.assertSame(route.getEndpoint(), Endpoint.HEADER_GET);
+        Assert.assertSame(route.getVersionContext(), VersionContext.V1);
+        Assert.assertEquals(route.getMediaType(), "type-v1");
+        Assert.assertEquals(route.getTimeoutMillis(), 100);
+    }
+
+    @Test
+    public void onlyNonBlockingRoutesShouldStartInline() {
+        Assert.assertTrue(table.get(Endpoint.PATH_GET, 1).isInline());
+        DispatchTable blocking = new DispatchTable(
+            VersionRegistry.builder().add(new VersionContext.Version1Context() {
+                @Override
+                public boolean isNonBlocking() {
+                    return false;
+                }
+            }).build(), "application/json", version -> "type-v" + version, (endpoint, version) -> 50, true);
+        Assert.assertFalse(blocking.get(Endpoint.PATH_GET, 1).isInline());
+        DispatchTable disabled = new DispatchTable(VersionRegistry.getDefault(), "application/json",
+            version -> "type-v" + version, (endpoint, version) -> 50, false);
+        Assert.assertFalse(disabled.get(Endpoint.PATH_GET, 1).isInline());
+    }
+
+    @Test
+    public void routesShouldMoveOffAndBackInlineWithTheirRunTimes() {
+        long budget = TimeUnit.MILLISECONDS.toNanos(1);
+        DispatchTable.Route route = table.get(Endpoint.PATH_GET, 1);
+        // The first runs are not trusted, however slow (but within the timeout)
+        Assert.assertFalse(route.recordRun(TimeUnit.MILLISECONDS.toNanos(40), budget));
+        for (int idx = 0; idx < 100; idx++) {
+            Assert.assertFalse(route.recordRun(TimeUnit.MICROSECONDS.toNanos(10), budget));
+        }
+        // One slow run does not move the average over the budget...
+        Assert.assertFalse(route.recordRun(TimeUnit.MILLISECONDS.toNanos(5), budget));
+        Assert.assertTrue(route.isInline());
+        // ...but a few do
+        int runs = 0;
+        while (!route.recordRun(TimeUnit.MILLISECONDS.toNanos(5), budget)) {
+            Assert.assertTrue(++runs < 100, "Expected the route to move!");
+        }
+        Assert.assertFalse(route.isInline());
+        Assert.assertFalse(route.recordRun(TimeUnit.MILLISECONDS.toNanos(5), budget), "Only moved once!");
+        // Back inline once fast again
+        runs = 0;
+        while (!route.recordRun(TimeUnit.MICROSECONDS.toNanos(10), budget)) {
+            Assert.assertTrue(++runs < 100, "Expected the route to move back!");
+        }
+        Assert.assertTrue(route.isInline());
+        Assert.assertTrue(route.getAverageNanos() <= budget / 2);
+
+        // A run longer than the route's timeout (50ms) moves it straight away
+        route = table.get(Endpoint.PATH_POST, 1);
+        Assert.assertTrue(route.recordRun(TimeUnit.MILLISECONDS.toNanos(51), TimeUnit.SECONDS.toNanos(1)));
+        Assert.assertFalse(route.isInline());
+    }
+
+    @Test
+    public void routesWhichMayNotBeInlineShouldNeverBe() {
+        DispatchTable.Route route = new DispatchTable(VersionRegistry.getDefault(), "application/json",
+            version -> "type-v" + version, (endpoint, version) -> 50, false).get(Endpoint.PATH_GET, 1);
+        for (int idx = 0; idx < 100; idx++) {
+            Assert.assertFalse(route.recordRun(0, TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        Assert.assertFalse(route.isInline());
+    }
+
+    @Test
+    public void unknownRoutesShouldBeNull() {
+        Assert.assertNull(table.get(Endpoint.PATH_GET, 0));
+        Assert.assertNull(table.get(Endpoint.PATH_GET, 3));
+        Assert.assertNull(table.get(Endpoint.PATH_GET, -1));
+        Assert.assertNull(table.get(Endpoint.BATCH, 1));
+    }
+
+    @Test
+    public void pathVersionsShouldParse() {
+        Assert.assertEquals(DispatchTable.parsePathVersion("v2"), 2);
+        Assert.assertEquals(DispatchTable.parsePathVersion("V12"), 12);
+        Assert.assertEquals(DispatchTable.parsePathVersion("v"), -1);
+        Assert.assertEquals(DispatchTable.parsePathVersion("2"), -1);
+        Assert.assertEquals(DispatchTable.parsePathVersion("v2x"), -1);
+        Assert.assertEquals(DispatchTable.parsePathVersion("v12345678901"), -1);
+    }
+}
@@ -0,0 +1,50 @@
+package com.vevo.versions.resources;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class NdjsonReaderTest {
+
+    private static NdjsonReader reader(String content, int maxRecordBytes) {
+        return new NdjsonReader(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)), maxRecordBytes);
+    }
+
+    @Test
+    public void recordsShouldBeReadOneAtATime() throws Exception {
+        NdjsonReader records = reader("{\"a\":1}\r\n\n\"\u00e9\"\nlast", 16);
+        Assert.assertEquals(records.next(), "{\"a\":1}");
+        Assert.assertEquals(records.next(), "\"\u00e9\"");
+        Assert.assertEquals(records.next(), "last");
+        Assert.assertNull(records.next());
+    }
+
+    @Test
+    public void crlfOnlyLinesShouldBeSkipped() throws Exception {
+        Assert.assertNull(reader("\r\n\r\n", 16).next());
+        Assert.assertNull(reader("\r", 16).next());
+        NdjsonReader records = reader("\r\n1\r\n\r\n2", 16);
+        Assert.assertEquals(records.next(), "1");
+        Assert.assertEquals(records.next(), "2");
+        Assert.assertNull(records.next());
+    }
+
+    @Test
+    public void recordsShouldGrowPastTheInitialSize() throws Exception {
+        StringBuilder longRecord = new StringBuilder();
+        for (int idx = 0; idx < 1000; idx++) {
+            longRecord.append('x');
+        }
+        NdjsonReader records = reader(longRecord + "\n", 1000);
+        Assert.assertEquals(records.next(), longRecord.toString());
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void oversizedRecordsShouldFail() throws Exception {
+        reader("0123456789\n", 4).next();
+    }
+}
@@ -0,0 +1,43 @@
+package com.vevo.versions.resources;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class RequestCoalescerTest {
+    private static final ResponseCache.Key KEY = new ResponseCache.Key(2, "whatever", "application/json");
+
+    @Test
+    public void concurrentRequestsShouldShareTheLeadersFuture() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<ResponseCache.Entry> leader = new CompletableFuture<>();
+        Assert.assertNull(coalescer.join(KEY, leader));
+        Assert.assertSame(coalescer.join(KEY, new CompletableFuture<>()), leader);
+        Assert.assertSame(coalescer.join(new ResponseCache.Key(2, "whatever", "application/json"),
+            new CompletableFuture<>()), leader);
+        Assert.assertEquals(coalescer.getCollapsedCount(), 2);
+        Assert.assertEquals(coalescer.getInFlightCount(), 1);
+
+        // Other versions are not collapsed
+        Assert.assertNull(coalescer.join(new ResponseCache.Key(1, "whatever", "application/json"),
+            new CompletableFuture<>()));
+        Assert.assertEquals(coalescer.getInFlightCount(), 2);
+    }
+
+    @Test
+    public void completedRequestsShouldBeRemoved() {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CompletableFuture<ResponseCache.Entry> leader = new CompletableFuture<>();
+        Assert.assertNull(coalescer.join(KEY, leader));
+        leader.completeExceptionally(new IllegalStateException());
+        Assert.assertEquals(coalescer.getInFlightCount(), 0);
+
+        CompletableFuture<ResponseCache.Entry> next = new CompletableFuture<>();
+        Assert.assertNull(coalescer.join(KEY, next));
+        next.complete(null);
+        Assert.assertEquals(coalescer.getInFlightCount(), 0);
+        Assert.assertEquals(coalescer.getCollapsedCount(), 0);
+    }
+}
@@ -0,0 +1,235 @@
+package com.vevo.versions.resources;
+
+import com.vevo.versions.concurrent.AdaptiveLimiter;
+import com.vevo.versions.concurrent.RequestExecutor;
+import com.vevo.versions.metrics.Endpoint;
+import com.vevo.versions.metrics.RequestMetrics;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import javax.ws.rs.core.Response;
+
+
+public class RequestDispatcherTest {
+    private static final long TIMEOUT_MILLIS = 50;
+    private static final long BUDGET_MILLIS = 1;
+
+    private final RequestMetrics metrics = new RequestMetrics(Integer.MAX_VALUE);
+    private final AtomicInteger dropped = new AtomicInteger();
+    private RequestExecutor executor;
+    private AdaptiveLimiter limiter;
+    private RequestDispatcher dispatcher;
+
+    @BeforeClass
+    public void beforeClass() {
+        // Loads the JAX-RS runtime, whose first use takes longer than the timeouts here
+        Response.ok().build();
+    }
+
+    @BeforeMethod
+    public void beforeMethod() {
+        executor = new RequestExecutor(2, 10);
+        limiter = new AdaptiveLimiter(10, 1, 10, 60000);
+        dispatcher = new RequestDispatcher(executor, limiter, BUDGET_MILLIS);
+        dropped.set(0);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        dispatcher.shutdown();
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the PATH_GET route of a context which is (or is not) non-blocking.
+     */
+    private static DispatchTable.Route route(boolean nonBlocking) {
+        VersionContext context = new VersionContext() {
+            @Override
+            public Object doSomeVersionSpecificWork(String path, String body) {
+                return path;
+            }
+
+            @Override
+            public boolean isNonBlocking() {
+                return nonBlocking;
+            }
+
+            @Override
+            public int getVersion() {
+                return 1;
+            }
+        };
+        return new DispatchTable(VersionRegistry.builder().add(context).build(), "application/json",
+            version -> "type-v" + version, (endpoint, version) -> TIMEOUT_MILLIS, true).get(Endpoint.PATH_GET, 1);
+    }
+
+    private CompletableFuture<Response> submit(DispatchTable.Route route, Supplier<Response> work) {
+        return dispatcher.submit(route, metrics.start(route.getEndpoint(), 1), work, dropped::incrementAndGet);
+    }
+
+    private static Supplier<Response> sleeping(long millis) {
+        return () -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return Response.ok("slept").build();
+        };
+    }
+
+    private static int status(CompletableFuture<Response> result) throws Exception {
+        return result.get(5, TimeUnit.SECONDS).getStatus();
+    }
+
+    /**
+     * Returns work which records the thread it ran on.
+     */
+    private static Supplier<Response> recordingThread(AtomicReference<Thread> thread) {
+        return () -> {
+            thread.set(Thread.currentThread());
+            return Response.ok().build();
+        };
+    }
+
+    @Test
+    public void nonBlockingWorkShouldRunInlineUnderTheLimiter() throws Exception {
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        CompletableFuture<Response> result = submit(route(true), recordingThread(thread));
+        Assert.assertTrue(result.isDone(), "Expected the work to run inline!");
+        Assert.assertEquals(status(result), 200);
+        Assert.assertSame(thread.get(), Thread.currentThread());
+        Assert.assertEquals(limiter.getInFlight(), 0);
+
+        // Admitted like any other request
+        while (limiter.tryAcquire()) {
+            // use the whole limit
+        }
+        thread.set(null);
+        Assert.assertEquals(status(submit(route(true), recordingThread(thread))), 503);
+        Assert.assertNull(thread.get());
+    }
+
+    @Test
+    public void blockingWorkShouldRunOnTheExecutor() throws Exception {
+        AtomicReference<Thread> thread = new AtomicReference<>();
+        Assert.assertEquals(status(submit(route(false), recordingThread(thread))), 200);
+        Assert.assertTrue(thread.get().getName().startsWith(RequestExecutor.THREAD_NAME_PREFIX),
+            "Unexpected thread: " + thread.get().getName());
+        Assert.assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test
+    public void builtInContextsShouldRunInline() throws Exception {
+        DispatchTable table = new DispatchTable(VersionRegistry.getDefault(), "application/json",
+            version -> "type-v" + version, (endpoint, version) -> TIMEOUT_MILLIS, true);
+        for (VersionContext context : VersionRegistry.getDefault().getSupported()) {
+            DispatchTable.Route route = table.get(Endpoint.PATH_GET, context.getVersion());
+            Assert.assertTrue(route.isInline(), "Expected v" + context.getVersion() + " to run inline!");
+            AtomicReference<Thread> thread = new AtomicReference<>();
+            CompletableFuture<Response> result = submit(route, () -> {
+                thread.set(Thread.currentThread());
+                return Response.ok(context.doSomeVersionSpecificWork("whatever", null)).build();
+            });
+            Assert.assertTrue(result.isDone());
+            Assert.assertSame(thread.get(), Thread.currentThread());
+        }
+    }
+
+    @Test(timeOut = 5000)
+    public void slowBlockingWorkShouldTimeOutWith503() throws Exception {
+        CompletableFuture<Response> result = submit(route(false), sleeping(TimeUnit.SECONDS.toMillis(10)));
+        Assert.assertEquals(status(result), Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+        Assert.assertEquals(dropped.get(), 1);
+        Assert.assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test(timeOut = 5000)
+    public void slowInlineWorkShouldGet503AndMoveToTheExecutor() throws Exception {
+        DispatchTable.Route route = route(true);
+        CompletableFuture<Response> result = submit(route, sleeping(TIMEOUT_MILLIS * 2));
+        Assert.assertTrue(result.isDone(), "Expected the work to run inline!");
+        Assert.assertEquals(status(result), Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+        Assert.assertFalse(route.isInline());
+        Assert.assertTrue(limiter.getLimit() < 10, "Expected the overrun to shrink the limit!");
+
+        // Now on the executor, so the work is timed out rather than waited for
+        long start = System.nanoTime();
+        result = submit(route, sleeping(TimeUnit.SECONDS.toMillis(10)));
+        Assert.assertFalse(result.isDone());
+        Assert.assertEquals(status(result), Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        Assert.assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test
+    public void inlineWorkOverTheBudgetShouldMoveToTheExecutor() throws Exception {
+        DispatchTable.Route route = route(true);
+        int runs = 0;
+        while ((runs < 100) && route.isInline()) {
+            Assert.assertTrue(submit(route, sleeping(BUDGET_MILLIS * 5)).isDone(), "Expected the work to run inline!");
+            runs++;
+        }
+        Assert.assertFalse(route.isInline());
+        Assert.assertTrue(runs > 1, "Expected one slow run not to move the route!");
+    }
+
+    @Test
+    public void shedRequestsShouldGet503() throws Exception {
+        dispatcher.shutdown();
+        limiter = new AdaptiveLimiter(1, 1, 1, 60000);
+        dispatcher = new RequestDispatcher(executor, limiter, BUDGET_MILLIS);
+        Assert.assertTrue(limiter.tryAcquire());
+        AtomicInteger runs = new AtomicInteger();
+        for (boolean nonBlocking : new boolean[] {true, false}) {
+            CompletableFuture<Response> result = submit(route(nonBlocking), () -> {
+                runs.incrementAndGet();
+                return Response.ok().build();
+            });
+            Assert.assertEquals(status(result), Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                "Expected a 503 (nonBlocking=" + nonBlocking + ")!");
+        }
+        Assert.assertEquals(runs.get(), 0);
+        Assert.assertEquals(dropped.get(), 2);
+    }
+
+    @Test(timeOut = 5000)
+    public void timeoutsShouldCompleteOffTheTimerThread() throws Exception {
+        CompletableFuture<Response> result = submit(route(false), sleeping(TimeUnit.SECONDS.toMillis(10)));
+        String completedOn = result.thenApply(output -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(status(result), Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+        Assert.assertTrue(completedOn.startsWith(RequestDispatcher.COMPLETION_THREAD_NAME_PREFIX),
+            "Completed on " + completedOn);
+    }
+
+    @Test(timeOut = 5000)
+    public void cancelledRequestsShouldInterruptTheWork() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        CompletableFuture<Response> result = submit(route(false), () -> {
+            started.countDown();
+            try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                interrupted.countDown();
+            }
+            return Response.ok().build();
+        });
+        Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+        result.cancel(true);
+        Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(dropped.get(), 1);
+        Assert.assertEquals(limiter.getInFlight(), 0);
+    }
+}
@@ -0,0 +1,77 @@
+package com.vevo.versions.resources;
+
+import java.util.List;
+
+import javax.ws.rs.core.Response;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class RequestValidatorTest {
+
+    @Test
+    public void plainTextBodiesShouldBeValid() {
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V1, "the body").isEmpty());
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V2, "the body").isEmpty());
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V2, "\"quoted\"").isEmpty());
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V2, "").isEmpty());
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V2, null).isEmpty());
+    }
+
+    @Test
+    public void v1ShouldAcceptAnyObject() {
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V1, "{\"anything\":[1, 2]}").isEmpty());
+        Assert.assertFalse(RequestValidator.validate(VersionContext.V1, "[1, 2]").isEmpty());
+    }
+
+    @Test
+    public void v1ShouldAcceptPlainTextWhichStartsLikeJson() {
+        // Legacy bodies, accepted before bodies were validated
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V1, "42 apples").isEmpty());
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V1, "123").isEmpty());
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V1, "true").isEmpty());
+        Assert.assertEquals(RequestValidator.parse("42 apples").asText(), "42 apples");
+        Assert.assertTrue(RequestValidator.parse(" {\"a\":1} ").isObject());
+    }
+
+    @Test
+    public void malformedJsonShouldNotBeValid() {
+        for (String body : new String[] {"{\"value\": ", "{\"value\":\"x\"} [", "[1, 2", "{} and more"}) {
+            Assert.assertTrue(RequestValidator.parse(body).isMissingNode(), body);
+            for (VersionContext context : new VersionContext[] {VersionContext.V1, VersionContext.V2}) {
+                List<RequestValidator.Violation> violations = RequestValidator.validate(context, body);
+                Assert.assertEquals(violations.size(), 1, body);
+                Assert.assertEquals(violations.get(0).getPointer(), "");
+            }
+        }
+    }
+
+    @Test
+    public void v2ShouldOnlyAcceptAStringValue() {
+        Assert.assertTrue(RequestValidator.validate(VersionContext.V2, "{\"value\":\"x\"}").isEmpty());
+
+        List<RequestValidator.Violation> violations =
+            RequestValidator.validate(VersionContext.V2, "{\"value\":1}");
+        Assert.assertEquals(violations.size(), 1);
+        Assert.assertEquals(violations.get(0).getPointer(), "/value");
+
+        Assert.assertFalse(RequestValidator.validate(VersionContext.V2, "{}").isEmpty());
+        Assert.assertFalse(RequestValidator.validate(VersionContext.V2, "{\"value\":\"x\",\"other\":1}").isEmpty());
+    }
+
+    @Test
+    public void unsupportedVersionsShouldNotValidate() {
+        Assert.assertTrue(RequestValidator.validate(VersionContext.UNSUPPORTED, "42").isEmpty());
+    }
+
+    @Test
+    public void badRequestShouldListTheViolations() {
+        Response response =
+            RequestValidator.badRequest(2, RequestValidator.validate(VersionContext.V2, "{\"value\":1}"));
+        Assert.assertEquals(response.getStatus(), 400);
+        String body = new String((byte[]) response.getEntity());
+        Assert.assertTrue(body.startsWith("{\"status\":400,\"error\":\"Invalid request body\",\"version\":2,"
+            + "\"violations\":[{\"pointer\":\"/value\",\"message\":"), body);
+    }
+}
@@ -0,0 +1,65 @@
+package com.vevo.versions.resources;
+
+import com.vevo.versions.Config;
+import com.vevo.versions.concurrent.AdaptiveLimiter;
+import com.vevo.versions.concurrent.RequestExecutor;
+import com.vevo.versions.events.UsagePipeline;
+import com.vevo.versions.metrics.Endpoint;
+import com.vevo.versions.metrics.RequestMetrics;
+import com.vevo.versions.persistence.SomethingStore;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+
+public class ResourceWarmUpTest {
+    private static final int CACHE_SIZE_THRESHOLD = 2048;
+
+    private RequestExecutor executor;
+    private AdaptiveLimiter limiter;
+    private RequestDispatcher dispatcher;
+    private ResponseCache responseCache;
+    private Compressor compressor;
+    private VersionsResource resource;
+    private ResourceWarmUp warmUp;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        executor = new RequestExecutor(2, 100);
+        limiter = new AdaptiveLimiter(100, 1, 100, 60000);
+        Config config = new Config();
+        dispatcher = new RequestDispatcher(executor, limiter, config.getInlineBudgetMillis());
+        compressor = new Compressor(6, 1024);
+        responseCache = new ResponseCache(Integer.MAX_VALUE, CACHE_SIZE_THRESHOLD, 1024 * 1024, 60, compressor);
+        RequestMetrics metrics = new RequestMetrics(Integer.MAX_VALUE);
+        // Usage recording and persistence disabled (the defaults)
+        resource = new VersionsResource(dispatcher, limiter, responseCache, new RequestCoalescer(), metrics,
+            new UsagePipeline(null, 0, 0, 0), new SomethingStore(null, 0, 1, 0, 1, 0),
+            new VersionNegotiator(metrics.getRegistry()), config);
+        warmUp = new ResourceWarmUp(
+            resource, dispatcher, metrics, compressor, new SomethingStore(null, 0, 1, 0, 1, 0), CACHE_SIZE_THRESHOLD);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        dispatcher.shutdown();
+        executor.shutdown();
+    }
+
+    @Test(timeOut = 10000)
+    public void warmUpShouldRunRequestsThroughTheCacheAndCompression() {
+        warmUp.run(2);
+
+        // The large GET of every version and media type was cached, and hit in the second iteration
+        Assert.assertEquals(responseCache.getSize(), 2 * VersionRegistry.getDefault().getSupported().size());
+        Assert.assertTrue(responseCache.getHitCount() > 0, "Expected cache hits!");
+        Assert.assertTrue(compressor.getBytesIn() > 0, "Expected compressed responses!");
+        Assert.assertEquals(limiter.getInFlight(), 0);
+        for (VersionContext context : VersionRegistry.getDefault().getSupported()) {
+            Assert.assertTrue(resource.route(Endpoint.PATH_GET, context.getVersion()).isInline(),
+                "Expected v" + context.getVersion() + " to stay inline!");
+        }
+    }
+}
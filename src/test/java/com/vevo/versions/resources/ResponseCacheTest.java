@@ -0,0 +1,93 @@
+package com.vevo.versions.resources;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import javax.ws.rs.core.Response;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class ResponseCacheTest {
+    private static final ResponseCache.Key KEY = new ResponseCache.Key(2, "whatever", "application/json");
+
+    @Test
+    public void smallFastResponsesShouldNotBeAdmitted() {
+        ResponseCache cache = new ResponseCache(1000, 1000, 1024 * 1024, 60);
+        ResponseCache.Entry entry = cache.render(KEY, () -> "V1: whatever");
+        Assert.assertEquals(new String(entry.getBytes()), "V1: whatever");
+        Assert.assertNull(cache.get(KEY));
+    }
+
+    @Test
+    public void largeResponsesShouldBeAdmitted() {
+        ResponseCache cache = new ResponseCache(1000, 10, 1024 * 1024, 60);
+        AtomicInteger calls = new AtomicInteger();
+        ResponseCache.Entry entry = cache.render(KEY, () -> {
+            calls.incrementAndGet();
+            return Collections.singletonMap("value", "V2: whatever");
+        });
+        Assert.assertEquals(new String(entry.getBytes()), "{\"value\":\"V2: whatever\"}");
+        Assert.assertSame(cache.get(KEY), entry);
+        Assert.assertSame(cache.get(new ResponseCache.Key(2, "whatever", "application/json")), entry);
+        Assert.assertNull(cache.get(new ResponseCache.Key(1, "whatever", "application/json")));
+        Assert.assertEquals(calls.get(), 1);
+        Assert.assertEquals(cache.getHitCount(), 2);
+        Assert.assertEquals(cache.getMissCount(), 1);
+    }
+
+    @Test
+    public void matchingEtagShouldReturnNotModified() {
+        ResponseCache.Entry entry = new ResponseCache(0, 0, 1024, 60).render(KEY, () -> "V1: whatever");
+        Assert.assertTrue(entry.getEtag().startsWith("\""));
+
+        Response notModified = entry.toResponse("\"other\", " + entry.getEtag(), null);
+        Assert.assertEquals(notModified.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode());
+        Assert.assertEquals(notModified.getHeaderString("ETag"), entry.getEtag());
+
+        Response ok = entry.toResponse("\"other\"", "gzip");
+        Assert.assertEquals(ok.getStatus(), Response.Status.OK.getStatusCode());
+        Assert.assertEquals(ok.getHeaderString("Vary"), "Accept, Accept-Encoding");
+        Assert.assertSame(ok.getEntity(), entry.getBytes());
+    }
+
+    @Test
+    public void largeEntriesShouldBePrecompressed() throws IOException {
+        ResponseCache cache = new ResponseCache(1000, 10, 1024 * 1024, 60, new Compressor(6, 16));
+        String text = String.join(" ", Collections.nCopies(100, "whatever"));
+        ResponseCache.Entry entry = cache.render(KEY, () -> text);
+        Assert.assertNotNull(entry.getGzipped());
+        Assert.assertTrue(entry.getGzipped().length < entry.getBytes().length);
+
+        Response gzipped = entry.toResponse(null, "deflate;q=0.5, gzip");
+        Assert.assertEquals(gzipped.getHeaderString("Content-Encoding"), "gzip");
+        Assert.assertNotEquals(gzipped.getHeaderString("ETag"), entry.getEtag());
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream((byte[]) gzipped.getEntity()))) {
+            Assert.assertEquals(ByteStreams.toByteArray(in), entry.getBytes());
+        }
+        Assert.assertEquals(
+            entry.toResponse(gzipped.getHeaderString("ETag"), "gzip").getStatus(),
+            Response.Status.NOT_MODIFIED.getStatusCode());
+
+        // Deflate is compressed on the fly (by CompressionInterceptor), so it gets a weak ETag, even in a 304
+        Response deflated = entry.toResponse(null, "deflate");
+        Assert.assertSame(deflated.getEntity(), entry.getBytes());
+        Assert.assertEquals(deflated.getHeaderString("ETag"), "W/" + entry.getEtag());
+        Response notModified = entry.toResponse(deflated.getHeaderString("ETag"), "deflate");
+        Assert.assertEquals(notModified.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode());
+        Assert.assertEquals(notModified.getHeaderString("ETag"), "W/" + entry.getEtag());
+
+        // Clients which do not accept gzip get the uncompressed bytes
+        Response plain = entry.toResponse(gzipped.getHeaderString("ETag"), "identity");
+        Assert.assertEquals(plain.getStatus(), Response.Status.OK.getStatusCode());
+        Assert.assertNull(plain.getHeaderString("Content-Encoding"));
+        Assert.assertSame(plain.getEntity(), entry.getBytes());
+    }
+}
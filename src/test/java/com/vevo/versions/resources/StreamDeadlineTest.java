@@ -0,0 +1,46 @@
+package com.vevo.versions.resources;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+
+public class StreamDeadlineTest {
+    private static final byte[] BYTES = "{\"a\":1}\n".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void streamsShouldPassThroughBeforeTheDeadline() throws Exception {
+        StreamDeadline deadline = new StreamDeadline(60000);
+        InputStream in = deadline.wrap(new ByteArrayInputStream(BYTES));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = deadline.wrap(bytes);
+        byte[] buffer = new byte[4];
+        for (int count = in.read(buffer, 0, buffer.length); count != -1; count = in.read(buffer, 0, buffer.length)) {
+            out.write(buffer, 0, count);
+        }
+        Assert.assertEquals(bytes.toByteArray(), BYTES);
+    }
+
+    @Test
+    public void streamsShouldThrowAfterTheDeadline() throws Exception {
+        StreamDeadline deadline = new StreamDeadline(0);
+        Thread.sleep(1);
+        try {
+            deadline.wrap(new ByteArrayInputStream(BYTES)).read();
+            Assert.fail("Expected the read to time out!");
+        } catch (StreamDeadline.TimeoutException expected) {
+            Assert.assertEquals(expected.getMessage(), "Timed out after 0ms");
+        }
+        try {
+            deadline.wrap(new ByteArrayOutputStream()).write(BYTES, 0, BYTES.length);
+            Assert.fail("Expected the write to time out!");
+        } catch (StreamDeadline.TimeoutException expected) {
+            // expected
+        }
+    }
+}
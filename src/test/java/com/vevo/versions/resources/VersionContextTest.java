@@ -0,0 +1,95 @@
+package com.vevo.versions.resources;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class VersionContextTest {
+
+    @Test
+    public void v1ShouldRenderPlainText() {
+        Assert.assertEquals(VersionContext.V1.doSomeVersionSpecificWork("whatever", null),
+            new TextResponse("V1: whatever"));
+        Assert.assertEquals(VersionContext.V1.doSomeVersionSpecificWork("whatever", "the body"),
+            new TextResponse("V1: whatever / the body"));
+    }
+
+    @Test
+    public void v2ShouldRenderJsonValue() {
+        Assert.assertEquals(VersionContext.V2.doSomeVersionSpecificWork("whatever", "the body"),
+            new ValueResponse("V2: whatever / the body"));
+    }
+
+    @Test
+    public void v2ShouldOnlyRelabelTheVersion() {
+        // The path and body are not rewritten, even if they contain "V1"
+        Assert.assertEquals(VersionContext.V2.doSomeVersionSpecificWork("V1", "V1"),
+            new ValueResponse("V2: V1 / V1"));
+    }
+
+    @Test
+    public void postsOfEitherVersionShouldStoreTheSameValue() {
+        Assert.assertEquals(storedValue(VersionContext.V1, "the body"), "the body");
+        Assert.assertEquals(storedValue(VersionContext.V2, "the body"), "the body");
+        Assert.assertEquals(storedValue(VersionContext.V2, "{\"value\":\"the body\"}"), "the body");
+        Assert.assertEquals(storedValue(VersionContext.V1, "{\"value\":\"the body\"}"), "{\"value\":\"the body\"}");
+        Assert.assertNull(VersionContext.V2.toStoredValue(null, null));
+
+        // Each version renders its own output from the stored value
+        Assert.assertEquals(VersionContext.V1.doSomeVersionSpecificWork("whatever", "the body"),
+            new TextResponse("V1: whatever / the body"));
+        Assert.assertEquals(VersionContext.V2.doSomeVersionSpecificWork("whatever", "the body"),
+            new ValueResponse("V2: whatever / the body"));
+    }
+
+    @Test
+    public void responsesShouldBeWrittenAsTheyWereBeforeModels() throws Exception {
+        VersionContext.Version1Context v1 = new VersionContext.Version1Context();
+        VersionContext.Version2Context v2 = new VersionContext.Version2Context();
+        Assert.assertEquals(written(v1.doSomeVersionSpecificWork("whatever", "the body")), "V1: whatever / the body");
+        Assert.assertEquals(written(v2.doSomeVersionSpecificWork("whatever", "the body")),
+            "{\"value\":\"V2: whatever / the body\"}");
+        Assert.assertEquals(new String(v2.doSomeVersionSpecificWork("a\"b", null).toBytes(),
+            StandardCharsets.UTF_8), "{\"value\":\"V2: a\\\"b\"}");
+        Assert.assertEquals(VersionedResponse.MAPPER.writeValueAsString(new TextResponse("V1: whatever")),
+            "\"V1: whatever\"");
+    }
+
+    @Test
+    public void textLongerThanTheBufferShouldBeWrittenWhole() throws Exception {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 10000) {
+            text.append("caf\u00e9 ");
+        }
+        Assert.assertEquals(written(new TextResponse(text.toString())), text.toString());
+    }
+
+    @Test
+    public void streamedRecordsShouldBePassedOnBeforeTheirOutput() throws Exception {
+        List<String> records = new ArrayList<>();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VersionContext.V1.streamVersionSpecificWork("whatever",
+            new ByteArrayInputStream("one\ntwo\n".getBytes(StandardCharsets.UTF_8)), out,
+            record -> records.add(record + " @" + out.size()));
+        Assert.assertEquals(records, Arrays.asList("one @0", "two @" + "V1: whatever / one\n".length()));
+        Assert.assertEquals(new String(out.toByteArray(), StandardCharsets.UTF_8),
+            "V1: whatever / one\nV1: whatever / two\n");
+    }
+
+    private static String storedValue(VersionContext versionContext, String body) {
+        return versionContext.toStoredValue(body, RequestValidator.parse(body));
+    }
+
+    private static String written(VersionedResponse response) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.writeTo(out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
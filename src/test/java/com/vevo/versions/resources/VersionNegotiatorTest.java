@@ -0,0 +1,95 @@
+package com.vevo.versions.resources;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+
+public class VersionNegotiatorTest {
+    private static final String PREFIX = "vnd.vevo.header-v";
+
+    private VersionNegotiator negotiator;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        negotiator = newNegotiator(16);
+    }
+
+    private static VersionNegotiator newNegotiator(int cacheSize) {
+        return new VersionNegotiator(PREFIX, VersionRegistry.getDefault(), VersionContext.V1, cacheSize);
+    }
+
+    private void assertResolves(String header, VersionContext expected) {
+        Assert.assertSame(negotiator.negotiate(header), expected, "Unexpected version for '" + header + "'!");
+    }
+
+    @Test
+    public void missingHeaderShouldReturnDefault() {
+        assertResolves(null, VersionContext.V1);
+        assertResolves("", VersionContext.V1);
+    }
+
+    @Test
+    public void singleTypeShouldResolveVersion() {
+        assertResolves("application/json", VersionContext.V1);
+        assertResolves(VersionsResource.V1_TYPE, VersionContext.V1);
+        assertResolves(VersionsResource.V2_TYPE, VersionContext.V2);
+        assertResolves("Application/VND.Vevo.Header-V2+JSON", VersionContext.V2);
+        assertResolves("application/vnd.vevo.header-v2+json; charset=utf-8", VersionContext.V2);
+    }
+
+    @Test
+    public void highestQualityShouldWin() {
+        assertResolves("application/vnd.vevo.header-v1+json;q=0.5, application/vnd.vevo.header-v2+json",
+            VersionContext.V2);
+        assertResolves("application/vnd.vevo.header-v2+json; q=0.2, application/json;q=0.9", VersionContext.V1);
+        assertResolves("application/json, application/vnd.vevo.header-v2+json", VersionContext.V2);
+        assertResolves("application/vnd.vevo.header-v9+json, application/vnd.vevo.header-v2+json;q=0.1",
+            VersionContext.V2);
+    }
+
+    @Test
+    public void unacceptableHeadersShouldReturnUnsupported() {
+        assertResolves("application/vnd.vevo.header-v9+json", VersionContext.UNSUPPORTED);
+        assertResolves("application/vnd.vevo.header-vx+json", VersionContext.UNSUPPORTED);
+        assertResolves("application/vnd.vevo.header-v2+json;q=0", VersionContext.UNSUPPORTED);
+        assertResolves("application/vnd.vevo.header-v2+json;q=abc", VersionContext.UNSUPPORTED);
+        assertResolves("application/vnd.vevo.header-v0+json", VersionContext.UNSUPPORTED);
+        assertResolves("application/vnd.vevo.header-v00+json, application/json;q=0.1", VersionContext.V1);
+    }
+
+    @Test
+    public void nonAsciiDigitsShouldNotParse() {
+        // ARABIC-INDIC DIGIT TWO and FULLWIDTH DIGIT FIVE are digits to Character.isDigit, but not to the header
+        assertResolves("application/vnd.vevo.header-v\u0662+json", VersionContext.UNSUPPORTED);
+        assertResolves("application/vnd.vevo.header-v2+json;q=0.\uff15, application/json;q=0.1", VersionContext.V1);
+    }
+
+    @Test
+    public void repeatedHeadersShouldHitCache() {
+        assertResolves(VersionsResource.V2_TYPE, VersionContext.V2);
+        assertResolves(VersionsResource.V2_TYPE, VersionContext.V2);
+        assertResolves("application/vnd.vevo.header-v9+json", VersionContext.UNSUPPORTED);
+        assertResolves("application/vnd.vevo.header-v9+json", VersionContext.UNSUPPORTED);
+        Assert.assertEquals(negotiator.getCacheMisses(), 2);
+        Assert.assertEquals(negotiator.getCacheHits(), 2);
+        Assert.assertEquals(negotiator.getCacheSize(), 2);
+    }
+
+    @Test
+    public void cacheShouldBeBounded() {
+        negotiator = newNegotiator(1);
+        assertResolves(VersionsResource.V1_TYPE, VersionContext.V1);
+        assertResolves(VersionsResource.V2_TYPE, VersionContext.V2);
+        Assert.assertEquals(negotiator.getCacheSize(), 1);
+    }
+
+    @Test
+    public void cacheShouldEvictLeastRecentlyUsed() {
+        negotiator = newNegotiator(1);
+        assertResolves(VersionsResource.V1_TYPE, VersionContext.V1);
+        assertResolves(VersionsResource.V2_TYPE, VersionContext.V2);
+        assertResolves(VersionsResource.V2_TYPE, VersionContext.V2);
+        Assert.assertEquals(negotiator.getCacheHits(), 1, "A full cache should still cache new headers!");
+    }
+}
@@ -0,0 +1,58 @@
+package com.vevo.versions.resources;
+
+import java.util.stream.Collectors;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+
+public class VersionRegistryTest {
+
+    @Test
+    public void defaultRegistryShouldContainBuiltInVersions() {
+        VersionRegistry registry = VersionRegistry.getDefault();
+        Assert.assertSame(registry.get(1), VersionContext.V1);
+        Assert.assertSame(registry.get(2), VersionContext.V2);
+        Assert.assertSame(registry.getLatest(), VersionContext.V2);
+        Assert.assertEquals(registry.getSupported().size(), 2);
+    }
+
+    @Test
+    public void swaggerShouldListEverySupportedVersion() {
+        String versions = VersionRegistry.getDefault().getSupported().stream()
+            .map(context -> "v" + context.getVersion())
+            .collect(Collectors.joining(","));
+        Assert.assertEquals(VersionsResource.PATH_VERSIONS, versions,
+            "Update VersionsResource.PATH_VERSIONS to list the supported versions!");
+    }
+
+    @Test
+    public void unknownVersionsShouldBeUnsupported() {
+        VersionRegistry registry = VersionRegistry.getDefault();
+        Assert.assertSame(registry.get(0), VersionContext.UNSUPPORTED);
+        Assert.assertSame(registry.get(-1), VersionContext.UNSUPPORTED);
+        Assert.assertSame(registry.get(Integer.MAX_VALUE), VersionContext.UNSUPPORTED);
+        Assert.assertFalse(registry.get(3).isSupported());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void unsupportedVersionsShouldNotDoWork() {
+        VersionContext.UNSUPPORTED.doSomeVersionSpecificWork("whatever", null);
+    }
+
+    @Test
+    public void laterContextsShouldReplaceEarlierOnes() {
+        VersionContext replacement = new VersionContext.Version1Context();
+        VersionRegistry registry = VersionRegistry.builder()
+            .add(VersionContext.V1)
+            .add(replacement)
+            .build();
+        Assert.assertSame(registry.get(1), replacement);
+        Assert.assertEquals(registry.getSupported().size(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void badVersionNumbersShouldBeRejected() {
+        VersionRegistry.builder().add(VersionContext.UNSUPPORTED);
+    }
+}
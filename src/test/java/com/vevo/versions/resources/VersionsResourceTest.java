@@ -1,5 +1,6 @@
 package com.vevo.versions.resources;
 
+import com.google.common.base.Strings;
 import com.google.common.net.HttpHeaders;
 import com.mashape.unirest.http.HttpResponse;
 import com.mashape.unirest.http.Unirest;
@@ -97,6 +98,94 @@ public class VersionsResourceTest extends VersionsIntegrationTest {
         Assert.assertEquals(result.getBody(), EXPECTED_POST_JSON,"Expected '" + EXPECTED_POST_JSON + "'!");
     }
 
+    ////////////////////////////////////////////////////////////////////////////////////////////////////
+    // Streaming POST Tests
+    ////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    // Path v2
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void streamPathV2ShouldReturnOneLinePerRecord() throws Exception {
+        HttpResponse<String> result = Unirest.post(config.getUri() + PATH_V2_PATH)  // v2 path path
+            .header(HttpHeaders.CONTENT_TYPE, VersionsResource.NDJSON)
+            .body("one\n\ntwo\n")
+            .asObject(String.class);
+        String expected = "{\"value\":\"V2: " + PATH_ARG + " / one\"}\n{\"value\":\"V2: " + PATH_ARG + " / two\"}\n";
+        Assert.assertEquals(result.getStatus(), Response.Status.OK.getStatusCode(),"Expected OK response!");
+        Assert.assertEquals(result.getBody(), expected, "Expected '" + expected + "'!");
+    }
+
+    // Path v2, a record not matching the v2 schema (validated whether or not records are stored)
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void streamPathV2WithInvalidRecordShouldEndWithAnErrorLine() throws Exception {
+        HttpResponse<String> result = Unirest.post(config.getUri() + PATH_V2_PATH)  // v2 path path
+            .header(HttpHeaders.CONTENT_TYPE, VersionsResource.NDJSON)
+            .body("one\n{\"value\":1}\ntwo\n")
+            .asObject(String.class);
+        Assert.assertEquals(result.getStatus(), Response.Status.OK.getStatusCode(),"Expected OK response!");
+        String[] lines = result.getBody().split("\n");
+        Assert.assertEquals(lines.length, 2, "Expected the first record's output and an error line!");
+        Assert.assertEquals(lines[0], "{\"value\":\"V2: " + PATH_ARG + " / one\"}");
+        Assert.assertTrue(lines[1].startsWith("{\"status\":400,\"error\":\"Invalid record: /value: "), lines[1]);
+    }
+
+    // Header v1
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void streamHeaderV1ShouldReturnOneLinePerRecord() throws Exception {
+        HttpResponse<String> result = Unirest.post(config.getUri() + HEADER_PATH)  // header path
+            .header(HttpHeaders.CONTENT_TYPE, VersionsResource.V1_NDJSON_TYPE)   // application/vnd.vevo.header-v1+x-ndjson
+            .body("one\ntwo")
+            .asObject(String.class);
+        String expected = "V1: " + PATH_ARG + " / one\nV1: " + PATH_ARG + " / two\n";
+        Assert.assertEquals(result.getStatus(), Response.Status.OK.getStatusCode(),"Expected OK response!");
+        Assert.assertEquals(result.getBody(), expected, "Expected '" + expected + "'!");
+    }
+
+    // Path v1, a record too large after the first buffer of output was sent
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void streamRecordTooLargeShouldEndWithAnErrorLine() throws Exception {
+        String record = Strings.repeat("x", 100);
+        StringBuilder body = new StringBuilder();
+        for (int idx = 0; idx < 200; idx++) {
+            body.append(record).append('\n');
+        }
+        body.append(Strings.repeat("y", NdjsonReader.DEFAULT_MAX_RECORD_BYTES + 1));
+        HttpResponse<String> result = Unirest.post(config.getUri() + PATH_PATH)  // v1 path path
+            .header(HttpHeaders.CONTENT_TYPE, VersionsResource.NDJSON)
+            .body(body.toString())
+            .asObject(String.class);
+
+        // 20KB of output precede the bad record, so the status was sent before it was read
+        Assert.assertEquals(result.getStatus(), Response.Status.OK.getStatusCode(),"Expected OK response!");
+        String[] lines = result.getBody().split("\n");
+        Assert.assertEquals(lines.length, 201, "Expected every record's output and an error line!");
+        Assert.assertEquals(lines[199], "V1: " + PATH_ARG + " / " + record);
+        Assert.assertTrue(lines[200].startsWith("{\"status\":413,\"error\":"), lines[200]);
+    }
+
+    // Path v2, body not matching the v2 schema
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void postPathV2WithInvalidBodyShouldReturn400() throws Exception {
+        HttpResponse<String> result = Unirest.post(config.getUri() + PATH_V2_PATH)  // v2 path path
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+            .body("{\"value\":1}")
+            .asString();
+        Assert.assertEquals(result.getStatus(), Response.Status.BAD_REQUEST.getStatusCode(),"Expected 400 response!");
+        Assert.assertTrue(result.getBody().contains("\"pointer\":\"/value\""), "Expected the violation!");
+    }
+
+    // Path v2, truncated JSON body
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void postPathV2WithMalformedBodyShouldReturn400() throws Exception {
+        HttpResponse<String> result = Unirest.post(config.getUri() + PATH_V2_PATH)  // v2 path path
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+            .body("{\"value\": ")
+            .asString();
+        Assert.assertEquals(result.getStatus(), Response.Status.BAD_REQUEST.getStatusCode(),"Expected 400 response!");
+        Assert.assertTrue(result.getBody().contains("Malformed JSON"), "Expected the violation!");
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////////
     // GET Tests
     ////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -150,4 +239,39 @@ public class VersionsResourceTest extends VersionsIntegrationTest {
         Assert.assertEquals(result.getStatus(), Response.Status.OK.getStatusCode(),"Expected OK response!");
         Assert.assertEquals(result.getBody(), EXPECTED_GET_JSON,"Expected '" + EXPECTED_GET_JSON + "'!");
     }
+
+    // Conditional GET
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void getWithMatchingEtagShouldReturn304() throws Exception {
+        HttpResponse<String> first = Unirest.get(config.getUri() + HEADER_PATH)  // header path
+            .header(HttpHeaders.ACCEPT, VersionsResource.V2_TYPE)  // v2
+            .asObject(String.class);
+        String etag = first.getHeaders().getFirst(HttpHeaders.ETAG);
+        Assert.assertNotNull(etag, "Expected an ETag!");
+
+        HttpResponse<String> result = Unirest.get(config.getUri() + HEADER_PATH)  // header path
+            .header(HttpHeaders.ACCEPT, VersionsResource.V2_TYPE)  // v2
+            .header(HttpHeaders.IF_NONE_MATCH, etag)
+            .asObject(String.class);
+        Assert.assertEquals(result.getStatus(), Response.Status.NOT_MODIFIED.getStatusCode(),"Expected 304 response!");
+    }
+
+    // Path v1, explicitly versioned
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void getPathExplicitV1ShouldReturnPlainText200() throws Exception {
+        HttpResponse<String> result = Unirest.get(config.getUri() + "/foo/path/v1/" + PATH_ARG)
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+            .asObject(String.class);
+        Assert.assertEquals(result.getStatus(), Response.Status.OK.getStatusCode(),"Expected OK response!");
+        Assert.assertEquals(result.getBody(), EXPECTED_GET_TEXT, "Expected '" + EXPECTED_GET_TEXT + "'!");
+    }
+
+    // Path, unknown version
+    @Test(groups = IntegrationTest.INTEGRATION_GROUP)
+    public void getPathUnknownVersionShouldReturn404() throws Exception {
+        HttpResponse<String> result = Unirest.get(config.getUri() + "/foo/path/v99/" + PATH_ARG)
+            .header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON)
+            .asObject(String.class);
+        Assert.assertEquals(result.getStatus(), Response.Status.NOT_FOUND.getStatusCode(),"Expected 404 response!");
+    }
 }